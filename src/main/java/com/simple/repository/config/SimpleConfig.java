@@ -82,7 +82,15 @@ public class SimpleConfig {
     private static SimpleConfig config = null;
 
     private SimpleConfig() {
-        InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream("simple-repository.yml");
+        this(Thread.currentThread().getContextClassLoader().getResourceAsStream("simple-repository.yml"));
+    }
+
+    /**
+     * 按指定的yml内容加载配置
+     *
+     * @param in yml配置内容
+     */
+    SimpleConfig(InputStream in) {
         Yaml yaml = new Yaml();
         analysisYml(yaml.load(in));
         loadEnvConfig();
@@ -152,8 +160,8 @@ public class SimpleConfig {
         // 加载数据库配置
         LinkedHashMap<String, Object> dataMap = (LinkedHashMap<String, Object>) map.get("datasource");
         if (null != dataMap) {
-            dataSourceConfig(transition(dataMap.get("url"), String.class), transition(dataMap.get("username"), String.class),
-                    transition(dataMap.get("password"), String.class), transition(dataMap.get("driver"), String.class));
+            dataSource = dataSourceConfig(dataMap, null);
+            bindGroupTables(dataSource);
         }
         // 加载redis配置
         dataMap = (LinkedHashMap<String, Object>) map.get("redis");
@@ -164,12 +172,46 @@ public class SimpleConfig {
         evnConfigTemp = new HashMap<>();
     }
 
+    /**
+     * 绑定数据源分组的表
+     * <p>
+     * 分组包含的表:分组配置的tables,以及代码生成配置中业务块标识或schema与分组名称相同的表
+     * 同一张表属于多个分组时以先配置的分组为准
+     * </p>
+     *
+     * @param dataSource 主库配置
+     */
+    private void bindGroupTables(DataSource dataSource) {
+        for (Map.Entry<String, DataSource> entry : dataSource.groups.entrySet()) {
+            String group = entry.getKey();
+            List<String> tables = new ArrayList<>(entry.getValue().tables);
+            for (ModelInfo info : ModelInfos) {
+                if (group.equals(info.name) || group.equals(info.schema)) {
+                    tables.addAll(info.tables);
+                }
+            }
+            for (String table : tables) {
+                dataSource.groupTables.putIfAbsent(table.trim().toLowerCase(), group);
+            }
+        }
+    }
+
     /**
      * 分析获取代码生成的配置
      *
      * @param map yml配置
      */
     public void analysisModelInfo(LinkedHashMap<String, Object> map) {
+        analysisModelInfo(map, "");
+    }
+
+    /**
+     * 分析获取代码生成的配置
+     *
+     * @param map  yml配置
+     * @param name 业务块标识,即所在配置项的名称
+     */
+    private void analysisModelInfo(LinkedHashMap<String, Object> map, String name) {
         String packageName = "";
         String schema = "";
         for (String key : map.keySet()) {
@@ -194,30 +236,255 @@ public class SimpleConfig {
                     String tables = obj.toString().replace(" ", "");
                     if (SimpleStringUtils.isNotEmpty(tables)) {
                         List<String> tableList = Arrays.asList(tables.split("\\|"));
-                        ModelInfos.add(new ModelInfo(schema, packageName, tableList));
+                        ModelInfos.add(new ModelInfo(name, schema, packageName, tableList));
                     }
                     break;
             }
             if (obj instanceof LinkedHashMap) {
-                analysisModelInfo((LinkedHashMap<String, Object>) obj);
+                analysisModelInfo((LinkedHashMap<String, Object>) obj, key);
             }
         }
     }
 
     /**
      * 数据源配置
+     * <p>
+     * 只读副本、分片与分组未配置的账号、密码、驱动与连接池参数沿用主库的配置
+     * </p>
      *
-     * @param url      地址
-     * @param username 账号
-     * @param password 密码
-     * @param driver   驱动名称
+     * @param dataMap 数据源配置项
+     * @param parent  主库配置,解析主库时为null
+     * @return 返回数据源配置
      */
-    private void dataSourceConfig(String url, String username, String password, String driver) {
-        dataSource = new DataSource();
-        dataSource.url = url;
-        dataSource.username = username;
-        dataSource.password = password;
-        dataSource.driver = driver;
+    private DataSource dataSourceConfig(LinkedHashMap<String, Object> dataMap, DataSource parent) {
+        DataSource dataSource = new DataSource();
+        if (null != parent) {
+            dataSource.inherit(parent);
+        }
+        dataSource.url = transition(dataMap.get("url"), String.class);
+        String username = transition(dataMap.get("username"), String.class);
+        if (null != username) {
+            dataSource.username = username;
+        }
+        String password = transition(dataMap.get("password"), String.class);
+        if (null != password) {
+            dataSource.password = password;
+        }
+        String driver = transition(dataMap.get("driver"), String.class);
+        if (null != driver) {
+            dataSource.driver = driver;
+        }
+        String sessionMode = transition(dataMap.get("session-mode"), String.class);
+        if (null != sessionMode) {
+            dataSource.sessionMode = SessionMode.valueOf(sessionMode.trim().toLowerCase());
+        }
+        Integer queryTimeout = transition(dataMap.get("query-timeout"), Integer.class);
+        if (null != queryTimeout) {
+            dataSource.queryTimeout = queryTimeout;
+        }
+        Integer transactionMaxRetries = transition(dataMap.get("transaction-max-retries"), Integer.class);
+        if (null != transactionMaxRetries) {
+            dataSource.transactionMaxRetries = transactionMaxRetries;
+        }
+        Long transactionRetryBackoff = transition(dataMap.get("transaction-retry-backoff"), Long.class);
+        if (null != transactionRetryBackoff) {
+            dataSource.transactionRetryBackoff = transactionRetryBackoff;
+        }
+        Integer asyncThreads = transition(dataMap.get("async-threads"), Integer.class);
+        if (null != asyncThreads) {
+            dataSource.asyncThreads = asyncThreads;
+        }
+        Integer asyncQueueSize = transition(dataMap.get("async-queue-size"), Integer.class);
+        if (null != asyncQueueSize) {
+            dataSource.asyncQueueSize = asyncQueueSize;
+        }
+        poolConfig(dataSource, (LinkedHashMap<String, Object>) dataMap.get("pool"));
+        // 只读副本
+        Integer replicaMaxLag = transition(dataMap.get("replica-max-lag"), Integer.class);
+        if (null != replicaMaxLag) {
+            dataSource.replicaMaxLag = replicaMaxLag;
+        }
+        Long replicaCheckPeriod = transition(dataMap.get("replica-check-period"), Long.class);
+        if (null != replicaCheckPeriod) {
+            dataSource.replicaCheckPeriod = replicaCheckPeriod;
+        }
+        String replicaLagQuery = transition(dataMap.get("replica-lag-query"), String.class);
+        if (null != replicaLagQuery && !replicaLagQuery.trim().isEmpty()) {
+            dataSource.replicaLagQuery = replicaLagQuery.trim();
+        }
+        Boolean replicaHedge = transition(dataMap.get("replica-hedge"), Boolean.class);
+        if (null != replicaHedge) {
+            dataSource.replicaHedge = replicaHedge;
+        }
+        Integer replicaHedgePercentile = transition(dataMap.get("replica-hedge-percentile"), Integer.class);
+        if (null != replicaHedgePercentile) {
+            dataSource.replicaHedgePercentile = replicaHedgePercentile;
+        }
+        Long replicaHedgeMinDelay = transition(dataMap.get("replica-hedge-min-delay"), Long.class);
+        if (null != replicaHedgeMinDelay) {
+            dataSource.replicaHedgeMinDelay = replicaHedgeMinDelay;
+        }
+        Integer replicaHedgeBudget = transition(dataMap.get("replica-hedge-budget"), Integer.class);
+        if (null != replicaHedgeBudget) {
+            dataSource.replicaHedgeBudget = replicaHedgeBudget;
+        }
+        List<LinkedHashMap<String, Object>> replicas = (List<LinkedHashMap<String, Object>>) dataMap.get("replicas");
+        if (null != replicas && null == parent) {
+            for (LinkedHashMap<String, Object> replica : replicas) {
+                dataSource.replicas.add(dataSourceConfig(replica, dataSource));
+            }
+        }
+        // 分片
+        List<LinkedHashMap<String, Object>> shards = (List<LinkedHashMap<String, Object>>) dataMap.get("shards");
+        if (null != shards && null == parent) {
+            for (LinkedHashMap<String, Object> shard : shards) {
+                dataSource.shards.add(dataSourceConfig(shard, dataSource));
+            }
+        }
+        // 分组
+        LinkedHashMap<String, Object> groups = (LinkedHashMap<String, Object>) dataMap.get("groups");
+        if (null != groups && null == parent) {
+            for (String group : groups.keySet()) {
+                LinkedHashMap<String, Object> groupMap = (LinkedHashMap<String, Object>) groups.get(group);
+                DataSource groupDataSource = dataSourceConfig(groupMap, dataSource);
+                String tables = transition(groupMap.get("tables"), String.class);
+                if (SimpleStringUtils.isNotEmpty(tables)) {
+                    groupDataSource.tables = Arrays.asList(tables.replace(" ", "").split("\\|"));
+                }
+                dataSource.groups.put(group, groupDataSource);
+            }
+        }
+        LinkedHashMap<String, Object> shardTables = (LinkedHashMap<String, Object>) dataMap.get("shard-tables");
+        if (null != shardTables && null == parent) {
+            for (String table : shardTables.keySet()) {
+                String column = transition(shardTables.get(table), String.class);
+                dataSource.shardTables.put(table.trim().toLowerCase(), SimpleStringUtils.isEmpty(column) ? "id" : column.trim().toLowerCase());
+            }
+        }
+        return dataSource;
+    }
+
+    /**
+     * 连接池配置
+     *
+     * @param dataSource 数据源配置
+     * @param poolMap    连接池配置项
+     */
+    private void poolConfig(DataSource dataSource, LinkedHashMap<String, Object> poolMap) {
+        if (null == poolMap) {
+            return;
+        }
+        Integer minSize = transition(poolMap.get("min-size"), Integer.class);
+        if (null != minSize) {
+            dataSource.minSize = minSize;
+        }
+        Integer initialSize = transition(poolMap.get("initial-size"), Integer.class);
+        if (null != initialSize) {
+            dataSource.initialSize = initialSize;
+        }
+        Integer maxSize = transition(poolMap.get("max-size"), Integer.class);
+        if (null != maxSize) {
+            dataSource.maxSize = maxSize;
+        }
+        String sizing = transition(poolMap.get("sizing"), String.class);
+        if (null != sizing) {
+            dataSource.sizing = SizingMode.valueOf(sizing.trim().toLowerCase());
+        }
+        Long sizingPeriod = transition(poolMap.get("sizing-period"), Long.class);
+        if (null != sizingPeriod) {
+            dataSource.sizingPeriod = sizingPeriod;
+        }
+        Long sizingTargetWait = transition(poolMap.get("sizing-target-wait"), Long.class);
+        if (null != sizingTargetWait) {
+            dataSource.sizingTargetWait = sizingTargetWait;
+        }
+        Long acquireTimeout = transition(poolMap.get("acquire-timeout"), Long.class);
+        if (null != acquireTimeout) {
+            dataSource.acquireTimeout = acquireTimeout;
+        }
+        Integer maxWaiting = transition(poolMap.get("max-waiting"), Integer.class);
+        if (null != maxWaiting) {
+            dataSource.maxWaiting = maxWaiting;
+        }
+        Long maxLifetime = transition(poolMap.get("max-lifetime"), Long.class);
+        if (null != maxLifetime) {
+            dataSource.maxLifetime = maxLifetime;
+        }
+        Long idleTimeout = transition(poolMap.get("idle-timeout"), Long.class);
+        if (null != idleTimeout) {
+            dataSource.idleTimeout = idleTimeout;
+        }
+        Long housekeepingPeriod = transition(poolMap.get("housekeeping-period"), Long.class);
+        if (null != housekeepingPeriod) {
+            dataSource.housekeepingPeriod = housekeepingPeriod;
+        }
+        Integer validationTimeout = transition(poolMap.get("validation-timeout"), Integer.class);
+        if (null != validationTimeout) {
+            dataSource.validationTimeout = validationTimeout;
+        }
+        String warmUp = transition(poolMap.get("warm-up"), String.class);
+        if (null != warmUp) {
+            dataSource.warmUp = WarmUpMode.valueOf(warmUp.trim().toLowerCase());
+        }
+        Integer warmUpCore = transition(poolMap.get("warm-up-core"), Integer.class);
+        if (null != warmUpCore) {
+            dataSource.warmUpCore = warmUpCore;
+        }
+        Integer warmUpThreads = transition(poolMap.get("warm-up-threads"), Integer.class);
+        if (null != warmUpThreads) {
+            dataSource.warmUpThreads = warmUpThreads;
+        }
+        Long leakDetectionThreshold = transition(poolMap.get("leak-detection-threshold"), Long.class);
+        if (null != leakDetectionThreshold) {
+            dataSource.leakDetectionThreshold = leakDetectionThreshold;
+        }
+        Boolean jmx = transition(poolMap.get("jmx"), Boolean.class);
+        if (null != jmx) {
+            dataSource.jmx = jmx;
+        }
+        Integer statementCacheSize = transition(poolMap.get("statement-cache-size"), Integer.class);
+        if (null != statementCacheSize) {
+            dataSource.statementCacheSize = statementCacheSize;
+        }
+        Integer statementPromoteThreshold = transition(poolMap.get("statement-promote-threshold"), Integer.class);
+        if (null != statementPromoteThreshold) {
+            dataSource.statementPromoteThreshold = statementPromoteThreshold;
+        }
+        Integer statementServerMax = transition(poolMap.get("statement-server-max"), Integer.class);
+        if (null != statementServerMax) {
+            dataSource.statementServerMax = statementServerMax;
+        }
+        Boolean limiter = transition(poolMap.get("limiter"), Boolean.class);
+        if (null != limiter) {
+            dataSource.limiter = limiter;
+        }
+        Integer limiterInitial = transition(poolMap.get("limiter-initial"), Integer.class);
+        if (null != limiterInitial) {
+            dataSource.limiterInitial = limiterInitial;
+        }
+        Integer limiterMin = transition(poolMap.get("limiter-min"), Integer.class);
+        if (null != limiterMin) {
+            dataSource.limiterMin = limiterMin;
+        }
+        Integer limiterMax = transition(poolMap.get("limiter-max"), Integer.class);
+        if (null != limiterMax) {
+            dataSource.limiterMax = limiterMax;
+        }
+        Long limiterTargetLatency = transition(poolMap.get("limiter-target-latency"), Long.class);
+        if (null != limiterTargetLatency) {
+            dataSource.limiterTargetLatency = limiterTargetLatency;
+        }
+        // 连接池分区,沿用当前数据源的连接与连接池配置,只覆盖分区中配置的参数
+        LinkedHashMap<String, Object> partitions = (LinkedHashMap<String, Object>) poolMap.get("partitions");
+        if (null != partitions) {
+            for (String name : partitions.keySet()) {
+                DataSource partition = new DataSource();
+                partition.inherit(dataSource);
+                partition.url = dataSource.url;
+                poolConfig(partition, (LinkedHashMap<String, Object>) partitions.get(name));
+                dataSource.partitions.put(name.trim(), partition);
+            }
+        }
     }
 
     /**
@@ -250,6 +517,271 @@ public class SimpleConfig {
 
         private String driver;
 
+        /**
+         * 会话模式,只对主库生效
+         */
+        private SessionMode sessionMode = SessionMode.statement;
+
+        /**
+         * 语句默认的查询超时时长(单位：秒),0为不限制
+         */
+        private Integer queryTimeout = 0;
+
+        /**
+         * 事务遇到死锁或锁等待超时的最大重试次数
+         */
+        private Integer transactionMaxRetries = 3;
+
+        /**
+         * 事务重试的基础退避时长(单位：毫秒),每次重试翻倍并随机抖动
+         */
+        private Long transactionRetryBackoff = 20L;
+
+        /**
+         * 异步操作的最大线程数,只对主库生效,未配置时使用连接池最大连接数
+         */
+        private Integer asyncThreads;
+
+        /**
+         * 异步操作的等待队列长度,只对主库生效,队列已满时拒绝
+         */
+        private Integer asyncQueueSize = 1000;
+
+        /**
+         * 最小连接数,未配置时使用SimpleDataSource.MIN_CONNECT_POOL_SIZE
+         */
+        private Integer minSize;
+
+        /**
+         * 初始连接数,未配置时使用SimpleDataSource.DEFAULT_CONNECT_POOL_SIZE
+         */
+        private Integer initialSize;
+
+        /**
+         * 最大连接数,未配置时使用SimpleDataSource.MAX_CONNECT_POOL_SIZE
+         */
+        private Integer maxSize;
+
+        /**
+         * 连接数调整方式
+         */
+        private SizingMode sizing = SizingMode.fixed;
+
+        /**
+         * 自适应调整的采样周期(单位：毫秒)
+         */
+        private Long sizingPeriod = 1000L;
+
+        /**
+         * 自适应调整时获取连接平均耗时的目标值(单位：毫秒),超过则提高连接数上限
+         */
+        private Long sizingTargetWait = 10L;
+
+        /**
+         * 获取连接的等待时长(单位：毫秒)
+         */
+        private Long acquireTimeout = 30000L;
+
+        /**
+         * 最大等待线程数
+         */
+        private Integer maxWaiting = 1024;
+
+        /**
+         * 连接最大存活时长(单位：毫秒),实际存活时长会随机缩短最多10%
+         */
+        private Long maxLifetime = 2 * 60 * 60 * 1000L;
+
+        /**
+         * 空闲超时时长(单位：毫秒),连接数大于最小连接数时关闭空闲超时的连接
+         */
+        private Long idleTimeout = 10 * 60 * 1000L;
+
+        /**
+         * 连接池维护间隔(单位：毫秒)
+         */
+        private Long housekeepingPeriod = 30 * 1000L;
+
+        /**
+         * 连接校验等待时长(单位：秒)
+         */
+        private Integer validationTimeout = 3;
+
+        /**
+         * 连接池预热方式
+         */
+        private WarmUpMode warmUp = WarmUpMode.parallel;
+
+        /**
+         * 启动时同步创建的核心连接数
+         */
+        private Integer warmUpCore = 4;
+
+        /**
+         * 后台并行创建连接的线程数
+         */
+        private Integer warmUpThreads = 8;
+
+        /**
+         * 连接泄漏告警阈值(单位：毫秒),连接借出超过该时长输出告警,0为不开启泄漏检测
+         */
+        private Long leakDetectionThreshold = 0L;
+
+        /**
+         * 是否通过JMX发布连接池监控指标
+         */
+        private Boolean jmx = true;
+
+        /**
+         * 每个连接缓存的PreparedStatement数量,0为不开启
+         */
+        private Integer statementCacheSize = 64;
+
+        /**
+         * 同一sql形状执行达到该次数后使用服务端预编译
+         */
+        private Integer statementPromoteThreshold = 5;
+
+        /**
+         * 数据源所有连接的服务端预编译语句数量上限,达到后使用客户端预编译,0为不使用服务端预编译
+         * <p>
+         * MySQL的max_prepared_stmt_count(默认16382)由所有客户端共享,应用实例数乘以该值不应超过它
+         * </p>
+         */
+        private Integer statementServerMax = 256;
+
+        /**
+         * 是否开启并发限制,达到并发上限的请求直接抛出SimpleOverloadException
+         */
+        private Boolean limiter = false;
+
+        /**
+         * 初始并发上限
+         */
+        private Integer limiterInitial = 64;
+
+        /**
+         * 最小并发上限
+         */
+        private Integer limiterMin = 8;
+
+        /**
+         * 最大并发上限,未配置时使用最大连接数
+         */
+        private Integer limiterMax;
+
+        /**
+         * 请求耗时的目标值(单位：毫秒),超过则降低并发上限
+         */
+        private Long limiterTargetLatency = 100L;
+
+        /**
+         * 连接池分区,key:分区名称,分区使用独立的连接池
+         */
+        private Map<String, DataSource> partitions = new LinkedHashMap<>();
+
+        /**
+         * 只读副本
+         */
+        private List<DataSource> replicas = new ArrayList<>();
+
+        /**
+         * 只读副本最大复制延迟(单位：秒),超过则暂时不再路由到该副本
+         */
+        private Integer replicaMaxLag = 10;
+
+        /**
+         * 只读副本复制延迟检查间隔(单位：毫秒)
+         */
+        private Long replicaCheckPeriod = 5000L;
+
+        /**
+         * 只读副本复制延迟查询语句,为null时先执行show replica status,不支持时执行show slave status
+         */
+        private String replicaLagQuery;
+
+        /**
+         * 是否开启对冲读取
+         */
+        private Boolean replicaHedge = false;
+
+        /**
+         * 对冲延迟取近期副本查询耗时的分位数
+         */
+        private Integer replicaHedgePercentile = 95;
+
+        /**
+         * 最小对冲延迟(单位：毫秒)
+         */
+        private Long replicaHedgeMinDelay = 5L;
+
+        /**
+         * 对冲预算,对冲查询最多占只读查询的百分比
+         */
+        private Integer replicaHedgeBudget = 10;
+
+        /**
+         * 分片数据源,按分片键取模选择
+         */
+        private List<DataSource> shards = new ArrayList<>();
+
+        /**
+         * 分片表与分片键,key:表名,value:分片字段
+         */
+        private Map<String, String> shardTables = new HashMap<>();
+
+        /**
+         * 数据源分组,key:分组名称(业务块标识或schema),分组的表使用独立的数据源与连接池
+         */
+        private Map<String, DataSource> groups = new LinkedHashMap<>();
+
+        /**
+         * 分组配置的表,仅分组数据源使用
+         */
+        private List<String> tables = new ArrayList<>();
+
+        /**
+         * 表所属的分组,key:表名,value:分组名称
+         */
+        private Map<String, String> groupTables = new HashMap<>();
+
+        /**
+         * 沿用主库的账号与连接池配置
+         *
+         * @param parent 主库配置
+         */
+        private void inherit(DataSource parent) {
+            username = parent.username;
+            password = parent.password;
+            driver = parent.driver;
+            queryTimeout = parent.queryTimeout;
+            minSize = parent.minSize;
+            initialSize = parent.initialSize;
+            maxSize = parent.maxSize;
+            sizing = parent.sizing;
+            sizingPeriod = parent.sizingPeriod;
+            sizingTargetWait = parent.sizingTargetWait;
+            acquireTimeout = parent.acquireTimeout;
+            maxWaiting = parent.maxWaiting;
+            maxLifetime = parent.maxLifetime;
+            idleTimeout = parent.idleTimeout;
+            housekeepingPeriod = parent.housekeepingPeriod;
+            validationTimeout = parent.validationTimeout;
+            warmUp = parent.warmUp;
+            warmUpCore = parent.warmUpCore;
+            warmUpThreads = parent.warmUpThreads;
+            leakDetectionThreshold = parent.leakDetectionThreshold;
+            jmx = parent.jmx;
+            statementCacheSize = parent.statementCacheSize;
+            statementPromoteThreshold = parent.statementPromoteThreshold;
+            statementServerMax = parent.statementServerMax;
+            limiter = parent.limiter;
+            limiterInitial = parent.limiterInitial;
+            limiterMin = parent.limiterMin;
+            limiterMax = parent.limiterMax;
+            limiterTargetLatency = parent.limiterTargetLatency;
+        }
+
         public String getUrl() {
             return url;
         }
@@ -265,6 +797,232 @@ public class SimpleConfig {
         public String getDriver() {
             return driver;
         }
+
+        public Long getAcquireTimeout() {
+            return acquireTimeout;
+        }
+
+        public Integer getMaxWaiting() {
+            return maxWaiting;
+        }
+
+        public Long getMaxLifetime() {
+            return maxLifetime;
+        }
+
+        public Long getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public Long getHousekeepingPeriod() {
+            return housekeepingPeriod;
+        }
+
+        public Integer getValidationTimeout() {
+            return validationTimeout;
+        }
+
+        public WarmUpMode getWarmUp() {
+            return warmUp;
+        }
+
+        public Integer getWarmUpCore() {
+            return warmUpCore;
+        }
+
+        public Integer getWarmUpThreads() {
+            return warmUpThreads;
+        }
+
+        public Long getLeakDetectionThreshold() {
+            return leakDetectionThreshold;
+        }
+
+        public Boolean getJmx() {
+            return jmx;
+        }
+
+        public Integer getStatementCacheSize() {
+            return statementCacheSize;
+        }
+
+        public Integer getStatementPromoteThreshold() {
+            return statementPromoteThreshold;
+        }
+
+        public Integer getStatementServerMax() {
+            return statementServerMax;
+        }
+
+        public Boolean getLimiter() {
+            return limiter;
+        }
+
+        public Integer getLimiterInitial() {
+            return limiterInitial;
+        }
+
+        public Integer getLimiterMin() {
+            return limiterMin;
+        }
+
+        public Integer getLimiterMax() {
+            return limiterMax;
+        }
+
+        public Long getLimiterTargetLatency() {
+            return limiterTargetLatency;
+        }
+
+        public Map<String, DataSource> getPartitions() {
+            return partitions;
+        }
+
+        public List<DataSource> getReplicas() {
+            return replicas;
+        }
+
+        public SessionMode getSessionMode() {
+            return sessionMode;
+        }
+
+        public Integer getQueryTimeout() {
+            return queryTimeout;
+        }
+
+        public Integer getTransactionMaxRetries() {
+            return transactionMaxRetries;
+        }
+
+        public Long getTransactionRetryBackoff() {
+            return transactionRetryBackoff;
+        }
+
+        public Integer getAsyncThreads() {
+            return asyncThreads;
+        }
+
+        public Integer getAsyncQueueSize() {
+            return asyncQueueSize;
+        }
+
+        public Integer getReplicaMaxLag() {
+            return replicaMaxLag;
+        }
+
+        public Long getReplicaCheckPeriod() {
+            return replicaCheckPeriod;
+        }
+
+        public String getReplicaLagQuery() {
+            return replicaLagQuery;
+        }
+
+        public Boolean getReplicaHedge() {
+            return replicaHedge;
+        }
+
+        public Integer getReplicaHedgePercentile() {
+            return replicaHedgePercentile;
+        }
+
+        public Long getReplicaHedgeMinDelay() {
+            return replicaHedgeMinDelay;
+        }
+
+        public Integer getReplicaHedgeBudget() {
+            return replicaHedgeBudget;
+        }
+
+        public List<DataSource> getShards() {
+            return shards;
+        }
+
+        public Map<String, String> getShardTables() {
+            return shardTables;
+        }
+
+        public Map<String, DataSource> getGroups() {
+            return groups;
+        }
+
+        public List<String> getTables() {
+            return tables;
+        }
+
+        public Map<String, String> getGroupTables() {
+            return groupTables;
+        }
+
+        public Integer getMinSize() {
+            return minSize;
+        }
+
+        public Integer getInitialSize() {
+            return initialSize;
+        }
+
+        public Integer getMaxSize() {
+            return maxSize;
+        }
+
+        public SizingMode getSizing() {
+            return sizing;
+        }
+
+        public Long getSizingPeriod() {
+            return sizingPeriod;
+        }
+
+        public Long getSizingTargetWait() {
+            return sizingTargetWait;
+        }
+    }
+
+    /**
+     * 会话模式
+     */
+    public enum SessionMode {
+        /**
+         * 线程第一次开启会话时借用连接并通过ThreadLocal保存,直到调用SimpleThreadLocalStore.clear()
+         */
+        thread,
+        /**
+         * 每条语句借用连接执行完立即归还,只在事务与临时表操作期间占用连接,适用于虚拟线程,默认模式
+         */
+        statement
+    }
+
+    /**
+     * 连接数调整方式
+     */
+    public enum SizingMode {
+        /**
+         * 连接数上限固定为最大连接数
+         */
+        fixed,
+        /**
+         * 按并发使用量与获取连接耗时在最小与最大连接数之间调整上限
+         */
+        adaptive
+    }
+
+    /**
+     * 连接池预热方式
+     */
+    public enum WarmUpMode {
+        /**
+         * 启动时逐个同步创建全部连接
+         */
+        sync,
+        /**
+         * 同步创建核心连接,剩余连接后台并行创建
+         */
+        parallel,
+        /**
+         * 只同步创建核心连接,其余按需创建
+         */
+        lazy
     }
 
     /**
@@ -338,6 +1096,8 @@ public class SimpleConfig {
         String value = source.toString();
         if (tClass.equals(Integer.class)) {
             return (T) Integer.valueOf(value);
+        } else if (tClass.equals(Long.class)) {
+            return (T) Long.valueOf(value);
         } else if (tClass.equals(Boolean.class)) {
             return (T) Boolean.valueOf(value);
         }
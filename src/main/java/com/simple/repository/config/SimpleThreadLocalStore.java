@@ -1,18 +1,43 @@
 package com.simple.repository.config;
 
+import com.simple.repository.connect.SimpleCancellation;
+import com.simple.repository.connect.SimpleQueryHint;
 import com.simple.repository.connect.SimpleSession;
-import com.simple.repository.master.exception.SimpleException;
-
-import java.sql.SQLException;
 
 /**
  * 会话存储
  * 用于存储当前线程的会话，每次数据库访问完结后需调用clear()释放资源
+ * 会话模式为statement时只在事务与pinned操作期间保存会话
  */
 public class SimpleThreadLocalStore {
 
     public static ThreadLocal<SimpleSession> session = new ThreadLocal<>();
 
+    /**
+     * 当前线程执行语句使用的连接池分区,为null时使用数据源自身的连接池
+     */
+    public static ThreadLocal<String> partition = new ThreadLocal<>();
+
+    /**
+     * 当前线程执行语句的查询超时时长(单位：秒),为null时使用数据源的默认值
+     */
+    public static ThreadLocal<Integer> queryTimeout = new ThreadLocal<>();
+
+    /**
+     * 当前线程执行语句登记的取消句柄
+     */
+    public static ThreadLocal<SimpleCancellation> cancellation = new ThreadLocal<>();
+
+    /**
+     * 当前线程查询语句的执行提示,为null时使用驱动默认值
+     */
+    public static ThreadLocal<SimpleQueryHint> queryHint = new ThreadLocal<>();
+
+    /**
+     * 当前线程事务外的查询是否只由主库执行,为null时优先由只读副本执行
+     */
+    public static ThreadLocal<Boolean> readPrimary = new ThreadLocal<>();
+
     /**
      * 清除线程数据
      * <p>
@@ -20,12 +45,11 @@ public class SimpleThreadLocalStore {
      * </p>
      */
     public static void clear() {
-        try {
-            session.get().clear();
-        } catch (SQLException e) {
-            throw new SimpleException("关闭连接会话失败");
+        SimpleSession current = session.get();
+        if (null == current) {
+            return;
         }
-        session.remove();
+        current.close();
     }
 
 
@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * redis会话
@@ -20,7 +21,12 @@ import java.util.Set;
  */
 public class RedisSession {
 
-    private static SimpleJedisPool simpleJedisPool;
+    private static volatile SimpleJedisPool simpleJedisPool;
+
+    /**
+     * 初始化SimpleJedisPool的锁,使用ReentrantLock避免虚拟线程等待时占住载体线程
+     */
+    private static final ReentrantLock INIT_LOCK = new ReentrantLock();
 
     private static final List<SimpleJedisPool> expiresPools = new ArrayList<>();
 
@@ -211,12 +217,21 @@ public class RedisSession {
     /**
      * 初始化SimpleJedisPool并异步执行回收过期链接
      */
-    private static synchronized void initSimpleJedisPool() {
-        if (null != simpleJedisPool && simpleJedisPool.expire()) {
-            expiresPools.add(simpleJedisPool);
+    private static void initSimpleJedisPool() {
+        INIT_LOCK.lock();
+        try {
+            // 等待锁期间其他线程可能已完成初始化
+            if (null != simpleJedisPool && !simpleJedisPool.expire()) {
+                return;
+            }
+            if (null != simpleJedisPool) {
+                expiresPools.add(simpleJedisPool);
+            }
+            simpleJedisPool = new SimpleJedisPool();
+            recyclePool();
+        } finally {
+            INIT_LOCK.unlock();
         }
-        simpleJedisPool = new SimpleJedisPool();
-        recyclePool();
     }
 
     /**
@@ -0,0 +1,189 @@
+package com.simple.repository.connect;
+
+import com.simple.repository.master.exception.SimpleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 查询取消句柄
+ * <p>
+ * 1.通过SimpleSession.cancellable()绑定到执行操作的线程,操作中执行的语句登记到该句柄
+ * 2.调用方或其他线程调用cancel()时,对执行中的语句调用Statement.cancel(),之后的语句直接抛出异常
+ * 3.cancelAfter()在指定时长后自动取消,用于看门狗
+ * 4.语句执行结束前解除登记,与取消互斥,不会取消到连接归还后再次借出执行的语句;被取消的连接照常归还连接池
+ * 5.子句柄随当前句柄一起取消,也可单独取消,如分片并行执行时一个分片失败只取消本次分发的其他分片
+ * 注意：取消与语句开始执行同时发生时,驱动可能忽略该次取消,该语句仍受查询超时限制
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-27
+ */
+public class SimpleCancellation {
+
+    private final static Logger log = LoggerFactory.getLogger(SimpleCancellation.class);
+
+    /**
+     * 定时取消的定时器
+     */
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "simple-query-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 登记与取消互斥,取消会发起网络请求,使用ReentrantLock避免虚拟线程占住载体线程
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 执行中的语句所在的连接,分片并行执行时可能有多个
+     */
+    private final List<SimpleConnection> running = new ArrayList<>();
+
+    /**
+     * 子句柄,取消当前句柄时一并取消
+     */
+    private final List<SimpleCancellation> children = new ArrayList<>();
+
+    private volatile boolean cancelled;
+
+    private ScheduledFuture<?> timer;
+
+    /**
+     * 取消执行中的语句
+     * <p>
+     * 取消后句柄范围内新执行的语句直接抛出异常,重复调用不做处理
+     * </p>
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            for (SimpleConnection connection : running) {
+                try {
+                    connection.cancel();
+                } catch (SQLException e) {
+                    log.warn("取消执行中的语句异常:" + e.getMessage());
+                }
+            }
+            for (SimpleCancellation child : children) {
+                child.cancel();
+            }
+            children.clear();
+            if (null != timer) {
+                timer.cancel(false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定时长后自动取消
+     *
+     * @param millis 时长(单位：毫秒)
+     * @return 返回当前句柄
+     */
+    public SimpleCancellation cancelAfter(long millis) {
+        lock.lock();
+        try {
+            if (null != timer) {
+                timer.cancel(false);
+            }
+            timer = WATCHDOG.schedule(this::cancel, millis, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * 是否已取消
+     *
+     * @return 返回是否已取消
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 创建子句柄
+     * <p>
+     * 当前句柄已取消时返回已取消的子句柄;使用结束后调用release()解除关联
+     * </p>
+     *
+     * @return 返回子句柄
+     */
+    SimpleCancellation child() {
+        SimpleCancellation child = new SimpleCancellation();
+        lock.lock();
+        try {
+            if (cancelled) {
+                child.cancelled = true;
+            } else {
+                children.add(child);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return child;
+    }
+
+    /**
+     * 解除子句柄的关联
+     *
+     * @param child 子句柄
+     */
+    void release(SimpleCancellation child) {
+        lock.lock();
+        try {
+            children.remove(child);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 登记执行语句的连接
+     *
+     * @param connection 执行语句的连接
+     */
+    void attach(SimpleConnection connection) {
+        lock.lock();
+        try {
+            if (cancelled) {
+                throw new SimpleException("查询已取消");
+            }
+            running.add(connection);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 解除登记,在语句执行结束、连接归还之前调用
+     *
+     * @param connection 执行语句的连接
+     */
+    void detach(SimpleConnection connection) {
+        lock.lock();
+        try {
+            running.remove(connection);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
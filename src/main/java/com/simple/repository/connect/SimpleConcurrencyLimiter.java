@@ -0,0 +1,197 @@
+package com.simple.repository.connect;
+
+import com.simple.repository.master.exception.SimpleOverloadException;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据源并发限制(AIMD)
+ * <p>
+ * 1.执行中的请求达到并发上限时直接抛出SimpleOverloadException,不排队等待,数据库变慢时排队不会无限增长
+ * 2.请求耗时(含获取连接)不超过目标值且并发使用过半时,上限每个周期约加1(每次成功加1/上限)
+ * 3.请求耗时超过目标值、出现超时类异常(SQLTransientException)或获取连接超时(SimpleOverloadException)时,上限降低10%,每个目标耗时内最多降低一次
+ * 4.上限始终在最小与最大并发数之间;其他异常只释放并发数,不调整上限
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-26
+ */
+public class SimpleConcurrencyLimiter {
+
+    /**
+     * 降低上限的比例
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    /**
+     * 请求耗时的目标值(单位：纳秒)
+     */
+    private final long targetLatencyNanos;
+
+    private final SimplePoolMetrics metrics;
+
+    /**
+     * 当前并发上限,以double的位保存,支持小数累加
+     */
+    private final AtomicLong limitBits;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong lastDecreaseNanos = new AtomicLong(System.nanoTime());
+
+    public SimpleConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatency, SimplePoolMetrics metrics) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatency);
+        this.metrics = metrics;
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit))));
+    }
+
+    /**
+     * 在并发限制内执行操作
+     *
+     * @param call 执行的操作
+     * @param <R>  返回的类型
+     * @return 返回执行结果
+     * @throws SQLException           执行语句异常
+     * @throws ClassNotFoundException 驱动加载异常
+     */
+    public <R> R execute(Call<R> call) throws SQLException, ClassNotFoundException {
+        return execute(call, true);
+    }
+
+    /**
+     * 在并发限制内执行操作
+     * <p>
+     * 流式查询等耗时取决于调用方处理速度的操作不采样耗时,只占用并发数,避免拉低上限
+     * </p>
+     *
+     * @param call    执行的操作
+     * @param sampled 是否按耗时调整上限
+     * @param <R>     返回的类型
+     * @return 返回执行结果
+     * @throws SQLException           执行语句异常
+     * @throws ClassNotFoundException 驱动加载异常
+     */
+    public <R> R execute(Call<R> call, boolean sampled) throws SQLException, ClassNotFoundException {
+        int active = acquire();
+        long start = System.nanoTime();
+        boolean dropped = false;
+        boolean succeeded = false;
+        try {
+            R result = call.call();
+            succeeded = true;
+            return result;
+        } catch (SQLTransientException | SimpleOverloadException e) {
+            // 连接池等待超时或等待队列已满,说明数据库已跟不上当前并发
+            dropped = true;
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+            if (dropped) {
+                decrease();
+            } else if (succeeded && sampled) {
+                sample(System.nanoTime() - start, active);
+            }
+        }
+    }
+
+    /**
+     * 当前并发上限
+     *
+     * @return 返回并发上限
+     */
+    public int getLimit() {
+        return (int) limit();
+    }
+
+    /**
+     * 执行中的请求数
+     *
+     * @return 返回执行中的请求数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 占用一个并发数,达到上限时拒绝
+     *
+     * @return 返回占用后执行中的请求数
+     */
+    private int acquire() {
+        while (true) {
+            int current = inFlight.get();
+            int limit = (int) limit();
+            if (current >= limit) {
+                metrics.limiterRejected();
+                throw new SimpleOverloadException("数据库并发请求已达上限:limit=" + limit + ",inFlight=" + current);
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * 按请求耗时调整上限
+     *
+     * @param nanos  请求耗时(单位：纳秒)
+     * @param active 请求开始时执行中的请求数
+     */
+    private void sample(long nanos, int active) {
+        if (nanos > targetLatencyNanos) {
+            decrease();
+            return;
+        }
+        // 并发使用不到一半时上限不是瓶颈,不再提高
+        if (active * 2 < limit()) {
+            return;
+        }
+        limitBits.updateAndGet(bits -> {
+            double limit = Double.longBitsToDouble(bits);
+            return Double.doubleToLongBits(Math.min(maxLimit, limit + 1 / limit));
+        });
+    }
+
+    /**
+     * 降低上限,每个目标耗时内最多降低一次,避免同一波慢请求把上限降到最低
+     */
+    private void decrease() {
+        long now = System.nanoTime();
+        long last = lastDecreaseNanos.get();
+        if (now - last < targetLatencyNanos || !lastDecreaseNanos.compareAndSet(last, now)) {
+            return;
+        }
+        limitBits.updateAndGet(bits -> Double.doubleToLongBits(Math.max(minLimit, Double.longBitsToDouble(bits) * BACKOFF_RATIO)));
+    }
+
+    private double limit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    /**
+     * 并发限制内执行的操作
+     *
+     * @param <R> 返回的类型
+     */
+    public interface Call<R> {
+
+        /**
+         * 执行操作
+         *
+         * @return 返回执行结果
+         * @throws SQLException           执行语句异常
+         * @throws ClassNotFoundException 驱动加载异常
+         */
+        R call() throws SQLException, ClassNotFoundException;
+    }
+}
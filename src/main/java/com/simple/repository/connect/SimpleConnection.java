@@ -1,8 +1,13 @@
 package com.simple.repository.connect;
 
+import com.simple.repository.config.SimpleThreadLocalStore;
+
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 数据库连接
@@ -21,10 +26,35 @@ public class SimpleConnection {
      */
     private Long timestamp;
 
+    /**
+     * 最近一次归还时间戳
+     */
+    private volatile long lastUsedTime;
+
+    /**
+     * 当前连接的存活时长（单位：毫秒）
+     */
+    private long lifetime = overdue_times;
+
+    /**
+     * PreparedStatement缓存,为null时不使用缓存
+     */
+    private SimpleStatementCache statementCache;
+
+    /**
+     * 执行中的语句,用于从其他线程取消
+     */
+    private volatile Statement running;
+
+    /**
+     * 默认查询超时时长(单位：秒),0为不限制
+     */
+    private int queryTimeout;
+
     /**
      * 连接过期时间 2小时（单位：毫秒）
      */
-    private static final Long overdue_times = 2 * 60 * 60 * 1000L;
+    public static final Long overdue_times = 2 * 60 * 60 * 1000L;
 
     public SimpleConnection(){
     }
@@ -32,6 +62,22 @@ public class SimpleConnection {
     public SimpleConnection(Connection connection){
         this.connection = connection;
         this.timestamp = System.currentTimeMillis();
+        this.lastUsedTime = this.timestamp;
+    }
+
+    /**
+     * 创建连接并设置存活时长
+     * <p>
+     * 存活时长随机缩短最多10%,避免同一时间创建的连接同时过期
+     * </p>
+     *
+     * @param connection  sql连接
+     * @param maxLifetime 最大存活时长（单位：毫秒）
+     */
+    public SimpleConnection(Connection connection, long maxLifetime) {
+        this(connection);
+        long jitter = maxLifetime / 10;
+        this.lifetime = jitter > 0 ? maxLifetime - ThreadLocalRandom.current().nextLong(jitter) : maxLifetime;
     }
 
     /**
@@ -43,6 +89,183 @@ public class SimpleConnection {
         return connection.createStatement();
     }
 
+    /**
+     * 执行查询
+     * <p>
+     * 当前线程指定了查询提示时使用按提示创建的Statement;
+     * 开启PreparedStatement缓存且sql可解析形状时使用缓存的PreparedStatement,否则使用传入的Statement
+     * </p>
+     * @param statement 无法使用缓存时执行的Statement
+     * @param sql 查询语句
+     * @return 返回查询结果
+     * @throws SQLException 执行语句异常
+     */
+    public ResultSet executeQuery(Statement statement, String sql) throws SQLException {
+        SimpleQueryHint hint = SimpleThreadLocalStore.queryHint.get();
+        if (null != hint) {
+            return executeQuery(hint, sql);
+        }
+        PreparedStatement prepared = null == statementCache ? null : statementCache.prepare(sql);
+        SimpleCancellation cancellation = begin(null == prepared ? statement : prepared);
+        try {
+            return null == prepared ? statement.executeQuery(sql) : prepared.executeQuery();
+        } finally {
+            end(cancellation);
+        }
+    }
+
+    /**
+     * 按查询提示执行查询
+     *
+     * @param hint 查询提示
+     * @param sql  查询语句
+     * @return 返回查询结果,关闭结果集时关闭Statement
+     * @throws SQLException 执行语句异常
+     */
+    private ResultSet executeQuery(SimpleQueryHint hint, String sql) throws SQLException {
+        Statement statement = hint.createStatement(connection);
+        try {
+            SimpleCancellation cancellation = begin(statement);
+            try {
+                return statement.executeQuery(sql);
+            } finally {
+                end(cancellation);
+            }
+        } catch (SQLException | RuntimeException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 按查询提示将自动提交的连接切换为只读
+     *
+     * @return 返回是否已切换,已切换的连接需调用restoreReadOnly()恢复
+     * @throws SQLException 切换只读异常
+     */
+    public boolean beginReadOnly() throws SQLException {
+        SimpleQueryHint hint = SimpleThreadLocalStore.queryHint.get();
+        if (null == hint || !Boolean.TRUE.equals(hint.getReadOnly())
+                || !connection.getAutoCommit() || connection.isReadOnly()) {
+            return false;
+        }
+        connection.setReadOnly(true);
+        return true;
+    }
+
+    /**
+     * 恢复beginReadOnly()切换的只读状态
+     *
+     * @param switched beginReadOnly()的返回值
+     * @throws SQLException 恢复异常
+     */
+    public void restoreReadOnly(boolean switched) throws SQLException {
+        if (switched) {
+            connection.setReadOnly(false);
+        }
+    }
+
+    /**
+     * 执行更新
+     * @param statement 无法使用缓存时执行的Statement
+     * @param sql 更新语句
+     * @return 返回变更数量
+     * @throws SQLException 执行语句异常
+     */
+    public int executeUpdate(Statement statement, String sql) throws SQLException {
+        PreparedStatement prepared = null == statementCache ? null : statementCache.prepare(sql);
+        SimpleCancellation cancellation = begin(null == prepared ? statement : prepared);
+        try {
+            return null == prepared ? statement.executeUpdate(sql) : prepared.executeUpdate();
+        } finally {
+            end(cancellation);
+        }
+    }
+
+    /**
+     * 执行更新并返回生成的主键
+     * @param statement 执行语句的Statement
+     * @param sql 更新语句
+     * @return 返回生成的主键,由调用方关闭
+     * @throws SQLException 执行语句异常
+     */
+    public ResultSet executeInsert(Statement statement, String sql) throws SQLException {
+        SimpleCancellation cancellation = begin(statement);
+        try {
+            statement.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
+            return statement.getGeneratedKeys();
+        } finally {
+            end(cancellation);
+        }
+    }
+
+    /**
+     * 执行批量语句
+     * @param statement 已添加批量语句的Statement
+     * @return 返回每条语句的变更数量
+     * @throws SQLException 执行语句异常
+     */
+    public int[] executeBatch(Statement statement) throws SQLException {
+        SimpleCancellation cancellation = begin(statement);
+        try {
+            return statement.executeBatch();
+        } finally {
+            end(cancellation);
+        }
+    }
+
+    /**
+     * 开始执行语句
+     * <p>
+     * 设置查询超时(当前线程指定的超时优先于默认值),缓存的PreparedStatement复用时同样重新设置;
+     * 当前线程绑定了取消句柄时登记到该句柄
+     * </p>
+     *
+     * @param statement 执行的语句
+     * @return 返回当前线程的取消句柄,未绑定时返回null
+     */
+    private SimpleCancellation begin(Statement statement) throws SQLException {
+        Integer timeout = SimpleThreadLocalStore.queryTimeout.get();
+        statement.setQueryTimeout(null == timeout ? queryTimeout : timeout);
+        SimpleCancellation cancellation = SimpleThreadLocalStore.cancellation.get();
+        running = statement;
+        if (null != cancellation) {
+            try {
+                cancellation.attach(this);
+            } catch (RuntimeException e) {
+                running = null;
+                throw e;
+            }
+        }
+        return cancellation;
+    }
+
+    /**
+     * 语句执行结束
+     *
+     * @param cancellation 开始执行时登记的取消句柄
+     */
+    private void end(SimpleCancellation cancellation) {
+        if (null != cancellation) {
+            cancellation.detach(this);
+        }
+        running = null;
+    }
+
+    /**
+     * 取消执行中的语句
+     * <p>
+     * 由其他线程调用,没有执行中的语句时不做处理
+     * </p>
+     * @throws SQLException 取消语句异常
+     */
+    public void cancel() throws SQLException {
+        Statement statement = running;
+        if (null != statement) {
+            statement.cancel();
+        }
+    }
+
     /**
      * 提交事务
      * @throws SQLException 提交事务失败异常
@@ -65,7 +288,35 @@ public class SimpleConnection {
      * @return 返回是否超时
      */
     public boolean overdue(){
-        return System.currentTimeMillis() - timestamp > overdue_times;
+        return System.currentTimeMillis() - timestamp > lifetime;
+    }
+
+    /**
+     * 判断连接是否可用
+     * @param timeout 校验等待时长（单位：秒）
+     * @return 返回是否可用
+     */
+    public boolean isValid(int timeout) {
+        try {
+            return null != connection && connection.isValid(timeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 空闲时长
+     * @return 返回距离最近一次归还的时长（单位：毫秒）
+     */
+    public long idleTime() {
+        return System.currentTimeMillis() - lastUsedTime;
+    }
+
+    /**
+     * 标记连接已归还
+     */
+    public void markUsed() {
+        this.lastUsedTime = System.currentTimeMillis();
     }
 
     /**
@@ -73,6 +324,9 @@ public class SimpleConnection {
      * @throws SQLException 关闭连接异常
      */
     public void close() throws SQLException {
+        if (null != statementCache) {
+            statementCache.clear();
+        }
         if(null != connection){
             connection.close();
         }
@@ -86,6 +340,14 @@ public class SimpleConnection {
         this.connection = connection;
     }
 
+    public void setQueryTimeout(int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    public void setStatementCache(SimpleStatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
     public Long getTimestamp() {
         return timestamp;
     }
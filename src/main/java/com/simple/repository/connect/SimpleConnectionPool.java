@@ -0,0 +1,604 @@
+package com.simple.repository.connect;
+
+import com.simple.repository.master.exception.SimpleException;
+import com.simple.repository.master.exception.SimpleOverloadException;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 数据库连接池
+ * <p>
+ * 1.空闲连接保存在无锁的双端队列中,归还的连接放在队首,优先复用最近使用的连接
+ * 2.连接总数不超过最大连接数,空闲连接不足且未达上限时按需新建
+ * 3.达到上限后获取连接的线程进入有界的等待队列,超过等待时长或等待队列已满时抛出SimpleOverloadException
+ * 4.归还连接时按先来后到直接移交给等待的线程,不经过空闲队列
+ * 5.连接数上限可在最大连接数内动态调整,调低后归还的多余连接直接关闭
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-12
+ */
+public class SimpleConnectionPool {
+
+    /**
+     * 空闲连接
+     */
+    private final ConcurrentLinkedDeque<SimpleConnection> idleConnections = new ConcurrentLinkedDeque<>();
+
+    /**
+     * 等待连接的线程
+     */
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 等待线程数
+     */
+    private final AtomicInteger waiterCount = new AtomicInteger();
+
+    /**
+     * 已创建的连接总数(空闲+使用中)
+     */
+    private final AtomicInteger totalCount = new AtomicInteger();
+
+    /**
+     * 使用中的连接数
+     */
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    /**
+     * 上次采样以来使用中连接数的峰值
+     */
+    private final AtomicInteger peakActiveCount = new AtomicInteger();
+
+    /**
+     * 连接创建器
+     */
+    private final ConnectionCreator creator;
+
+    /**
+     * 最大连接数
+     */
+    private final int maxSize;
+
+    /**
+     * 当前连接数上限,不超过最大连接数
+     */
+    private volatile int limit;
+
+    /**
+     * 获取连接的等待时长(单位：毫秒)
+     */
+    private final long acquireTimeout;
+
+    /**
+     * 最大等待线程数
+     */
+    private final int maxWaiting;
+
+    /**
+     * 监控指标
+     */
+    private final SimplePoolMetrics metrics = new SimplePoolMetrics(this);
+
+    /**
+     * 连接泄漏检测,未开启时为null
+     */
+    private volatile SimpleLeakDetector leakDetector;
+
+    public SimpleConnectionPool(ConnectionCreator creator, int maxSize, long acquireTimeout, int maxWaiting) {
+        this.creator = creator;
+        this.maxSize = maxSize;
+        this.limit = maxSize;
+        this.acquireTimeout = acquireTimeout;
+        this.maxWaiting = maxWaiting;
+    }
+
+    /**
+     * 填充连接
+     *
+     * @param size 新建连接数
+     * @throws SQLException           数据库连接异常
+     * @throws ClassNotFoundException 驱动加载异常
+     */
+    public void fill(int size) throws SQLException, ClassNotFoundException {
+        for (int i = 0; i < size; i++) {
+            SimpleConnection connection = tryCreate();
+            if (null == connection) {
+                return;
+            }
+            connection.markUsed();
+            handOff(connection, true);
+        }
+    }
+
+    /**
+     * 获取连接
+     * <p>
+     * 依次尝试空闲连接、新建连接,都失败则排队等待归还的连接
+     * </p>
+     *
+     * @return 返回数据库连接
+     * @throws SQLException           数据库连接异常
+     * @throws ClassNotFoundException 驱动加载异常
+     */
+    public SimpleConnection borrow() throws SQLException, ClassNotFoundException {
+        long start = System.nanoTime();
+        SimpleConnection connection = idleConnections.pollFirst();
+        if (null == connection) {
+            connection = tryCreate();
+        }
+        if (null == connection) {
+            connection = await();
+        }
+        metrics.acquired(System.nanoTime() - start);
+        int active = activeCount.incrementAndGet();
+        int peak;
+        while (active > (peak = peakActiveCount.get()) && !peakActiveCount.compareAndSet(peak, active)) {
+            // 并发更新峰值时重试
+        }
+        SimpleLeakDetector detector = leakDetector;
+        if (null != detector) {
+            detector.borrowed(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * 归还连接
+     * <p>
+     * 优先移交给等待中的线程,没有等待线程时放回空闲队列
+     * 连接总数超过当前上限且没有等待线程时直接关闭
+     * </p>
+     *
+     * @param connection 数据库连接
+     */
+    public void giveBack(SimpleConnection connection) {
+        if (null == connection) {
+            return;
+        }
+        connection.markUsed();
+        returned(connection);
+        activeCount.decrementAndGet();
+        if (totalCount.get() > limit && waiters.isEmpty()) {
+            metrics.overLimitClosed();
+            destroy(connection);
+            return;
+        }
+        handOff(connection, true);
+    }
+
+    /**
+     * 移交连接
+     *
+     * @param connection 数据库连接
+     * @param first      没有等待线程时是否放在空闲队列队首
+     */
+    private void handOff(SimpleConnection connection, boolean first) {
+        while (null != connection) {
+            Waiter waiter;
+            while (null != (waiter = waiters.poll())) {
+                if (waiter.offer(connection)) {
+                    return;
+                }
+            }
+            if (first) {
+                idleConnections.offerFirst(connection);
+            } else {
+                idleConnections.offerLast(connection);
+            }
+            // 放回空闲队列后若又有线程进入等待,则取回连接重新移交
+            if (waiters.isEmpty()) {
+                return;
+            }
+            connection = idleConnections.pollFirst();
+        }
+    }
+
+    /**
+     * 丢弃借出的连接
+     * <p>
+     * 关闭连接并释放名额,唤醒队首的等待线程尝试新建连接
+     * </p>
+     *
+     * @param connection 数据库连接
+     */
+    public void discard(SimpleConnection connection) {
+        returned(connection);
+        activeCount.decrementAndGet();
+        destroy(connection);
+    }
+
+    /**
+     * 关闭连接并释放名额
+     *
+     * @param connection 数据库连接
+     */
+    private void destroy(SimpleConnection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        } finally {
+            totalCount.decrementAndGet();
+            Waiter waiter = waiters.peek();
+            if (null != waiter) {
+                LockSupport.unpark(waiter.thread);
+            }
+        }
+    }
+
+    /**
+     * 关闭超过存活时长的连接
+     *
+     * @param connection 数据库连接
+     */
+    public void retire(SimpleConnection connection) {
+        metrics.lifetimeClosed();
+        discard(connection);
+    }
+
+    /**
+     * 维护空闲连接
+     * <p>
+     * 逐个取出空闲连接(已被借出的跳过)并检查:
+     * 1.超过存活时长的连接关闭
+     * 2.连接总数大于最小连接数时,空闲超时的连接关闭
+     * 3.校验失败的连接关闭
+     * 4.检查通过的连接放回空闲队列队尾,不打乱最近使用的顺序
+     * 最后将连接数补足到最小连接数
+     * </p>
+     *
+     * @param minSize           最小连接数
+     * @param idleTimeout       空闲超时时长（单位：毫秒）
+     * @param validationTimeout 校验等待时长（单位：秒）
+     * @return 返回关闭的连接数
+     * @throws SQLException           数据库连接异常
+     * @throws ClassNotFoundException 驱动加载异常
+     */
+    public int housekeep(int minSize, long idleTimeout, int validationTimeout) throws SQLException, ClassNotFoundException {
+        int evicted = 0;
+        for (SimpleConnection connection : idleConnections.toArray(new SimpleConnection[0])) {
+            if (!idleConnections.removeFirstOccurrence(connection)) {
+                continue;
+            }
+            if (connection.overdue()) {
+                metrics.lifetimeClosed();
+                destroy(connection);
+            } else if (totalCount.get() > minSize && connection.idleTime() > idleTimeout) {
+                metrics.idleEvicted();
+                destroy(connection);
+            } else if (!connection.isValid(validationTimeout)) {
+                metrics.invalidClosed();
+                destroy(connection);
+            } else {
+                handOff(connection, false);
+                continue;
+            }
+            evicted++;
+        }
+        fill(minSize - totalCount.get());
+        return evicted;
+    }
+
+    /**
+     * 开启连接泄漏检测
+     *
+     * @param threshold 泄漏告警阈值(单位：毫秒)
+     */
+    public void enableLeakDetection(long threshold) {
+        leakDetector = new SimpleLeakDetector(threshold);
+    }
+
+    /**
+     * 检测连接泄漏
+     * <p>
+     * 占用超过阈值的连接输出告警,借出线程已结束的连接关闭并释放名额
+     * </p>
+     *
+     * @return 返回回收的连接数
+     */
+    public int detectLeaks() {
+        SimpleLeakDetector detector = leakDetector;
+        if (null == detector) {
+            return 0;
+        }
+        List<SimpleConnection> reclaims = detector.scan();
+        for (SimpleConnection connection : reclaims) {
+            metrics.reclaimed();
+            discard(connection);
+        }
+        return reclaims.size();
+    }
+
+    /**
+     * 占用超过泄漏阈值的连接
+     *
+     * @return 返回占用线程名称与占用时长,未开启泄漏检测时为空
+     */
+    public List<String> getLeakSuspects() {
+        SimpleLeakDetector detector = leakDetector;
+        return null == detector ? Collections.emptyList() : detector.suspects();
+    }
+
+    /**
+     * 记录连接已归还
+     */
+    private void returned(SimpleConnection connection) {
+        SimpleLeakDetector detector = leakDetector;
+        if (null != detector) {
+            detector.returned(connection);
+        }
+    }
+
+    /**
+     * 关闭所有空闲连接
+     */
+    public void close() {
+        SimpleConnection connection;
+        while (null != (connection = idleConnections.pollFirst())) {
+            destroy(connection);
+        }
+    }
+
+    /**
+     * 调整连接数上限
+     * <p>
+     * 调高时唤醒等待线程尝试新建连接,调低时关闭多余的空闲连接,
+     * 使用中的多余连接在归还时关闭
+     * </p>
+     *
+     * @param newLimit 新的连接数上限,不超过最大连接数
+     */
+    public void resize(int newLimit) {
+        int oldLimit = limit;
+        limit = Math.max(1, Math.min(newLimit, maxSize));
+        if (limit > oldLimit) {
+            int wake = limit - oldLimit;
+            for (Waiter waiter : waiters) {
+                if (wake-- <= 0) {
+                    break;
+                }
+                LockSupport.unpark(waiter.thread);
+            }
+            return;
+        }
+        SimpleConnection connection;
+        // 优先关闭队尾最久未使用的连接
+        while (totalCount.get() > limit && null != (connection = idleConnections.pollLast())) {
+            metrics.idleEvicted();
+            destroy(connection);
+        }
+    }
+
+    /**
+     * 读取并重置使用中连接数的峰值
+     *
+     * @return 返回上次采样以来使用中连接数的峰值
+     */
+    int resetPeakActive() {
+        return peakActiveCount.getAndSet(activeCount.get());
+    }
+
+    /**
+     * 名额未满时新建连接
+     *
+     * @return 返回新建的连接,名额已满返回null
+     */
+    private SimpleConnection tryCreate() throws SQLException, ClassNotFoundException {
+        while (true) {
+            int total = totalCount.get();
+            if (total >= limit) {
+                return null;
+            }
+            if (totalCount.compareAndSet(total, total + 1)) {
+                break;
+            }
+        }
+        try {
+            SimpleConnection connection = creator.create();
+            metrics.created();
+            return connection;
+        } catch (SQLException | ClassNotFoundException | RuntimeException e) {
+            totalCount.decrementAndGet();
+            metrics.createFailed();
+            throw e;
+        }
+    }
+
+    /**
+     * 排队等待连接
+     *
+     * @return 返回移交的连接
+     */
+    private SimpleConnection await() throws SQLException, ClassNotFoundException {
+        if (waiterCount.incrementAndGet() > maxWaiting) {
+            waiterCount.decrementAndGet();
+            metrics.rejected();
+            throw new SimpleOverloadException("数据库连接等待队列已满:maxWaiting=" + maxWaiting);
+        }
+        Waiter waiter = new Waiter();
+        waiters.offer(waiter);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeout);
+            while (true) {
+                SimpleConnection connection = waiter.connection();
+                if (null != connection) {
+                    return connection;
+                }
+                // 入队后再次检查空闲连接与名额,避免与归还线程错过
+                connection = idleConnections.pollFirst();
+                if (null == connection) {
+                    connection = tryCreate();
+                }
+                if (null != connection) {
+                    return claim(waiter, connection);
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    if (waiter.cancel()) {
+                        metrics.timeout();
+                        throw new SimpleOverloadException("获取数据库连接超时:acquireTimeout=" + acquireTimeout + "ms");
+                    }
+                    return waiter.connection();
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    if (waiter.cancel()) {
+                        throw new SimpleException("等待数据库连接被中断");
+                    }
+                    return waiter.connection();
+                }
+            }
+        } catch (SQLException | ClassNotFoundException | RuntimeException e) {
+            // 新建连接失败时可能已有连接移交过来,需归还
+            if (!waiter.cancel()) {
+                handOff(waiter.connection(), true);
+            }
+            throw e;
+        } finally {
+            waiters.remove(waiter);
+            waiterCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 等待线程自行获取到连接
+     * <p>
+     * 如果此时已有其他线程移交了连接,则把多出的连接归还
+     * </p>
+     */
+    private SimpleConnection claim(Waiter waiter, SimpleConnection connection) {
+        if (waiter.cancel()) {
+            return connection;
+        }
+        handOff(connection, true);
+        return waiter.connection();
+    }
+
+    /**
+     * 空闲连接数
+     *
+     * @return 返回空闲连接数
+     */
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    /**
+     * 连接总数
+     *
+     * @return 返回连接总数
+     */
+    public int getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * 等待线程数
+     *
+     * @return 返回等待线程数
+     */
+    public int getWaiterCount() {
+        return waiterCount.get();
+    }
+
+    /**
+     * 最大连接数
+     *
+     * @return 返回最大连接数
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 当前连接数上限
+     *
+     * @return 返回当前连接数上限
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * 使用中的连接数
+     *
+     * @return 返回使用中的连接数
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * 监控指标
+     *
+     * @return 返回监控指标
+     */
+    public SimplePoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 连接创建器
+     */
+    public interface ConnectionCreator {
+
+        /**
+         * 创建数据库连接
+         *
+         * @return 返回数据库连接
+         * @throws SQLException           数据库连接异常
+         * @throws ClassNotFoundException 驱动加载异常
+         */
+        SimpleConnection create() throws SQLException, ClassNotFoundException;
+    }
+
+    /**
+     * 等待中的线程
+     * <p>
+     * state 为null表示等待中,为CANCELLED表示已放弃,为连接对象表示已移交
+     * </p>
+     */
+    private static class Waiter {
+
+        private static final Object CANCELLED = new Object();
+
+        private final Thread thread = Thread.currentThread();
+
+        private final AtomicReference<Object> state = new AtomicReference<>();
+
+        /**
+         * 移交连接
+         */
+        boolean offer(SimpleConnection connection) {
+            if (state.compareAndSet(null, connection)) {
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 放弃等待
+         */
+        boolean cancel() {
+            return state.compareAndSet(null, CANCELLED);
+        }
+
+        /**
+         * 已移交的连接
+         */
+        SimpleConnection connection() {
+            Object value = state.get();
+            return value instanceof SimpleConnection ? (SimpleConnection) value : null;
+        }
+    }
+}
@@ -2,11 +2,29 @@ package com.simple.repository.connect;
 
 import com.simple.repository.config.SimpleConfig;
 import com.simple.repository.util.SimpleStringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 数据库连接管理
@@ -22,11 +40,55 @@ import java.util.concurrent.CopyOnWriteArrayList;
  */
 public class SimpleDataSource {
 
+    private final static Logger log = LoggerFactory.getLogger(SimpleDataSource.class);
+
     /**
      * 链接池
      */
-    private static final List<SimpleConnection> CONNECTION_POOL = new CopyOnWriteArrayList<>();
+    private SimpleConnectionPool connectionPool;
 
+    /**
+     * 释放数据源时等待预热线程结束的时长(单位：毫秒)
+     */
+    private static final long WARM_UP_RELEASE_TIMEOUT = 5000;
+
+    /**
+     * 连接池维护线程
+     * <p>
+     * 定时校验空闲连接、关闭空闲超时与超过存活时长的连接,获取连接时不再做任何校验
+     * 开启泄漏检测时同时检查借出中的连接
+     * </p>
+     */
+    private static final ScheduledExecutorService HOUSEKEEPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "simple-datasource-housekeeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 数据源配置
+     */
+    private SimpleConfig.DataSource config;
+
+    /**
+     * 预热结果,连接池达到预热目标连接数时完成,值为预热后的连接数
+     */
+    private final CompletableFuture<Integer> warmUpFuture = new CompletableFuture<>();
+
+    /**
+     * 预热线程池,并行预热时创建
+     */
+    private ExecutorService warmUpExecutor;
+
+    /**
+     * 提交到维护线程的定时任务,数据源初始化失败时取消
+     */
+    private final List<ScheduledFuture<?>> scheduledTasks = new ArrayList<>();
+
+    /**
+     * 已注册的JMX监控指标名称
+     */
+    private ObjectName objectName;
 
     /**
      * 数据库连接url
@@ -48,102 +110,551 @@ public class SimpleDataSource {
      */
     private String driver;
 
+    /**
+     * 数据源名称
+     */
+    private String name;
+
+    /**
+     * 只读副本路由,未配置只读副本时为null
+     */
+    private SimpleReplicaRouter replicaRouter;
+
+    /**
+     * 分片路由,未配置分片时为null
+     */
+    private SimpleShardRouter shardRouter;
+
+    /**
+     * 对冲读取,未开启时为null
+     */
+    private SimpleHedgedReader hedgedReader;
+
+    /**
+     * 分组表使用的数据源,key:表名
+     */
+    private final Map<String, SimpleDataSource> tableDataSources = new HashMap<>();
+
+    /**
+     * 连接池分区,key:分区名称
+     */
+    private final Map<String, SimpleDataSource> partitions = new HashMap<>();
+
+    /**
+     * 并发限制,未开启时为null
+     */
+    private SimpleConcurrencyLimiter limiter;
+
+    /**
+     * 异步操作的线程池,只有主库创建
+     */
+    private ThreadPoolExecutor asyncExecutor;
+
+    /**
+     * sql形状执行次数,未开启PreparedStatement缓存时为null
+     */
+    private SimpleStatementCache.ShapeCounter shapeCounter;
+
+    /**
+     * 最小连接数
+     */
+    private int minSize;
+
     /**
      * 数据源对象
      */
-    private static SimpleDataSource simpleDataSource = null;
+    private static volatile SimpleDataSource simpleDataSource = null;
+
+    /**
+     * 加载数据源的锁
+     * <p>
+     * 使用ReentrantLock而非synchronized,虚拟线程等待加载时不会占住载体线程
+     * </p>
+     */
+    private static final ReentrantLock INIT_LOCK = new ReentrantLock();
 
     private SimpleDataSource() {
     }
 
     /**
      * 加载数据源
+     * <p>
+     * 驱动只加载一次,连接池按配置的预热方式初始化
+     * 配置了只读副本时同时加载副本数据源,并定时检查副本的复制延迟
+     * 配置了分片时同时加载各分片数据源
+     * 配置了分组时为每个分组加载独立的数据源与连接池
+     * 配置了连接池分区时,每个分区以独立的连接池加载为该数据源的子数据源
+     * 任一数据源加载失败时,关闭已加载的数据源(连接池、预热、定时任务与JMX监控指标)后抛出异常
+     * </p>
      * @param dataSource 数据库连接配置
      * @return 返回数据源对象
      * @throws SQLException 数据库连接异常
      * @throws ClassNotFoundException 类型转换异常
      */
-    public static synchronized SimpleDataSource initSimpleDataSource(SimpleConfig.DataSource dataSource) throws SQLException, ClassNotFoundException {
-        if (null == simpleDataSource) {
-            simpleDataSource = new SimpleDataSource();
-            simpleDataSource.url = dataSource.getUrl();
-            simpleDataSource.username = dataSource.getUsername();
-            simpleDataSource.password = dataSource.getPassword();
-            simpleDataSource.driver = SimpleStringUtils.isEmpty(dataSource.getDriver()) ? "com.mysql.cj.jdbc.Driver" : dataSource.getDriver();
-            simpleDataSource.initConnectPool(DEFAULT_CONNECT_POOL_SIZE);
+    public static SimpleDataSource initSimpleDataSource(SimpleConfig.DataSource dataSource) throws SQLException, ClassNotFoundException {
+        if (null != simpleDataSource) {
+            return simpleDataSource;
+        }
+        INIT_LOCK.lock();
+        try {
+            if (null != simpleDataSource) {
+                return simpleDataSource;
+            }
+            List<SimpleDataSource> created = new ArrayList<>();
+            try {
+                SimpleDataSource simpleDataSource = create(DEFAULT_NAME, dataSource);
+                created.add(simpleDataSource);
+                if (!dataSource.getReplicas().isEmpty()) {
+                    List<SimpleDataSource> replicas = new ArrayList<>();
+                    for (int i = 0; i < dataSource.getReplicas().size(); i++) {
+                        replicas.add(create(DEFAULT_NAME + "-replica-" + i, dataSource.getReplicas().get(i)));
+                        created.add(replicas.get(i));
+                    }
+                    SimpleReplicaRouter router = new SimpleReplicaRouter(replicas, dataSource.getReplicaMaxLag(), dataSource.getValidationTimeout(),
+                            dataSource.getReplicaLagQuery());
+                    long period = dataSource.getReplicaCheckPeriod();
+                    simpleDataSource.scheduledTasks.add(HOUSEKEEPER.scheduleWithFixedDelay(router::checkLag, 0, period, TimeUnit.MILLISECONDS));
+                    simpleDataSource.replicaRouter = router;
+                    if (dataSource.getReplicaHedge()) {
+                        simpleDataSource.hedgedReader = new SimpleHedgedReader(router, simpleDataSource,
+                                dataSource.getReplicaHedgePercentile(), dataSource.getReplicaHedgeMinDelay(), dataSource.getReplicaHedgeBudget());
+                    }
+                }
+                if (!dataSource.getShards().isEmpty()) {
+                    List<SimpleDataSource> shards = new ArrayList<>();
+                    for (int i = 0; i < dataSource.getShards().size(); i++) {
+                        shards.add(create("shard-" + i, dataSource.getShards().get(i)));
+                        created.add(shards.get(i));
+                    }
+                    simpleDataSource.shardRouter = new SimpleShardRouter(shards, dataSource.getShardTables());
+                }
+                Map<String, SimpleDataSource> groups = new HashMap<>();
+                for (Map.Entry<String, SimpleConfig.DataSource> entry : dataSource.getGroups().entrySet()) {
+                    SimpleDataSource group = create(entry.getKey(), entry.getValue());
+                    created.add(group);
+                    groups.put(entry.getKey(), group);
+                }
+                for (Map.Entry<String, String> entry : dataSource.getGroupTables().entrySet()) {
+                    simpleDataSource.tableDataSources.put(entry.getKey(), groups.get(entry.getValue()));
+                }
+                simpleDataSource.asyncExecutor = createAsyncExecutor(dataSource);
+                SimpleDataSource.simpleDataSource = simpleDataSource;
+                return simpleDataSource;
+            } catch (SQLException | ClassNotFoundException | RuntimeException | Error e) {
+                for (SimpleDataSource simpleDataSource : created) {
+                    simpleDataSource.release();
+                }
+                throw e;
+            }
+        } finally {
+            INIT_LOCK.unlock();
+        }
+    }
+
+    /**
+     * 创建数据源
+     *
+     * @param name       数据源名称
+     * @param dataSource 数据库连接配置
+     * @return 返回数据源对象
+     */
+    private static SimpleDataSource create(String name, SimpleConfig.DataSource dataSource) throws SQLException, ClassNotFoundException {
+        SimpleDataSource simpleDataSource = new SimpleDataSource();
+        try {
+            init(simpleDataSource, name, dataSource);
+        } catch (SQLException | ClassNotFoundException | RuntimeException | Error e) {
+            simpleDataSource.release();
+            throw e;
         }
         return simpleDataSource;
     }
 
+    /**
+     * 加载数据源的配置、连接池、定时任务与连接池分区
+     *
+     * @param simpleDataSource 数据源对象
+     * @param name             数据源名称
+     * @param dataSource       数据库连接配置
+     */
+    private static void init(SimpleDataSource simpleDataSource, String name, SimpleConfig.DataSource dataSource) throws SQLException, ClassNotFoundException {
+        simpleDataSource.name = name;
+        simpleDataSource.url = dataSource.getUrl();
+        simpleDataSource.username = dataSource.getUsername();
+        simpleDataSource.password = dataSource.getPassword();
+        simpleDataSource.driver = SimpleStringUtils.isEmpty(dataSource.getDriver()) ? "com.mysql.cj.jdbc.Driver" : dataSource.getDriver();
+        simpleDataSource.config = dataSource;
+        int maxSize = null == dataSource.getMaxSize() ? MAX_CONNECT_POOL_SIZE : dataSource.getMaxSize();
+        int minSize = Math.min(maxSize, null == dataSource.getMinSize() ? MIN_CONNECT_POOL_SIZE : dataSource.getMinSize());
+        int initialSize = Math.max(minSize, Math.min(maxSize, null == dataSource.getInitialSize() ? DEFAULT_CONNECT_POOL_SIZE : dataSource.getInitialSize()));
+        simpleDataSource.minSize = minSize;
+        simpleDataSource.connectionPool = new SimpleConnectionPool(simpleDataSource::connect, maxSize,
+                dataSource.getAcquireTimeout(), dataSource.getMaxWaiting());
+        if (dataSource.getLeakDetectionThreshold() > 0) {
+            simpleDataSource.connectionPool.enableLeakDetection(dataSource.getLeakDetectionThreshold());
+        }
+        if (dataSource.getStatementCacheSize() > 0) {
+            simpleDataSource.shapeCounter = new SimpleStatementCache.ShapeCounter(dataSource.getStatementCacheSize(),
+                    dataSource.getStatementPromoteThreshold(), dataSource.getStatementServerMax(), simpleDataSource.connectionPool.getMetrics());
+        }
+        if (dataSource.getLimiter()) {
+            int limiterMax = null == dataSource.getLimiterMax() ? maxSize : dataSource.getLimiterMax();
+            simpleDataSource.limiter = new SimpleConcurrencyLimiter(dataSource.getLimiterInitial(), dataSource.getLimiterMin(),
+                    limiterMax, dataSource.getLimiterTargetLatency(), simpleDataSource.connectionPool.getMetrics());
+            simpleDataSource.connectionPool.getMetrics().setLimiter(simpleDataSource.limiter);
+        }
+        Class.forName(simpleDataSource.driver);
+        if (dataSource.getJmx()) {
+            simpleDataSource.registerMBean(name);
+        }
+        if (SimpleConfig.SizingMode.adaptive == dataSource.getSizing()) {
+            simpleDataSource.connectionPool.resize(initialSize);
+            SimplePoolSizer sizer = new SimplePoolSizer(simpleDataSource.connectionPool, minSize, maxSize, dataSource.getSizingTargetWait());
+            long sizingPeriod = dataSource.getSizingPeriod();
+            simpleDataSource.scheduledTasks.add(HOUSEKEEPER.scheduleWithFixedDelay(() -> simpleDataSource.resize(sizer),
+                    sizingPeriod, sizingPeriod, TimeUnit.MILLISECONDS));
+        }
+        simpleDataSource.initConnectPool(initialSize);
+        long period = dataSource.getHousekeepingPeriod();
+        simpleDataSource.scheduledTasks.add(HOUSEKEEPER.scheduleWithFixedDelay(simpleDataSource::housekeep, period, period, TimeUnit.MILLISECONDS));
+        for (Map.Entry<String, SimpleConfig.DataSource> entry : dataSource.getPartitions().entrySet()) {
+            simpleDataSource.partitions.put(entry.getKey(), create(name + "." + entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * 释放加载失败的数据源
+     * <p>
+     * 取消定时任务与预热,关闭连接池的连接,注销JMX监控指标,并释放已加载的连接池分区;
+     * 异常只记录日志,不覆盖加载失败的原因
+     * </p>
+     */
+    private void release() {
+        for (ScheduledFuture<?> task : scheduledTasks) {
+            task.cancel(false);
+        }
+        if (null != warmUpExecutor) {
+            warmUpExecutor.shutdownNow();
+            try {
+                if (!warmUpExecutor.awaitTermination(WARM_UP_RELEASE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    log.warn("释放数据源:name={},预热线程未在{}ms内结束", name, WARM_UP_RELEASE_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        warmUpFuture.cancel(false);
+        if (null != connectionPool) {
+            connectionPool.close();
+        }
+        if (null != objectName) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                log.error("注销连接池监控指标失败:" + e.getMessage());
+            }
+        }
+        for (SimpleDataSource partition : partitions.values()) {
+            partition.release();
+        }
+        log.warn("数据源加载失败,已释放:name={}", name);
+    }
+
+    /**
+     * 创建异步操作的线程池
+     * <p>
+     * 线程数不超过连接池最大连接数,线程按需创建、空闲60秒后回收;队列已满时拒绝,由调用方返回过载异常
+     * </p>
+     *
+     * @param dataSource 主库配置
+     * @return 返回线程池
+     */
+    private static ThreadPoolExecutor createAsyncExecutor(SimpleConfig.DataSource dataSource) {
+        int maxSize = null == dataSource.getMaxSize() ? MAX_CONNECT_POOL_SIZE : dataSource.getMaxSize();
+        int threads = Math.max(1, null == dataSource.getAsyncThreads() ? maxSize : dataSource.getAsyncThreads());
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, dataSource.getAsyncQueueSize())), runnable -> {
+            Thread thread = new Thread(runnable, "simple-async-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 选择只读副本
+     * <p>
+     * 未配置只读副本或所有副本都不可用时返回null,由主库执行
+     * </p>
+     *
+     * @return 返回只读副本
+     */
+    public SimpleReplicaRouter.Replica chooseReplica() {
+        return null == replicaRouter ? null : replicaRouter.choose();
+    }
+
+    /**
+     * 对冲读取
+     *
+     * @return 返回对冲读取,未开启时返回null
+     */
+    public SimpleHedgedReader getHedgedReader() {
+        return hedgedReader;
+    }
+
+    /**
+     * 分片路由
+     *
+     * @return 返回分片路由,未配置分片时返回null
+     */
+    public SimpleShardRouter getShardRouter() {
+        return shardRouter;
+    }
+
+    /**
+     * 表所属分组的数据源
+     *
+     * @param table 表名
+     * @return 返回分组数据源,表未分组时返回null
+     */
+    public SimpleDataSource getTableDataSource(String table) {
+        return tableDataSources.get(table);
+    }
+
+    /**
+     * 连接池分区
+     * <p>
+     * 当前数据源未配置该分区时使用自身的连接池
+     * </p>
+     *
+     * @param partition 分区名称,为null时返回自身
+     * @return 返回分区的数据源
+     */
+    public SimpleDataSource getPartition(String partition) {
+        if (null == partition) {
+            return this;
+        }
+        SimpleDataSource dataSource = partitions.get(partition);
+        return null == dataSource ? this : dataSource;
+    }
+
+    /**
+     * 并发限制
+     *
+     * @return 返回并发限制,未开启时返回null
+     */
+    public SimpleConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * 异步操作的线程池
+     *
+     * @return 返回线程池,非主库返回null
+     */
+    public ExecutorService getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * 数据源名称
+     *
+     * @return 返回数据源名称
+     */
+    public String getName() {
+        return name;
+    }
+
 
     /**
      * 获取活跃的数据库连接
-     * 1.如果数据库连接池连接数小于最小连接数量则会新建连接
-     * 2.如果连接已经超时则关闭连接后重新获取
+     * 1.优先复用空闲连接,没有空闲连接且未达最大连接数则新建连接
+     * 2.达到最大连接数则等待归还的连接,超过等待时长抛出异常
+     * 连接的有效性与存活时长由维护线程检查,此处不做校验
      *
      * @return 返回数据库连接
      * @throws SQLException 数据连接异常
      * @throws ClassNotFoundException 类型转换异常
      */
-    public synchronized SimpleConnection activeConnect() throws SQLException, ClassNotFoundException {
-        SimpleConnection connection = CONNECTION_POOL.remove(0);
-        if (MIN_CONNECT_POOL_SIZE > CONNECTION_POOL.size()) {
-            initConnectPool(1);
-        }
-        // 过期则重新获取
-        if (connection.overdue()) {
-            connection.close();
-            return activeConnect();
-        }
-        return connection;
+    public SimpleConnection activeConnect() throws SQLException, ClassNotFoundException {
+        return connectionPool.borrow();
     }
 
     /**
      * 归还连接
      * <p>
-     *     判断是否超时，如果超时则关闭连接，否则放回连接池
+     *     判断是否超时，如果超时则关闭连接，否则移交给等待的线程或放回连接池
      * </p>
      * @param connection 数据库连接对象
      * @throws SQLException 数据库异常
      */
     public void giveBack(SimpleConnection connection) throws SQLException {
-        if (connection.overdue() || MAX_CONNECT_POOL_SIZE < CONNECTION_POOL.size()) {
-            connection.close();
+        if (connection.overdue()) {
+            connectionPool.retire(connection);
             return;
         }
-        CONNECTION_POOL.add(connection);
+        connectionPool.giveBack(connection);
+    }
+
+    /**
+     * 连接池监控指标
+     *
+     * @return 返回监控指标
+     */
+    public SimplePoolMetrics getMetrics() {
+        return connectionPool.getMetrics();
+    }
+
+    /**
+     * 注册连接池监控指标到JMX
+     * <p>
+     * 注册失败只记录日志,不影响数据源使用
+     * </p>
+     *
+     * @param name 数据源名称
+     */
+    private void registerMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("com.simple.repository:type=SimpleDataSource,name=" + name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(connectionPool.getMetrics(), objectName);
+            this.objectName = objectName;
+        } catch (Exception e) {
+            log.error("注册连接池监控指标失败:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 预热结果
+     * <p>
+     * 连接池达到预热目标连接数时完成,值为预热后的连接数
+     * </p>
+     *
+     * @return 返回预热结果
+     */
+    public CompletableFuture<Integer> getWarmUpFuture() {
+        return warmUpFuture;
     }
 
     /**
      * 初始化连接池
+     * <p>
+     * sync: 逐个同步创建全部连接
+     * parallel: 同步创建核心连接,剩余连接在后台并行创建
+     * lazy: 只同步创建核心连接,其余连接在使用时按需创建
+     * </p>
      */
     private void initConnectPool(int initSize) throws SQLException, ClassNotFoundException {
-        for (int i = 0; i < initSize; i++) {
-            CONNECTION_POOL.add(connect());
+        long start = System.currentTimeMillis();
+        SimpleConfig.WarmUpMode mode = config.getWarmUp();
+        int coreSize = SimpleConfig.WarmUpMode.sync == mode ? initSize : Math.min(config.getWarmUpCore(), initSize);
+        connectionPool.fill(coreSize);
+        if (SimpleConfig.WarmUpMode.parallel != mode || coreSize >= initSize) {
+            warmedUp(mode, start);
+            return;
+        }
+        int threads = Math.max(1, Math.min(config.getWarmUpThreads(), initSize - coreSize));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "simple-datasource-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        warmUpExecutor = executor;
+        AtomicInteger remaining = new AtomicInteger(initSize - coreSize);
+        for (int i = coreSize; i < initSize; i++) {
+            executor.execute(() -> {
+                try {
+                    connectionPool.fill(1);
+                } catch (Throwable e) {
+                    log.error("连接池预热:创建连接失败:" + e.getMessage());
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    executor.shutdown();
+                    warmedUp(mode, start);
+                }
+            });
+        }
+    }
+
+    /**
+     * 预热完成
+     */
+    private void warmedUp(SimpleConfig.WarmUpMode mode, long start) {
+        int total = connectionPool.getTotalCount();
+        log.info("连接池预热完成:name={},mode={},total={},cost={}ms", name, mode, total, System.currentTimeMillis() - start);
+        warmUpFuture.complete(total);
+    }
+
+    /**
+     * 维护连接池
+     * <p>
+     * 异常只记录日志,不影响下一次维护
+     * </p>
+     */
+    private void housekeep() {
+        try {
+            int reclaimed = connectionPool.detectLeaks();
+            if (reclaimed > 0) {
+                log.warn("连接池维护:name={},回收已结束线程占用的连接{}个", name, reclaimed);
+            }
+            int evicted = connectionPool.housekeep(minSize, config.getIdleTimeout(), config.getValidationTimeout());
+            if (evicted > 0) {
+                log.info("连接池维护:name={},关闭失效或空闲连接{}个,total={},idle={}", name, evicted, connectionPool.getTotalCount(), connectionPool.getIdleCount());
+            }
+        } catch (Throwable e) {
+            log.error("连接池维护异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 自适应调整连接数上限
+     * <p>
+     * 异常只记录日志,不影响下一次调整
+     * </p>
+     */
+    private void resize(SimplePoolSizer sizer) {
+        try {
+            sizer.resize();
+        } catch (Throwable e) {
+            log.error("连接池自适应调整异常:name={},msg={}", name, e.getMessage());
         }
     }
 
     /**
      * 数据库连接
      */
-    private SimpleConnection connect() throws ClassNotFoundException, SQLException {
-        Class.forName(driver);
-        return new SimpleConnection(DriverManager.getConnection(url, username, password));
+    private SimpleConnection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, username, password);
+        SimpleConnection simpleConnection = new SimpleConnection(connection, config.getMaxLifetime());
+        simpleConnection.setQueryTimeout(config.getQueryTimeout());
+        if (null != shapeCounter) {
+            simpleConnection.setStatementCache(new SimpleStatementCache(connection, shapeCounter));
+        }
+        return simpleConnection;
     }
 
     /**
-     * 短连接数
+     * 默认数据源名称
+     */
+    public static final String DEFAULT_NAME = "primary";
+
+    /**
+     * 初始连接数,未配置pool.initial-size时使用
      */
     public static Integer DEFAULT_CONNECT_POOL_SIZE = 128;
 
 
     /**
-     * 最大连接数
+     * 最大连接数,未配置pool.max-size时使用
      */
     public static Integer MAX_CONNECT_POOL_SIZE = 2048;
 
     /**
-     * 最小连接数
+     * 最小连接数,未配置pool.min-size时使用
      */
     public static Integer MIN_CONNECT_POOL_SIZE = 16;
 
@@ -0,0 +1,154 @@
+package com.simple.repository.connect;
+
+import com.simple.repository.master.exception.SimpleException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 并行查询
+ * <p>
+ * 1.fork()提交的操作在异步线程池并行执行,每个操作使用独立的会话,从连接池分别借用连接
+ * 2.join()等待全部操作完成,所有操作共用一个截止时间,从创建时开始计算
+ * 3.任一操作失败或超过截止时间时,取消其余操作执行中的语句,未开始的语句直接拒绝,join()抛出第一个失败的异常
+ * 4.close()取消未完成的操作,配合try-with-resources使用;fork()与join()由创建的线程调用
+ * 注意：操作不参与调用线程的事务;不要在异步线程池中等待使用同一线程池的并行查询,线程占满时只能等到截止时间
+ * </p>
+ * <pre>
+ * try (SimpleFanOut fanOut = new SimpleFanOut(500)) {
+ *     CompletableFuture&lt;User&gt; user = fanOut.fork(() -&gt; userRepository.get(id));
+ *     CompletableFuture&lt;Integer&gt; count = fanOut.fork(() -&gt; orderRepository.count(condition));
+ *     fanOut.join();
+ * }
+ * </pre>
+ *
+ * @author laiqx
+ * date 2023-06-30
+ */
+public class SimpleFanOut implements AutoCloseable {
+
+    /**
+     * 所有操作共用的取消句柄,超过截止时间自动取消
+     */
+    private final SimpleCancellation cancellation = new SimpleCancellation();
+
+    private final List<CompletableFuture<?>> futures = new ArrayList<>();
+
+    /**
+     * 第一个失败的异常
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * 任一操作失败时结束,join()不再等待其余操作
+     */
+    private final CompletableFuture<Void> failed = new CompletableFuture<>();
+
+    /**
+     * 截止时间(System.nanoTime())
+     */
+    private final long deadline;
+
+    private final long timeout;
+
+    /**
+     * 执行操作的线程池,为null时使用主库的异步线程池
+     */
+    private final Executor executor;
+
+    /**
+     * @param timeout 截止时长(单位：毫秒)
+     */
+    public SimpleFanOut(long timeout) {
+        this(timeout, null);
+    }
+
+    /**
+     * @param timeout  截止时长(单位：毫秒)
+     * @param executor 执行操作的线程池
+     */
+    public SimpleFanOut(long timeout, Executor executor) {
+        this.timeout = timeout;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.executor = executor;
+        cancellation.cancelAfter(timeout);
+    }
+
+    /**
+     * 提交并行执行的操作
+     *
+     * @param action 执行的操作,如存储对象的查询
+     * @param <R>    返回的类型
+     * @return 返回操作结果的future,join()成功后可直接取值
+     */
+    public <R> CompletableFuture<R> fork(Supplier<R> action) {
+        Supplier<R> task = () -> SimpleSession.cancellable(cancellation, action);
+        CompletableFuture<R> future = null == executor ? SimpleSession.async(task) : SimpleSession.async(task, executor);
+        future.whenComplete((result, e) -> {
+            if (null != e && failure.compareAndSet(null, unwrap(e))) {
+                cancellation.cancel();
+                failed.completeExceptionally(e);
+            }
+        });
+        futures.add(future);
+        return future;
+    }
+
+    /**
+     * 等待全部操作完成
+     *
+     * @throws SimpleException 任一操作失败时抛出第一个失败的异常,超过截止时间时抛出超时异常
+     */
+    public void join() {
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+        try {
+            CompletableFuture.anyOf(all, failed).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            // 操作响应截止时间的取消后正常返回,结果不完整,按超时处理
+            if (cancellation.isCancelled() && null == failure.get()) {
+                throw timeoutException();
+            }
+        } catch (TimeoutException e) {
+            close();
+            throw timeoutException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new SimpleException("等待并行查询被中断", e);
+        } catch (ExecutionException e) {
+            // 截止时间到达时执行中的语句被取消,按超时处理
+            if (System.nanoTime() - deadline >= 0) {
+                throw timeoutException();
+            }
+            // 以第一个失败的异常为准,其余操作因取消失败
+            Throwable cause = null == failure.get() ? unwrap(e) : failure.get();
+            throw cause instanceof SimpleException ? (SimpleException) cause : new SimpleException("并行查询失败:" + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 取消未完成的操作,全部完成时只释放截止时间的定时器
+     */
+    @Override
+    public void close() {
+        cancellation.cancel();
+    }
+
+    private SimpleException timeoutException() {
+        return new SimpleException("并行查询超过截止时间:" + timeout + "ms");
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && null != e.getCause()) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
@@ -0,0 +1,402 @@
+package com.simple.repository.connect;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 对冲读取
+ * <p>
+ * 1.事务外的只读查询先由选中的副本在调用线程执行
+ * 2.超过近期副本查询耗时的指定分位数仍未返回时,向另一个可用副本(没有则主库)发送相同的查询
+ * 3.先返回的结果生效,另一个查询被取消(Statement.cancel),连接照常归还连接池
+ * 4.近期样本不足时不发送对冲查询
+ * 5.对冲查询受预算限制,每次读取存入预算百分比的额度,发出对冲查询消耗一次读取的额度;预算用完或执行线程已满时不发送
+ * 6.首选与对冲查询执行结束(成功、失败或被取消)都记录耗时,避免只统计快速返回的查询使延迟阈值偏低
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-24
+ */
+public class SimpleHedgedReader {
+
+    private final static Logger log = LoggerFactory.getLogger(SimpleHedgedReader.class);
+
+    /**
+     * 计算延迟阈值所需的最少样本数
+     */
+    private static final int MIN_SAMPLES = 100;
+
+    /**
+     * 延迟阈值重新计算的间隔(单位：纳秒)
+     */
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 对冲查询执行线程的数量上限
+     */
+    private static final int MAX_HEDGE_THREADS = 64;
+
+    /**
+     * 一次对冲查询消耗的预算额度,每次读取存入的额度为预算百分比
+     */
+    private static final long HEDGE_COST = 100;
+
+    /**
+     * 预算额度上限,最多积累10次对冲查询,避免空闲后突发大量对冲
+     */
+    private static final long MAX_BUDGET = HEDGE_COST * 10;
+
+    /**
+     * 对冲查询的定时器,到期后把查询交给执行线程
+     */
+    private static final ScheduledExecutorService HEDGE_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "simple-hedge-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 对冲查询的执行线程,不排队,线程已满时拒绝并跳过对冲
+     */
+    private static final ExecutorService HEDGE_EXECUTOR = new ThreadPoolExecutor(0, MAX_HEDGE_THREADS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "simple-hedged-read");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SimpleReplicaRouter router;
+
+    /**
+     * 没有其他可用副本时对冲到主库
+     */
+    private final SimpleDataSource primary;
+
+    /**
+     * 延迟阈值的分位数,如95
+     */
+    private final double percentile;
+
+    /**
+     * 最小延迟阈值(单位：纳秒)
+     */
+    private final long minDelayNanos;
+
+    /**
+     * 对冲预算,对冲查询最多占读取的百分比
+     */
+    private final int budgetPercent;
+
+    /**
+     * 可用的对冲预算额度
+     */
+    private final AtomicLong budget = new AtomicLong();
+
+    /**
+     * 近期副本查询耗时(单位：纳秒),环形缓冲
+     */
+    private final long[] samples = new long[1024];
+
+    private final AtomicLong sampleCount = new AtomicLong();
+
+    private volatile long delayNanos = -1;
+
+    private volatile long delayRefreshedAt = System.nanoTime();
+
+    public SimpleHedgedReader(SimpleReplicaRouter router, SimpleDataSource primary, double percentile, long minDelay, int budgetPercent) {
+        this.router = router;
+        this.primary = primary;
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelay);
+        this.budgetPercent = budgetPercent;
+    }
+
+    /**
+     * 对冲读取
+     *
+     * @param first    首选副本
+     * @param callback 执行的只读操作
+     * @param <R>      返回的类型
+     * @return 返回先完成的查询结果
+     * @throws SQLException           执行语句异常
+     * @throws ClassNotFoundException 驱动加载异常
+     */
+    <R> R read(SimpleReplicaRouter.Replica first, SimpleSession.StatementCallback<R> callback) throws SQLException, ClassNotFoundException {
+        Attempt<R> attempt = new Attempt<>(first, first.getDataSource());
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Attempt<R>> hedge = new AtomicReference<>();
+        CompletableFuture<R> hedgeResult = new CompletableFuture<>();
+        budget.accumulateAndGet(budgetPercent, (current, deposit) -> Math.min(MAX_BUDGET, current + deposit));
+        long delay = delay();
+        // 对冲查询沿用调用线程的查询超时与取消句柄
+        Supplier<Void> hedgeTask = SimpleSession.propagate(() -> {
+            SimpleReplicaRouter.Replica second = router.chooseOther(first);
+            Attempt<R> hedgeAttempt = new Attempt<>(second, null == second ? primary : second.getDataSource());
+            hedge.set(hedgeAttempt);
+            if (done.get()) {
+                hedgeResult.completeExceptionally(new SQLException("对冲查询已取消"));
+                return null;
+            }
+            primary.getMetrics().hedged();
+            try {
+                R result = run(hedgeAttempt, callback);
+                if (done.compareAndSet(false, true)) {
+                    primary.getMetrics().hedgeWon();
+                    attempt.cancel();
+                }
+                // 首选副本失败后等待对冲结果,未抢先完成也要交付结果
+                hedgeResult.complete(result);
+            } catch (Throwable e) {
+                hedgeResult.completeExceptionally(e);
+            }
+            return null;
+        });
+        ScheduledFuture<?> timer = delay < 0 ? null : HEDGE_TIMER.schedule(() -> sendHedge(done, hedgeTask), delay, TimeUnit.NANOSECONDS);
+        try {
+            R result = run(attempt, callback);
+            if (done.compareAndSet(false, true)) {
+                cancel(timer, hedge.get());
+                return result;
+            }
+            // 对冲查询已先完成
+            return awaitHedge(hedgeResult, null);
+        } catch (SQLException | ClassNotFoundException | RuntimeException e) {
+            // 首选副本失败或被取消时,未发出的对冲查询不再执行,以已发出的对冲查询结果为准
+            done.set(true);
+            cancel(timer, null);
+            if (null == hedge.get()) {
+                throw e;
+            }
+            return awaitHedge(hedgeResult, e);
+        }
+    }
+
+    /**
+     * 执行查询并记录耗时
+     * <p>
+     * 开始执行前已被取消的查询不记录
+     * </p>
+     */
+    private <R> R run(Attempt<R> attempt, SimpleSession.StatementCallback<R> callback) throws SQLException, ClassNotFoundException {
+        try {
+            return attempt.run(callback);
+        } finally {
+            if (attempt.elapsedNanos >= 0) {
+                record(attempt.elapsedNanos);
+            }
+        }
+    }
+
+    /**
+     * 发送对冲查询
+     * <p>
+     * 首选副本已结束、预算用完或执行线程已满时不发送
+     * </p>
+     *
+     * @param done      首选副本或对冲查询是否已结束
+     * @param hedgeTask 对冲查询
+     */
+    private void sendHedge(AtomicBoolean done, Supplier<Void> hedgeTask) {
+        if (done.get()) {
+            return;
+        }
+        if (!acquireBudget()) {
+            primary.getMetrics().hedgeSkipped();
+            return;
+        }
+        try {
+            HEDGE_EXECUTOR.execute(hedgeTask::get);
+        } catch (RejectedExecutionException e) {
+            budget.addAndGet(HEDGE_COST);
+            primary.getMetrics().hedgeSkipped();
+            log.debug("对冲查询执行线程已满,跳过对冲:name={}", primary.getName());
+        }
+    }
+
+    /**
+     * 消耗一次对冲查询的预算额度
+     *
+     * @return 额度足够时返回true
+     */
+    private boolean acquireBudget() {
+        while (true) {
+            long current = budget.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+            if (budget.compareAndSet(current, current - HEDGE_COST)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 等待对冲查询的结果
+     *
+     * @param hedgeResult 对冲查询结果
+     * @param cause       首选副本的异常,对冲查询也失败时抛出
+     */
+    private <R> R awaitHedge(CompletableFuture<R> hedgeResult, Exception cause) throws SQLException, ClassNotFoundException {
+        try {
+            return hedgeResult.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待对冲查询结果被中断", e);
+        } catch (ExecutionException e) {
+            Throwable error = null == cause ? e.getCause() : cause;
+            if (error instanceof SQLException) {
+                throw (SQLException) error;
+            } else if (error instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw error instanceof RuntimeException ? (RuntimeException) error : new RuntimeException(error);
+        }
+    }
+
+    private void cancel(ScheduledFuture<?> timer, Attempt<?> hedgeAttempt) {
+        if (null != timer) {
+            timer.cancel(false);
+        }
+        if (null != hedgeAttempt) {
+            hedgeAttempt.cancel();
+        }
+    }
+
+    /**
+     * 记录查询耗时
+     */
+    private void record(long nanos) {
+        long index = sampleCount.getAndIncrement();
+        samples[(int) (index % samples.length)] = nanos;
+    }
+
+    /**
+     * 对冲延迟阈值
+     * <p>
+     * 每秒按近期样本重新计算一次,并发重复计算不影响结果
+     * </p>
+     *
+     * @return 返回延迟阈值(单位：纳秒),样本不足时返回-1
+     */
+    private long delay() {
+        long now = System.nanoTime();
+        if (now - delayRefreshedAt > REFRESH_NANOS || delayNanos < 0) {
+            long count = Math.min(sampleCount.get(), samples.length);
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, (int) count);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(count - 1, Math.ceil(count * percentile / 100) - 1);
+            delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, index)]);
+            delayRefreshedAt = now;
+        }
+        return delayNanos;
+    }
+
+    /**
+     * 单次查询
+     * <p>
+     * 归还连接前与取消互斥,避免取消到连接被再次借出后执行的语句
+     * 取消会发起网络请求,使用ReentrantLock避免虚拟线程占住载体线程
+     * </p>
+     */
+    private static class Attempt<R> {
+
+        /**
+         * 执行的副本,对冲到主库时为null
+         */
+        private final SimpleReplicaRouter.Replica replica;
+
+        private final SimpleDataSource dataSource;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private SimpleConnection connection;
+
+        private boolean cancelled;
+
+        /**
+         * 查询耗时(单位：纳秒),未开始执行为-1,只由执行线程读写
+         */
+        private long elapsedNanos = -1;
+
+        Attempt(SimpleReplicaRouter.Replica replica, SimpleDataSource dataSource) {
+            this.replica = replica;
+            this.dataSource = dataSource;
+        }
+
+        R run(SimpleSession.StatementCallback<R> callback) throws SQLException, ClassNotFoundException {
+            if (null != replica) {
+                replica.begin();
+            }
+            try {
+                SimpleConnection borrowed = dataSource.activeConnect();
+                try (Statement statement = borrowed.createStatement()) {
+                    lock.lock();
+                    try {
+                        if (cancelled) {
+                            throw new SQLException("对冲查询已取消");
+                        }
+                        connection = borrowed;
+                    } finally {
+                        lock.unlock();
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        return callback.apply(borrowed, statement);
+                    } finally {
+                        elapsedNanos = System.nanoTime() - start;
+                    }
+                } finally {
+                    lock.lock();
+                    try {
+                        connection = null;
+                    } finally {
+                        lock.unlock();
+                    }
+                    dataSource.giveBack(borrowed);
+                }
+            } finally {
+                if (null != replica) {
+                    replica.end();
+                }
+            }
+        }
+
+        void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                if (null != connection) {
+                    connection.cancel();
+                }
+            } catch (SQLException e) {
+                log.warn("取消对冲查询异常:name={},msg={}", dataSource.getName(), e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
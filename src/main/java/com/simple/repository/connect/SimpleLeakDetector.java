@@ -0,0 +1,122 @@
+package com.simple.repository.connect;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 连接泄漏检测
+ * <p>
+ * 1.借出连接时记录借出线程、借出时间与调用栈
+ * 2.连接占用超过阈值时输出一次告警日志,包含占用线程名称与借出位置
+ * 3.借出线程已结束但连接未归还的,交由连接池回收
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-19
+ */
+public class SimpleLeakDetector {
+
+    private final static Logger log = LoggerFactory.getLogger(SimpleLeakDetector.class);
+
+    /**
+     * 泄漏告警阈值(单位：毫秒)
+     */
+    private final long threshold;
+
+    /**
+     * 借出中的连接
+     */
+    private final Map<SimpleConnection, Lease> leases = new ConcurrentHashMap<>();
+
+    public SimpleLeakDetector(long threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * 记录借出
+     *
+     * @param connection 数据库连接
+     */
+    void borrowed(SimpleConnection connection) {
+        leases.put(connection, new Lease());
+    }
+
+    /**
+     * 记录归还
+     *
+     * @param connection 数据库连接
+     */
+    void returned(SimpleConnection connection) {
+        leases.remove(connection);
+    }
+
+    /**
+     * 检查借出中的连接
+     *
+     * @return 返回借出线程已结束、需要回收的连接
+     */
+    List<SimpleConnection> scan() {
+        List<SimpleConnection> reclaims = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<SimpleConnection, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            if (!lease.thread.isAlive()) {
+                if (leases.remove(entry.getKey(), lease)) {
+                    log.warn("回收已结束线程占用的连接:thread={},held={}ms", lease.thread.getName(), now - lease.time, lease.stack);
+                    reclaims.add(entry.getKey());
+                }
+            } else if (!lease.reported && now - lease.time > threshold) {
+                lease.reported = true;
+                log.warn("疑似连接泄漏:thread={},held={}ms,请检查是否提交或回滚事务、关闭会话或调用SimpleThreadLocalStore.clear()", lease.thread.getName(), now - lease.time, lease.stack);
+            }
+        }
+        return reclaims;
+    }
+
+    /**
+     * 占用超过阈值的连接
+     *
+     * @return 返回占用线程名称与占用时长
+     */
+    List<String> suspects() {
+        List<String> suspects = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Lease lease : leases.values()) {
+            if (now - lease.time > threshold) {
+                suspects.add(lease.thread.getName() + ":" + (now - lease.time) + "ms");
+            }
+        }
+        return suspects;
+    }
+
+    /**
+     * 借出记录
+     */
+    private static class Lease {
+
+        /**
+         * 借出线程
+         */
+        private final Thread thread = Thread.currentThread();
+
+        /**
+         * 借出时间
+         */
+        private final long time = System.currentTimeMillis();
+
+        /**
+         * 借出位置
+         */
+        private final Throwable stack = new Throwable("连接借出位置");
+
+        /**
+         * 是否已告警
+         */
+        private volatile boolean reported;
+    }
+}
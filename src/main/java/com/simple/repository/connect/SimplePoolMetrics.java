@@ -0,0 +1,362 @@
+package com.simple.repository.connect;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接池监控指标
+ * <p>
+ * 计数使用LongAdder,获取连接时只做累加,不影响并发性能
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-14
+ */
+public class SimplePoolMetrics implements SimplePoolMetricsMXBean {
+
+    /**
+     * 获取连接耗时分布的区间上限(单位：毫秒)
+     */
+    private static final long[] LATENCY_BUCKETS = {1, 5, 10, 50, 100, 500, 1000, 5000};
+
+    private final SimpleConnectionPool pool;
+
+    private final LongAdder[] latencyCounts = new LongAdder[LATENCY_BUCKETS.length + 1];
+
+    private final LongAdder acquireCount = new LongAdder();
+
+    private final LongAdder acquireNanos = new LongAdder();
+
+    private final AtomicLong acquireMaxNanos = new AtomicLong();
+
+    private final LongAdder timeoutCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder createdCount = new LongAdder();
+
+    private final LongAdder createFailedCount = new LongAdder();
+
+    private final LongAdder lifetimeClosedCount = new LongAdder();
+
+    private final LongAdder idleEvictedCount = new LongAdder();
+
+    private final LongAdder invalidClosedCount = new LongAdder();
+
+    private final LongAdder overLimitClosedCount = new LongAdder();
+
+    private final LongAdder reclaimedCount = new LongAdder();
+
+    private final LongAdder statementHitCount = new LongAdder();
+
+    private final LongAdder statementMissCount = new LongAdder();
+
+    private final LongAdder statementPromotedCount = new LongAdder();
+
+    private final LongAdder statementEvictedCount = new LongAdder();
+
+    private final LongAdder hedgedCount = new LongAdder();
+
+    private final LongAdder transactionRetryCount = new LongAdder();
+
+    private final LongAdder transactionRetryExhaustedCount = new LongAdder();
+
+    private final LongAdder hedgeWonCount = new LongAdder();
+
+    private final LongAdder hedgeSkippedCount = new LongAdder();
+
+    private final LongAdder limiterRejectedCount = new LongAdder();
+
+    /**
+     * 数据源并发限制,未开启时为null
+     */
+    private volatile SimpleConcurrencyLimiter limiter;
+
+    public SimplePoolMetrics(SimpleConnectionPool pool) {
+        this.pool = pool;
+        for (int i = 0; i < latencyCounts.length; i++) {
+            latencyCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录获取连接耗时
+     *
+     * @param nanos 耗时(单位：纳秒)
+     */
+    void acquired(long nanos) {
+        acquireCount.increment();
+        acquireNanos.add(nanos);
+        long max;
+        while (nanos > (max = acquireMaxNanos.get()) && !acquireMaxNanos.compareAndSet(max, nanos)) {
+            // 并发更新最大值时重试
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int i = 0;
+        while (i < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[i]) {
+            i++;
+        }
+        latencyCounts[i].increment();
+    }
+
+    /**
+     * 获取连接累计耗时
+     *
+     * @return 返回累计耗时(单位：纳秒)
+     */
+    long acquireNanos() {
+        return acquireNanos.sum();
+    }
+
+    void timeout() {
+        timeoutCount.increment();
+    }
+
+    void rejected() {
+        rejectedCount.increment();
+    }
+
+    void created() {
+        createdCount.increment();
+    }
+
+    void createFailed() {
+        createFailedCount.increment();
+    }
+
+    void lifetimeClosed() {
+        lifetimeClosedCount.increment();
+    }
+
+    void idleEvicted() {
+        idleEvictedCount.increment();
+    }
+
+    void invalidClosed() {
+        invalidClosedCount.increment();
+    }
+
+    void overLimitClosed() {
+        overLimitClosedCount.increment();
+    }
+
+    void reclaimed() {
+        reclaimedCount.increment();
+    }
+
+    void statementHit() {
+        statementHitCount.increment();
+    }
+
+    void statementMissed() {
+        statementMissCount.increment();
+    }
+
+    void statementPromoted() {
+        statementPromotedCount.increment();
+    }
+
+    void statementEvicted() {
+        statementEvictedCount.increment();
+    }
+
+    void hedged() {
+        hedgedCount.increment();
+    }
+
+    void hedgeWon() {
+        hedgeWonCount.increment();
+    }
+
+    void hedgeSkipped() {
+        hedgeSkippedCount.increment();
+    }
+
+    void transactionRetried() {
+        transactionRetryCount.increment();
+    }
+
+    void transactionRetryExhausted() {
+        transactionRetryExhaustedCount.increment();
+    }
+
+    void limiterRejected() {
+        limiterRejectedCount.increment();
+    }
+
+    void setLimiter(SimpleConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public int getTotalConnections() {
+        return pool.getTotalCount();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return pool.getIdleCount();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return pool.getActiveCount();
+    }
+
+    @Override
+    public int getWaitingThreads() {
+        return pool.getWaiterCount();
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return pool.getMaxSize();
+    }
+
+    @Override
+    public int getConnectionLimit() {
+        return pool.getLimit();
+    }
+
+    @Override
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    @Override
+    public double getAcquireTimeAvgMillis() {
+        long count = acquireCount.sum();
+        return count == 0 ? 0 : acquireNanos.sum() / 1e6 / count;
+    }
+
+    @Override
+    public double getAcquireTimeMaxMillis() {
+        return acquireMaxNanos.get() / 1e6;
+    }
+
+    @Override
+    public Map<String, Long> getAcquireLatencyHistogram() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            histogram.put("<=" + LATENCY_BUCKETS[i] + "ms", latencyCounts[i].sum());
+        }
+        histogram.put(">" + LATENCY_BUCKETS[LATENCY_BUCKETS.length - 1] + "ms", latencyCounts[LATENCY_BUCKETS.length].sum());
+        return histogram;
+    }
+
+    @Override
+    public long getAcquireTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    @Override
+    public long getWaitRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    @Override
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    @Override
+    public long getCreateFailedCount() {
+        return createFailedCount.sum();
+    }
+
+    @Override
+    public long getLifetimeClosedCount() {
+        return lifetimeClosedCount.sum();
+    }
+
+    @Override
+    public long getIdleEvictedCount() {
+        return idleEvictedCount.sum();
+    }
+
+    @Override
+    public long getInvalidClosedCount() {
+        return invalidClosedCount.sum();
+    }
+
+    @Override
+    public long getOverLimitClosedCount() {
+        return overLimitClosedCount.sum();
+    }
+
+    @Override
+    public long getReclaimedCount() {
+        return reclaimedCount.sum();
+    }
+
+    @Override
+    public long getStatementCacheHitCount() {
+        return statementHitCount.sum();
+    }
+
+    @Override
+    public long getStatementCacheMissCount() {
+        return statementMissCount.sum();
+    }
+
+    @Override
+    public long getStatementPromotedCount() {
+        return statementPromotedCount.sum();
+    }
+
+    @Override
+    public long getStatementEvictedCount() {
+        return statementEvictedCount.sum();
+    }
+
+    @Override
+    public long getHedgedReadCount() {
+        return hedgedCount.sum();
+    }
+
+    @Override
+    public long getHedgeWonCount() {
+        return hedgeWonCount.sum();
+    }
+
+    @Override
+    public long getHedgeSkippedCount() {
+        return hedgeSkippedCount.sum();
+    }
+
+    @Override
+    public long getTransactionRetryCount() {
+        return transactionRetryCount.sum();
+    }
+
+    @Override
+    public long getTransactionRetryExhaustedCount() {
+        return transactionRetryExhaustedCount.sum();
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        SimpleConcurrencyLimiter limiter = this.limiter;
+        return null == limiter ? -1 : limiter.getLimit();
+    }
+
+    @Override
+    public int getConcurrencyInFlight() {
+        SimpleConcurrencyLimiter limiter = this.limiter;
+        return null == limiter ? -1 : limiter.getInFlight();
+    }
+
+    @Override
+    public long getLimiterRejectedCount() {
+        return limiterRejectedCount.sum();
+    }
+
+    @Override
+    public List<String> getLeakSuspects() {
+        return pool.getLeakSuspects();
+    }
+}
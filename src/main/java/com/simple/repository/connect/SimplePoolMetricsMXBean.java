@@ -0,0 +1,240 @@
+package com.simple.repository.connect;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 连接池监控指标
+ * <p>
+ * 通过JMX发布,对象名称:com.simple.repository:type=SimpleDataSource,name=数据源名称
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-14
+ */
+public interface SimplePoolMetricsMXBean {
+
+    /**
+     * 连接总数
+     *
+     * @return 返回连接总数
+     */
+    int getTotalConnections();
+
+    /**
+     * 空闲连接数
+     *
+     * @return 返回空闲连接数
+     */
+    int getIdleConnections();
+
+    /**
+     * 使用中的连接数
+     *
+     * @return 返回使用中的连接数
+     */
+    int getActiveConnections();
+
+    /**
+     * 等待连接的线程数
+     *
+     * @return 返回等待连接的线程数
+     */
+    int getWaitingThreads();
+
+    /**
+     * 最大连接数
+     *
+     * @return 返回最大连接数
+     */
+    int getMaxConnections();
+
+    /**
+     * 当前连接数上限,自适应调整时在最小与最大连接数之间变化
+     *
+     * @return 返回当前连接数上限
+     */
+    int getConnectionLimit();
+
+    /**
+     * 获取连接次数
+     *
+     * @return 返回获取连接次数
+     */
+    long getAcquireCount();
+
+    /**
+     * 获取连接平均耗时
+     *
+     * @return 返回平均耗时(单位：毫秒)
+     */
+    double getAcquireTimeAvgMillis();
+
+    /**
+     * 获取连接最大耗时
+     *
+     * @return 返回最大耗时(单位：毫秒)
+     */
+    double getAcquireTimeMaxMillis();
+
+    /**
+     * 获取连接耗时分布
+     *
+     * @return 返回耗时区间与次数,key如"<=10ms"
+     */
+    Map<String, Long> getAcquireLatencyHistogram();
+
+    /**
+     * 获取连接超时次数
+     *
+     * @return 返回超时次数
+     */
+    long getAcquireTimeoutCount();
+
+    /**
+     * 等待队列已满被拒绝的次数
+     *
+     * @return 返回拒绝次数
+     */
+    long getWaitRejectedCount();
+
+    /**
+     * 新建连接数
+     *
+     * @return 返回新建连接数
+     */
+    long getCreatedCount();
+
+    /**
+     * 新建连接失败次数
+     *
+     * @return 返回新建连接失败次数
+     */
+    long getCreateFailedCount();
+
+    /**
+     * 超过存活时长被关闭的连接数
+     *
+     * @return 返回关闭的连接数
+     */
+    long getLifetimeClosedCount();
+
+    /**
+     * 空闲超时被关闭的连接数
+     *
+     * @return 返回关闭的连接数
+     */
+    long getIdleEvictedCount();
+
+    /**
+     * 校验失败被关闭的连接数
+     *
+     * @return 返回关闭的连接数
+     */
+    long getInvalidClosedCount();
+
+    /**
+     * 连接池上限调低后,归还时连接总数超过上限被关闭的连接数
+     *
+     * @return 返回关闭的连接数
+     */
+    long getOverLimitClosedCount();
+
+    /**
+     * 借出线程已结束而被回收的连接数
+     *
+     * @return 返回回收的连接数
+     */
+    long getReclaimedCount();
+
+    /**
+     * PreparedStatement缓存命中次数
+     *
+     * @return 返回命中次数
+     */
+    long getStatementCacheHitCount();
+
+    /**
+     * PreparedStatement缓存未命中次数
+     *
+     * @return 返回未命中次数
+     */
+    long getStatementCacheMissCount();
+
+    /**
+     * 提升为服务端预编译的次数
+     *
+     * @return 返回提升次数
+     */
+    long getStatementPromotedCount();
+
+    /**
+     * 超出缓存容量被关闭的PreparedStatement数
+     *
+     * @return 返回关闭数
+     */
+    long getStatementEvictedCount();
+
+    /**
+     * 发出对冲查询的次数
+     *
+     * @return 返回对冲次数
+     */
+    long getHedgedReadCount();
+
+    /**
+     * 对冲查询先于首选副本返回的次数
+     *
+     * @return 返回对冲生效次数
+     */
+    long getHedgeWonCount();
+
+    /**
+     * 到达延迟阈值但对冲预算用完或执行线程已满而未发出对冲查询的次数
+     *
+     * @return 返回跳过对冲次数
+     */
+    long getHedgeSkippedCount();
+
+    /**
+     * 事务因死锁或锁等待超时重试的次数
+     *
+     * @return 返回重试次数
+     */
+    long getTransactionRetryCount();
+
+    /**
+     * 重试次数用尽仍失败的事务数
+     *
+     * @return 返回失败的事务数
+     */
+    long getTransactionRetryExhaustedCount();
+
+    /**
+     * 当前并发上限
+     *
+     * @return 返回并发上限,未开启并发限制时返回-1
+     */
+    int getConcurrencyLimit();
+
+    /**
+     * 并发限制内执行中的请求数
+     *
+     * @return 返回执行中的请求数,未开启并发限制时返回-1
+     */
+    int getConcurrencyInFlight();
+
+    /**
+     * 因达到并发上限被拒绝的请求数
+     *
+     * @return 返回拒绝的请求数
+     */
+    long getLimiterRejectedCount();
+
+    /**
+     * 疑似泄漏的连接
+     *
+     * @return 返回占用超过泄漏阈值的线程名称与占用时长
+     */
+    List<String> getLeakSuspects();
+}
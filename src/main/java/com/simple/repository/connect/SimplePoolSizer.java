@@ -0,0 +1,97 @@
+package com.simple.repository.connect;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池自适应调整
+ * <p>
+ * 每个采样周期统计使用中连接数的峰值、等待线程与获取连接的平均耗时:
+ * 1.有线程等待、获取超时或平均耗时超过目标值时,连接数上限提高50%
+ * 2.峰值加25%余量仍低于上限,并连续保持若干个周期时,上限降低25%(不低于峰值加余量)
+ * 3.上限始终在最小与最大连接数之间
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-22
+ */
+public class SimplePoolSizer {
+
+    private final static Logger log = LoggerFactory.getLogger(SimplePoolSizer.class);
+
+    /**
+     * 连续空闲多少个周期后降低上限
+     */
+    private static final int SHRINK_ROUNDS = 30;
+
+    private final SimpleConnectionPool pool;
+
+    private final int minSize;
+
+    private final int maxSize;
+
+    /**
+     * 获取连接平均耗时的目标值(单位：纳秒)
+     */
+    private final long targetWaitNanos;
+
+    private long lastAcquireCount;
+
+    private long lastAcquireNanos;
+
+    private long lastTimeoutCount;
+
+    /**
+     * 连续低负载的周期数
+     */
+    private int quietRounds;
+
+    public SimplePoolSizer(SimpleConnectionPool pool, int minSize, int maxSize, long targetWait) {
+        this.pool = pool;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetWait);
+    }
+
+    /**
+     * 按上一个采样周期的负载调整连接数上限
+     *
+     * @return 返回调整后的连接数上限
+     */
+    public int resize() {
+        SimplePoolMetrics metrics = pool.getMetrics();
+        long acquireCount = metrics.getAcquireCount();
+        long acquireNanos = metrics.acquireNanos();
+        long timeoutCount = metrics.getAcquireTimeoutCount();
+        long acquires = acquireCount - lastAcquireCount;
+        long avgWaitNanos = acquires == 0 ? 0 : (acquireNanos - lastAcquireNanos) / acquires;
+        boolean timeout = timeoutCount > lastTimeoutCount;
+        lastAcquireCount = acquireCount;
+        lastAcquireNanos = acquireNanos;
+        lastTimeoutCount = timeoutCount;
+
+        int peak = pool.resetPeakActive();
+        int limit = pool.getLimit();
+        int newLimit = limit;
+        if (pool.getWaiterCount() > 0 || timeout || avgWaitNanos > targetWaitNanos) {
+            quietRounds = 0;
+            newLimit = Math.min(maxSize, limit + Math.max(1, limit / 2));
+        } else {
+            int desired = Math.max(minSize, peak + Math.max(1, peak / 4));
+            if (desired >= limit) {
+                quietRounds = 0;
+            } else if (++quietRounds >= SHRINK_ROUNDS) {
+                quietRounds = 0;
+                newLimit = Math.max(desired, limit - Math.max(1, limit / 4));
+            }
+        }
+        if (newLimit != limit) {
+            pool.resize(newLimit);
+            log.info("连接池自适应调整:limit={}->{},peak={},waiting={},avgWait={}ms", limit, newLimit, peak,
+                    pool.getWaiterCount(), TimeUnit.NANOSECONDS.toMillis(avgWaitNanos));
+        }
+        return newLimit;
+    }
+}
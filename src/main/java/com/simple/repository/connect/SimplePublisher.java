@@ -0,0 +1,216 @@
+package com.simple.repository.connect;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 查询结果发布者
+ * <p>
+ * 1.每次订阅独立执行一次流式查询,订阅者首次request()时才开始查询,由发布线程借用连接执行
+ * 2.按订阅者的请求数逐行读取,请求数用完时发布线程等待,不再从ResultSet读取
+ * 3.订阅者cancel()时取消执行中的语句并停止读取,连接照常归还
+ * 4.发布线程沿用订阅线程的连接池分区、查询超时与执行提示,不参与订阅线程的事务,发布结束后关闭查询中开启的会话
+ * </p>
+ *
+ * @param <T> 发布的对象类型
+ * @author laiqx
+ * date 2023-06-29
+ */
+public class SimplePublisher<T> implements Flow.Publisher<T> {
+
+    /**
+     * 执行查询并发布结果的线程
+     */
+    private static final ExecutorService PUBLISH_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "simple-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 流式查询,逐个对象交给传入的consumer
+     */
+    private final Function<Consumer<T>, ?> source;
+
+    public SimplePublisher(Function<Consumer<T>, ?> source) {
+        this.source = source;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        RowSubscription<T> subscription = new RowSubscription<>(subscriber, source);
+        Supplier<Void> task = SimpleSession.propagate(() -> {
+            subscription.run();
+            return null;
+        });
+        // 发布线程复用,查询中开启的会话在结束后关闭,避免thread模式下占住连接
+        subscription.task = () -> SimpleSession.isolated(task);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * 订阅关系
+     *
+     * @param <T> 发布的对象类型
+     */
+    private static class RowSubscription<T> implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+
+        private final Function<Consumer<T>, ?> source;
+
+        /**
+         * 请求数与取消互斥,等待请求时使用Condition,避免虚拟线程占住载体线程
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition requested = lock.newCondition();
+
+        /**
+         * 取消执行中的语句
+         */
+        private final SimpleCancellation cancellation = new SimpleCancellation();
+
+        private Supplier<Void> task;
+
+        private long demand;
+
+        private boolean started;
+
+        private boolean cancelled;
+
+        /**
+         * 非法的请求数,由发布线程通知订阅者
+         */
+        private Throwable failure;
+
+        RowSubscription(Flow.Subscriber<? super T> subscriber, Function<Consumer<T>, ?> source) {
+            this.subscriber = subscriber;
+            this.source = source;
+        }
+
+        @Override
+        public void request(long n) {
+            boolean start;
+            boolean illegal = n <= 0;
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return;
+                }
+                if (illegal) {
+                    failure = new IllegalArgumentException("请求数必须大于0:" + n);
+                    cancelled = true;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                start = !started;
+                started = true;
+                requested.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (illegal) {
+                cancellation.cancel();
+            }
+            if (start) {
+                try {
+                    PUBLISH_EXECUTOR.execute(task::get);
+                } catch (RejectedExecutionException e) {
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                requested.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            cancellation.cancel();
+        }
+
+        /**
+         * 执行查询并发布结果
+         */
+        private void run() {
+            try {
+                SimpleSession.cancellable(cancellation, () -> source.apply(this::emit));
+            } catch (Throwable e) {
+                if (!isCancelled()) {
+                    subscriber.onError(e);
+                    return;
+                }
+            }
+            lock.lock();
+            Throwable error;
+            boolean complete;
+            try {
+                error = failure;
+                complete = !cancelled;
+            } finally {
+                lock.unlock();
+            }
+            if (null != error) {
+                subscriber.onError(error);
+            } else if (complete) {
+                subscriber.onComplete();
+            }
+        }
+
+        /**
+         * 发布一个对象,请求数用完时等待
+         *
+         * @param item 发布的对象
+         */
+        private void emit(T item) {
+            lock.lock();
+            try {
+                while (0 == demand && !cancelled) {
+                    requested.awaitUninterruptibly();
+                }
+                if (cancelled) {
+                    throw new CancelledException();
+                }
+                demand--;
+            } finally {
+                lock.unlock();
+            }
+            subscriber.onNext(item);
+        }
+
+        private boolean isCancelled() {
+            lock.lock();
+            try {
+                return cancelled;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 订阅取消后停止读取
+     */
+    private static class CancelledException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        CancelledException() {
+            super("订阅已取消", null, false, false);
+        }
+    }
+}
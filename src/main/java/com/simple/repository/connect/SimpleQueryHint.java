@@ -0,0 +1,166 @@
+package com.simple.repository.connect;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 查询执行提示
+ * <p>
+ * 1.通过BaseSearch.setHint()、SimpleSession.hint()指定,只作用于查询语句,不修改驱动的全局配置
+ * 2.指定了提示的查询使用独立创建的Statement执行,不使用PreparedStatement缓存,结果集关闭后自动关闭
+ * 3.readOnly只对自动提交的连接生效,执行期间将连接切换为只读,结束后恢复;事务中忽略
+ * 4.MySQL驱动默认一次读取全部结果,需逐行读取时使用streaming()(单向只读游标,fetchSize=Integer.MIN_VALUE),
+ * 或在url中开启useCursorFetch=true后指定fetchSize
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-28
+ */
+public class SimpleQueryHint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 每次从数据库读取的行数,为null时使用驱动默认值
+     */
+    private Integer fetchSize;
+
+    /**
+     * 最大返回行数,为null时不限制
+     */
+    private Integer maxRows;
+
+    /**
+     * 是否以只读连接执行
+     */
+    private Boolean readOnly;
+
+    /**
+     * 结果集类型(ResultSet.TYPE_FORWARD_ONLY等),为null时使用驱动默认值
+     */
+    private Integer resultSetType;
+
+    /**
+     * 设置每次读取的行数
+     *
+     * @param fetchSize 读取的行数
+     * @return 返回当前提示
+     */
+    public SimpleQueryHint fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * 设置最大返回行数
+     *
+     * @param maxRows 最大行数,0为不限制
+     * @return 返回当前提示
+     */
+    public SimpleQueryHint maxRows(int maxRows) {
+        this.maxRows = maxRows;
+        return this;
+    }
+
+    /**
+     * 以只读连接执行
+     *
+     * @return 返回当前提示
+     */
+    public SimpleQueryHint readOnly() {
+        this.readOnly = true;
+        return this;
+    }
+
+    /**
+     * 设置结果集类型
+     *
+     * @param resultSetType ResultSet.TYPE_FORWARD_ONLY、TYPE_SCROLL_INSENSITIVE或TYPE_SCROLL_SENSITIVE
+     * @return 返回当前提示
+     */
+    public SimpleQueryHint resultSetType(int resultSetType) {
+        this.resultSetType = resultSetType;
+        return this;
+    }
+
+    /**
+     * 使用单向游标
+     *
+     * @return 返回当前提示
+     */
+    public SimpleQueryHint forwardOnly() {
+        return resultSetType(ResultSet.TYPE_FORWARD_ONLY);
+    }
+
+    /**
+     * 逐行读取结果,MySQL驱动下不再一次读取全部结果到内存
+     * <p>
+     * 读取完成前同一连接不能执行其他语句
+     * </p>
+     *
+     * @return 返回当前提示
+     */
+    public SimpleQueryHint streaming() {
+        return forwardOnly().fetchSize(Integer.MIN_VALUE);
+    }
+
+    /**
+     * 按提示创建查询使用的Statement
+     *
+     * @param connection sql连接
+     * @return 返回Statement,结果集关闭后自动关闭
+     * @throws SQLException 创建Statement异常
+     */
+    Statement createStatement(Connection connection) throws SQLException {
+        Statement statement = null == resultSetType ? connection.createStatement()
+                : connection.createStatement(resultSetType, ResultSet.CONCUR_READ_ONLY);
+        try {
+            if (null != fetchSize) {
+                statement.setFetchSize(fetchSize);
+            }
+            if (null != maxRows) {
+                statement.setMaxRows(maxRows);
+            }
+            statement.closeOnCompletion();
+            return statement;
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public Integer getMaxRows() {
+        return maxRows;
+    }
+
+    public void setMaxRows(Integer maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    public Boolean getReadOnly() {
+        return readOnly;
+    }
+
+    public void setReadOnly(Boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public Integer getResultSetType() {
+        return resultSetType;
+    }
+
+    public void setResultSetType(Integer resultSetType) {
+        this.resultSetType = resultSetType;
+    }
+}
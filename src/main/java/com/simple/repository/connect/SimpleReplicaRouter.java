@@ -0,0 +1,291 @@
+package com.simple.repository.connect;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 只读副本路由
+ * <p>
+ * 1.非事务的只读操作路由到只读副本,选择执行中请求最少的副本
+ * 2.定时检查副本的复制延迟,超过最大延迟或复制中断的副本暂时摘除,恢复后重新加入
+ * 3.所有副本都不可用时返回null,由主库执行
+ * 4.延迟查询语句可配置,未配置时先执行show replica status(MySQL 8.0.22+),语法不支持时改为show slave status;
+ * 查询需要REPLICATION CLIENT权限,无权限或语法错误只告警一次
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-16
+ */
+public class SimpleReplicaRouter {
+
+    private final static Logger log = LoggerFactory.getLogger(SimpleReplicaRouter.class);
+
+    private final static String SHOW_REPLICA_STATUS = "show replica status";
+
+    private final static String SHOW_SLAVE_STATUS = "show slave status";
+
+    /**
+     * 只读副本
+     */
+    private final List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * 最大复制延迟(单位：秒)
+     */
+    private final int maxLag;
+
+    /**
+     * 延迟检查语句的超时时长(单位：秒)
+     */
+    private final int checkTimeout;
+
+    /**
+     * 配置的延迟查询语句,为null时自动选择
+     */
+    private final String lagQuery;
+
+    public SimpleReplicaRouter(List<SimpleDataSource> dataSources, int maxLag, int checkTimeout) {
+        this(dataSources, maxLag, checkTimeout, null);
+    }
+
+    public SimpleReplicaRouter(List<SimpleDataSource> dataSources, int maxLag, int checkTimeout, String lagQuery) {
+        for (SimpleDataSource dataSource : dataSources) {
+            replicas.add(new Replica(dataSource, null == lagQuery ? SHOW_REPLICA_STATUS : lagQuery));
+        }
+        this.maxLag = maxLag;
+        this.checkTimeout = checkTimeout;
+        this.lagQuery = lagQuery;
+    }
+
+    /**
+     * 选择执行中请求最少的可用副本
+     * <p>
+     * 从随机位置开始遍历,请求数相同时分散到不同副本
+     * </p>
+     *
+     * @return 返回只读副本,没有可用副本时返回null
+     */
+    public Replica choose() {
+        int size = replicas.size();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        Replica chosen = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available && (null == chosen || replica.outstanding.get() < chosen.outstanding.get())) {
+                chosen = replica;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * 选择另一个可用副本
+     *
+     * @param exclude 排除的副本
+     * @return 返回执行中请求最少的其他可用副本,没有时返回null
+     */
+    public Replica chooseOther(Replica exclude) {
+        Replica chosen = null;
+        for (Replica replica : replicas) {
+            if (replica != exclude && replica.available && (null == chosen || replica.outstanding.get() < chosen.outstanding.get())) {
+                chosen = replica;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * 检查所有副本的复制延迟
+     * <p>
+     * 检查异常的副本视为不可用
+     * </p>
+     */
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            Long lag;
+            try {
+                lag = queryLag(replica);
+            } catch (SQLException e) {
+                if (!isRejected(e)) {
+                    log.error("只读副本延迟检查异常:name={},msg={}", replica.dataSource.getName(), e.getMessage());
+                } else if (replica.rejectWarned.compareAndSet(false, true)) {
+                    log.warn("只读副本延迟查询被拒绝,副本将保持不可用,请授予REPLICATION CLIENT权限或配置replica-lag-query:name={},sql={},code={},msg={}",
+                            replica.dataSource.getName(), replica.lagQuery, e.getErrorCode(), e.getMessage());
+                }
+                lag = null;
+            } catch (Throwable e) {
+                log.error("只读副本延迟检查异常:name={},msg={}", replica.dataSource.getName(), e.getMessage());
+                lag = null;
+            }
+            boolean available = null != lag && lag <= maxLag;
+            if (available != replica.available) {
+                log.warn("只读副本状态变更:name={},available={},lag={}", replica.dataSource.getName(), available, lag);
+            }
+            replica.lag = null == lag ? -1 : lag;
+            replica.available = available;
+        }
+    }
+
+    /**
+     * 查询复制延迟
+     * <p>
+     * 未配置延迟查询语句且show replica status语法不支持时(MySQL 8.0.22之前),该副本改用show slave status
+     * </p>
+     *
+     * @param replica 只读副本
+     * @return 返回延迟秒数,复制中断返回null
+     */
+    private Long queryLag(Replica replica) throws Exception {
+        try {
+            return queryLag(replica.dataSource, replica.lagQuery);
+        } catch (SQLException e) {
+            if (null != lagQuery || !SHOW_REPLICA_STATUS.equals(replica.lagQuery) || 1064 != e.getErrorCode()) {
+                throw e;
+            }
+            replica.lagQuery = SHOW_SLAVE_STATUS;
+            return queryLag(replica.dataSource, replica.lagQuery);
+        }
+    }
+
+    /**
+     * 执行延迟查询语句
+     * <p>
+     * 非复制节点(无复制状态)视为无延迟,复制中断时延迟列为null;
+     * 延迟列取Seconds_Behind_Source(show replica status)或Seconds_Behind_Master(show slave status),都不存在时取第一列
+     * </p>
+     *
+     * @param dataSource 副本数据源
+     * @param sql        延迟查询语句
+     * @return 返回延迟秒数,复制中断返回null
+     */
+    private Long queryLag(SimpleDataSource dataSource, String sql) throws Exception {
+        SimpleConnection connection = dataSource.activeConnect();
+        try (Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(checkTimeout);
+            try (ResultSet result = statement.executeQuery(sql)) {
+                if (!result.next()) {
+                    return 0L;
+                }
+                Object lag = result.getObject(lagColumn(result.getMetaData()));
+                return null == lag ? null : Long.valueOf(lag.toString());
+            }
+        } finally {
+            dataSource.giveBack(connection);
+        }
+    }
+
+    /**
+     * 延迟列的序号
+     *
+     * @param metaData 结果集元数据
+     * @return 返回Seconds_Behind_Source或Seconds_Behind_Master的序号,都不存在时返回1
+     */
+    private static int lagColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String label = metaData.getColumnLabel(i);
+            if ("Seconds_Behind_Source".equalsIgnoreCase(label) || "Seconds_Behind_Master".equalsIgnoreCase(label)) {
+                return i;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * 是否为无权限或语法不支持导致的失败,重试无法恢复
+     * <p>
+     * 1045:访问被拒绝,1142:命令被拒绝,1227:缺少REPLICATION CLIENT等权限,1064:语法错误
+     * </p>
+     */
+    private static boolean isRejected(SQLException e) {
+        int code = e.getErrorCode();
+        return 1045 == code || 1142 == code || 1227 == code || 1064 == code;
+    }
+
+    /**
+     * 只读副本
+     */
+    public static class Replica {
+
+        /**
+         * 副本数据源
+         */
+        private final SimpleDataSource dataSource;
+
+        /**
+         * 执行中的请求数
+         */
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        /**
+         * 是否可用
+         */
+        private volatile boolean available = true;
+
+        /**
+         * 最近一次检查的复制延迟(单位：秒),复制中断或检查失败为-1
+         */
+        private volatile long lag;
+
+        /**
+         * 当前使用的延迟查询语句
+         */
+        private volatile String lagQuery;
+
+        /**
+         * 延迟查询被拒绝时是否已告警
+         */
+        private final AtomicBoolean rejectWarned = new AtomicBoolean();
+
+        Replica(SimpleDataSource dataSource, String lagQuery) {
+            this.dataSource = dataSource;
+            this.lagQuery = lagQuery;
+        }
+
+        /**
+         * 开始执行请求
+         *
+         * @return 返回副本数据源
+         */
+        public SimpleDataSource begin() {
+            outstanding.incrementAndGet();
+            return dataSource;
+        }
+
+        /**
+         * 请求执行结束
+         */
+        public void end() {
+            outstanding.decrementAndGet();
+        }
+
+        public SimpleDataSource getDataSource() {
+            return dataSource;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+
+        public long getLag() {
+            return lag;
+        }
+
+        public String getLagQuery() {
+            return lagQuery;
+        }
+    }
+}
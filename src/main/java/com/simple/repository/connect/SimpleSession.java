@@ -3,11 +3,12 @@ package com.simple.repository.connect;
 import com.simple.repository.config.SimpleConfig;
 import com.simple.repository.config.SimpleThreadLocalStore;
 import com.simple.repository.master.exception.SimpleException;
+import com.simple.repository.master.exception.SimpleOverloadException;
+import com.simple.repository.util.SimpleRowMapper;
 import com.simple.repository.util.SimpleSqlDataType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -15,20 +16,36 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 数据库连接会话
  * <p>
  * 提供基础的增、删、改、查操作
- * 注意：为了降低资源消耗，将会在线程第一次开启会话时通过ThreadLocal保存,
+ * 默认(statement模式)自动提交的操作每条语句从连接池借用连接,执行完立即归还,
+ * 只在openTransaction()到commit()/rollback()之间占用连接并绑定到当前线程。
+ * 会话实现AutoCloseable,可通过try-with-resources限定会话范围,关闭时回滚未提交的事务并归还连接
+ * thread模式将会在线程第一次开启会话时通过ThreadLocal保存,
  * 并且在该线程中共享会话资源(connection、statement)。
  * 因此请根据业务需要，手动调用SimpleThreadLocalStore.clear()释放资源
+ * 配置了只读副本时,事务外的查询与统计会临时从副本借用连接执行,执行完立即归还;readPrimary()范围内的查询只由主库执行
+ * 分片表与分组表的操作通过指定数据源的方法执行,临时借用该数据源的连接;
+ * 写操作以自动提交方式执行,无法随当前会话的事务回滚,因此事务中调用抛出SimpleException
+ * 开启PreparedStatement缓存时,查询、统计与单条更新按sql形状复用连接缓存的PreparedStatement
+ * statement模式不在ThreadLocal中长期保存会话,事务与pinned操作结束后即解除绑定,适用于每个请求一个虚拟线程的场景
+ * 数据源开启并发限制时,事务外的操作达到并发上限直接抛出SimpleOverloadException
+ * 通过partition()指定连接池分区后,事务外的语句从该分区借用连接,报表等慢查询不会占满快速查询的连接池
+ * 语句默认使用数据源的query-timeout,可通过timeout()按调用指定超时,通过cancellable()绑定取消句柄
  * </p>
  *
  * @author laiqx
  * date 2023-02-05
  */
-public class SimpleSession {
+public class SimpleSession implements AutoCloseable {
 
     private final static Logger log = LoggerFactory.getLogger(SimpleSession.class);
     private final SimpleDataSource dataSource;
@@ -37,94 +54,432 @@ public class SimpleSession {
 
     private Statement statement;
 
+    /**
+     * 是否已开启事务
+     */
+    private boolean transaction;
+
+    /**
+     * 连接是否只在事务或pinned操作期间占用(statement模式)
+     */
+    private final boolean scoped;
+
     /**
      * 创建数据库会话
      * <p>
-     * 创建会话时初始化该会话连接
+     * thread模式创建会话时初始化该会话连接,statement模式在需要时才借用连接
      * </p>
      */
-    private SimpleSession() throws IOException, SQLException, ClassNotFoundException {
-        this.dataSource = SimpleDataSource.initSimpleDataSource(SimpleConfig.initConfig().dataSource);
-        connection = this.dataSource.activeConnect();
-        statement = connection.createStatement();
+    private SimpleSession(SimpleDataSource dataSource, boolean scoped) throws SQLException, ClassNotFoundException {
+        this.dataSource = dataSource;
+        this.scoped = scoped;
+        if (!scoped) {
+            connection = this.dataSource.activeConnect();
+            statement = connection.createStatement();
+        }
     }
 
     /**
      * 打开数据库会话
+     * <p>
+     * statement模式下当前线程没有进行中的事务时,每次返回新的会话,不占用连接也不保存到ThreadLocal
+     * </p>
      *
      * @return 返回数据会话
      */
     public static SimpleSession openSession() {
+        SimpleSession session = SimpleThreadLocalStore.session.get();
+        if (null != session) {
+            return session;
+        }
         try {
-            if (null == SimpleThreadLocalStore.session.get()) {
-                SimpleThreadLocalStore.session.set(new SimpleSession());
+            SimpleConfig.DataSource config = SimpleConfig.initConfig().dataSource;
+            SimpleDataSource dataSource = SimpleDataSource.initSimpleDataSource(config);
+            if (SimpleConfig.SessionMode.statement == config.getSessionMode()) {
+                return new SimpleSession(dataSource, true);
             }
+            session = new SimpleSession(dataSource, false);
         } catch (Exception e) {
             throw new SimpleException("开启会话失败:" + e.getMessage());
         }
-        return SimpleThreadLocalStore.session.get();
+        SimpleThreadLocalStore.session.set(session);
+        return session;
     }
 
     /**
      * 开启事务
      * 如果当前连接未关闭自动提交，则重新获取
      * 注意：自动提交的连接默认为长链
+     * statement模式下借用连接并绑定到当前线程,提交或回滚后归还
      * @throws SQLException 关闭自动提交事务异常
      */
     public void openTransaction() throws SQLException {
+        if (null == connection) {
+            bind();
+        }
         connection.getConnection().setAutoCommit(false);
+        transaction = true;
     }
 
     /**
-     * 统计数据
+     * 在指定的连接池分区执行操作
+     * <p>
+     * 执行期间当前线程事务外的语句从数据源的该分区借用连接,数据源未配置该分区时使用自身的连接池
+     * 事务与pinned操作仍使用已占用的连接;可嵌套,结束后恢复外层的分区
+     * </p>
      *
-     * @param sql 查询sql
-     * @return 返回统计的数
+     * @param partition 分区名称,为null时使用数据源自身的连接池
+     * @param action    执行的操作
+     * @param <R>       返回的类型
+     * @return 返回操作的结果
      */
-    public int count(String sql) {
-        ResultSet result = null;
+    public static <R> R partition(String partition, Supplier<R> action) {
+        return scoped(SimpleThreadLocalStore.partition, partition, action);
+    }
+
+    /**
+     * 以指定的查询超时执行操作
+     * <p>
+     * 执行期间当前线程执行的语句使用该超时(Statement.setQueryTimeout),覆盖数据源的query-timeout;
+     * 超时后驱动取消语句并抛出SQLTimeoutException,连接照常归还。可嵌套,结束后恢复外层的超时
+     * </p>
+     *
+     * @param seconds 超时时长(单位：秒),0为不限制,为null时使用数据源的默认值
+     * @param action  执行的操作
+     * @param <R>     返回的类型
+     * @return 返回操作的结果
+     */
+    public static <R> R timeout(Integer seconds, Supplier<R> action) {
+        return scoped(SimpleThreadLocalStore.queryTimeout, seconds, action);
+    }
+
+    /**
+     * 绑定取消句柄执行操作
+     * <p>
+     * 执行期间当前线程执行的语句登记到该句柄,其他线程可通过句柄取消执行中的语句
+     * </p>
+     *
+     * @param cancellation 取消句柄,为null时不绑定
+     * @param action       执行的操作
+     * @param <R>          返回的类型
+     * @return 返回操作的结果
+     */
+    public static <R> R cancellable(SimpleCancellation cancellation, Supplier<R> action) {
+        return scoped(SimpleThreadLocalStore.cancellation, cancellation, action);
+    }
+
+    /**
+     * 以指定的执行提示执行操作
+     * <p>
+     * 执行期间当前线程的查询语句按提示设置fetchSize、maxRows、结果集类型与只读,更新语句不受影响。
+     * 可嵌套,结束后恢复外层的提示
+     * </p>
+     *
+     * @param hint   执行提示,为null时使用驱动默认值
+     * @param action 执行的操作
+     * @param <R>    返回的类型
+     * @return 返回操作的结果
+     */
+    public static <R> R hint(SimpleQueryHint hint, Supplier<R> action) {
+        return scoped(SimpleThreadLocalStore.queryHint, hint, action);
+    }
+
+    /**
+     * 只由主库执行查询
+     * <p>
+     * 执行期间当前线程事务外的查询与统计不使用只读副本,用于读取后写入缓存等不能接受复制延迟的场景;
+     * 可嵌套,结束后恢复外层的设置
+     * </p>
+     *
+     * @param action 执行的操作
+     * @param <R>    返回的类型
+     * @return 返回操作的结果
+     */
+    public static <R> R readPrimary(Supplier<R> action) {
+        return scoped(SimpleThreadLocalStore.readPrimary, Boolean.TRUE, action);
+    }
+
+    /**
+     * 在其他线程执行时沿用当前线程的连接池分区、查询超时、取消句柄、执行提示与主库读取的设置
+     *
+     * @param action 执行的操作
+     * @param <R>    返回的类型
+     * @return 返回在其他线程执行的操作
+     */
+    static <R> Supplier<R> propagate(Supplier<R> action) {
+        String partition = SimpleThreadLocalStore.partition.get();
+        Integer timeout = SimpleThreadLocalStore.queryTimeout.get();
+        SimpleCancellation cancellation = SimpleThreadLocalStore.cancellation.get();
+        SimpleQueryHint hint = SimpleThreadLocalStore.queryHint.get();
+        Boolean readPrimary = SimpleThreadLocalStore.readPrimary.get();
+        return () -> partition(partition, () -> timeout(timeout, () -> cancellable(cancellation, () -> hint(hint,
+                () -> scoped(SimpleThreadLocalStore.readPrimary, readPrimary, action)))));
+    }
+
+    /**
+     * 在主库的异步线程池执行操作
+     *
+     * @param action 执行的操作
+     * @param <R>    返回的类型
+     * @return 返回操作结果的future
+     */
+    public static <R> CompletableFuture<R> async(Supplier<R> action) {
+        Executor executor;
         try {
-            result = statement.executeQuery(sql);
-            log(sql);
-            while (result.next()) {
-                return result.getInt(1);
+            executor = SimpleDataSource.initSimpleDataSource(SimpleConfig.initConfig().dataSource).getAsyncExecutor();
+        } catch (SQLException | ClassNotFoundException e) {
+            return CompletableFuture.failedFuture(new SimpleException("初始化数据源失败:" + e.getMessage(), e));
+        }
+        return async(action, executor);
+    }
+
+    /**
+     * 在指定的线程池执行操作
+     * <p>
+     * 1.操作使用独立的会话,不使用调用线程的会话与事务,执行结束后关闭操作中开启的会话(回滚未提交的事务并归还连接)
+     * 2.沿用调用线程的连接池分区、查询超时、取消句柄与执行提示
+     * 3.线程池拒绝时返回以SimpleOverloadException结束的future
+     * </p>
+     *
+     * @param action   执行的操作
+     * @param executor 执行的线程池
+     * @param <R>      返回的类型
+     * @return 返回操作结果的future
+     */
+    public static <R> CompletableFuture<R> async(Supplier<R> action, Executor executor) {
+        Supplier<R> task = propagate(action);
+        try {
+            return CompletableFuture.supplyAsync(() -> isolated(task), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new SimpleOverloadException("异步操作队列已满:" + e.getMessage()));
+        }
+    }
+
+    /**
+     * 以独立的会话执行操作,结束后恢复当前线程原有的会话
+     *
+     * @param action 执行的操作
+     * @param <R>    返回的类型
+     * @return 返回操作的结果
+     */
+    static <R> R isolated(Supplier<R> action) {
+        SimpleSession outer = SimpleThreadLocalStore.session.get();
+        SimpleThreadLocalStore.session.remove();
+        try {
+            return action.get();
+        } finally {
+            try {
+                SimpleThreadLocalStore.clear();
+            } finally {
+                if (null != outer) {
+                    SimpleThreadLocalStore.session.set(outer);
+                }
             }
-            return 0;
+        }
+    }
+
+    /**
+     * 是否已开启事务
+     *
+     * @return 返回是否在事务中
+     */
+    public boolean isTransaction() {
+        return transaction;
+    }
+
+    /**
+     * 占用同一个连接执行操作
+     * <p>
+     * 用于依赖连接状态的操作,如临时表;执行期间当前线程开启的会话均使用该连接
+     * thread模式或已占用连接时直接执行
+     * </p>
+     *
+     * @param action 执行的操作
+     */
+    public void pinned(Runnable action) {
+        if (null != connection) {
+            action.run();
+            return;
+        }
+        try {
+            bind();
         } catch (SQLException e) {
-            throw new SimpleException("执行语句异常:" + e.getMessage());
+            throw new SimpleException(e);
+        }
+        try {
+            action.run();
         } finally {
-            closeResultSet(result);
+            try {
+                release();
+            } catch (SQLException e) {
+                log.error("归还连接异常:" + e.getMessage());
+            }
         }
     }
 
+    /**
+     * 统计数据
+     * <p>
+     * 事务外优先由只读副本执行
+     * </p>
+     *
+     * @param sql 查询sql
+     * @return 返回统计的数
+     */
+    public int count(String sql) {
+        return read((connection, statement) -> count(connection, statement, sql));
+    }
+
     /**
      * 查询数据
+     * <p>
+     * 事务外优先由只读副本执行
+     * </p>
      *
      * @param sql 查询语句
      * @return 返回查询的数据
      */
     public List<Map<String, Object>> query(String sql) {
-        ResultSet result = null;
-        try {
-            result = statement.executeQuery(sql);
+        return read((connection, statement) -> query(connection, statement, sql, SimpleSession::mapReader));
+    }
+
+    /**
+     * 查询对象
+     * <p>
+     * 事务外优先由只读副本执行;按列序号读取后直接写入对象,不生成中间的map
+     * </p>
+     *
+     * @param sql         查询语句
+     * @param resultClass 返回的类型
+     * @param <E>         返回的类型
+     * @return 返回查询的对象
+     */
+    public <E> List<E> query(String sql, Class<E> resultClass) {
+        return read((connection, statement) -> query(connection, statement, sql, rowMapper(sql, resultClass)));
+    }
+
+    /**
+     * 在指定数据源统计数据
+     * <p>
+     * 临时从该数据源借用连接执行,不使用当前会话的连接,可在多个线程中并行调用
+     * </p>
+     *
+     * @param sql        查询sql
+     * @param dataSource 执行的数据源,如分片
+     * @return 返回统计的数
+     */
+    public int count(String sql, SimpleDataSource dataSource) {
+        return borrow(dataSource, (connection, statement) -> count(connection, statement, sql));
+    }
+
+    /**
+     * 在指定数据源查询数据
+     * <p>
+     * 临时从该数据源借用连接执行,不使用当前会话的连接,可在多个线程中并行调用
+     * </p>
+     *
+     * @param sql        查询语句
+     * @param dataSource 执行的数据源,如分片
+     * @return 返回查询的数据
+     */
+    public List<Map<String, Object>> query(String sql, SimpleDataSource dataSource) {
+        return borrow(dataSource, (connection, statement) -> query(connection, statement, sql, SimpleSession::mapReader));
+    }
+
+    /**
+     * 在指定数据源查询对象
+     * <p>
+     * 临时从该数据源借用连接执行,不使用当前会话的连接,可在多个线程中并行调用
+     * </p>
+     *
+     * @param sql         查询语句
+     * @param dataSource  执行的数据源,如分片
+     * @param resultClass 返回的类型
+     * @param <E>         返回的类型
+     * @return 返回查询的对象
+     */
+    public <E> List<E> query(String sql, SimpleDataSource dataSource, Class<E> resultClass) {
+        return borrow(dataSource, (connection, statement) -> query(connection, statement, sql, rowMapper(sql, resultClass)));
+    }
+
+    /**
+     * 流式查询数据
+     * <p>
+     * 逐行读取并交给consumer处理,不保存完整的结果,内存占用与结果行数无关;事务外优先由只读副本执行,不使用对冲读取
+     * 未指定执行提示时使用MySQL逐行读取(SimpleQueryHint.streaming()),指定了提示时按提示执行,如开启useCursorFetch后按fetchSize分批读取
+     * 读取完成前连接被占用:事务或thread模式下consumer中不能再通过当前会话执行语句,statement模式下会另外借用连接
+     * consumer抛出异常或取消句柄已取消时停止读取,并取消剩余结果的传输
+     * </p>
+     *
+     * @param sql         查询语句
+     * @param resultClass 返回的类型
+     * @param consumer    每个对象的处理
+     * @param <E>         返回的类型
+     * @return 返回读取的行数
+     */
+    public <E> int stream(String sql, Class<E> resultClass, Consumer<E> consumer) {
+        return streaming(() -> read((connection, statement) -> stream(connection, statement, sql, rowMapper(sql, resultClass), consumer), true));
+    }
+
+    /**
+     * 在指定数据源流式查询数据
+     * <p>
+     * 临时从该数据源借用连接执行,读取完成后归还,说明同stream(sql, resultClass, consumer)
+     * </p>
+     *
+     * @param sql         查询语句
+     * @param dataSource  执行的数据源,如分片
+     * @param resultClass 返回的类型
+     * @param consumer    每个对象的处理
+     * @param <E>         返回的类型
+     * @return 返回读取的行数
+     */
+    public <E> int stream(String sql, SimpleDataSource dataSource, Class<E> resultClass, Consumer<E> consumer) {
+        return streaming(() -> {
+            try {
+                return execute(dataSource, (connection, statement) -> stream(connection, statement, sql, rowMapper(sql, resultClass), consumer), false);
+            } catch (SQLException | ClassNotFoundException e) {
+                throw new SimpleException("执行语句异常:" + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 在指定数据源更新数据
+     * <p>
+     * 临时从该数据源借用连接以自动提交方式执行;当前会话已开启事务时抛出SimpleException
+     * </p>
+     *
+     * @param sql        sql语句
+     * @param dataSource 执行的数据源,如分片
+     * @return 返回变更数量
+     */
+    public int update(String sql, SimpleDataSource dataSource) {
+        requireAutoCommit(dataSource);
+        return borrow(dataSource, (connection, statement) -> {
             log(sql);
-            // 解析数据库返回的数据并置入map返回
-            List<Map<String, Object>> list = new ArrayList<>();
-            Map<String, Class<?>> columnType = SimpleSqlDataType.getColumnType(result.getMetaData());
-            while (result.next()) {
-                Map<String, Object> map = new HashMap<>();
-                for (String paramName : columnType.keySet()) {
-                    map.put(paramName.toLowerCase(), result.getObject(paramName, columnType.get(paramName)));
-                }
-                list.add(map);
+            return connection.executeUpdate(statement, sql);
+        });
+    }
+
+    /**
+     * 在指定数据源批量更新
+     * <p>
+     * 临时从该数据源借用连接以自动提交方式执行;当前会话已开启事务时抛出SimpleException
+     * </p>
+     *
+     * @param sqlList    sql语句
+     * @param dataSource 执行的数据源,如分片
+     */
+    public void update(List<String> sqlList, SimpleDataSource dataSource) {
+        requireAutoCommit(dataSource);
+        borrow(dataSource, (connection, statement) -> {
+            for (String sql : sqlList) {
+                log(sql);
+                statement.addBatch(sql);
             }
-            result.close();
-            return list;
-        } catch (SQLException e) {
-            throw new SimpleException("执行语句异常:" + e.getMessage());
-        } finally {
-            closeResultSet(result);
-        }
+            return connection.executeBatch(statement);
+        });
     }
 
     /**
@@ -134,9 +489,11 @@ public class SimpleSession {
      */
     public int update(String sql) {
         try {
-            log(sql);
-            return statement.executeUpdate(sql);
-        } catch (SQLException e) {
+            return primary((connection, statement) -> {
+                log(sql);
+                return connection.executeUpdate(statement, sql);
+            });
+        } catch (SQLException | ClassNotFoundException e) {
             throw new SimpleException(e);
         }
     }
@@ -148,12 +505,14 @@ public class SimpleSession {
      */
     public void update(List<String> sqlList) {
         try {
-            for (String sql : sqlList) {
-                log(sql);
-                statement.addBatch(sql);
-            }
-            statement.executeBatch();
-        } catch (SQLException e) {
+            primary((connection, statement) -> {
+                for (String sql : sqlList) {
+                    log(sql);
+                    statement.addBatch(sql);
+                }
+                return connection.executeBatch(statement);
+            });
+        } catch (SQLException | ClassNotFoundException e) {
             throw new SimpleException(e);
         }
     }
@@ -165,10 +524,70 @@ public class SimpleSession {
      * @return 返回id集合
      */
     public List<Number> add(String sql, Class<?> tClass) {
+        try {
+            return primary((connection, statement) -> add(connection, statement, sql, tClass));
+        } catch (SQLException | ClassNotFoundException e) {
+            throw new SimpleException("执行语句异常:" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 在指定数据源新增对象
+     * <p>
+     * 临时从该数据源借用连接以自动提交方式执行;当前会话已开启事务时抛出SimpleException
+     * </p>
+     *
+     * @param sql        sql语句
+     * @param tClass     新增对象的类型
+     * @param dataSource 执行的数据源,如分片
+     * @return 返回id集合
+     */
+    public List<Number> add(String sql, Class<?> tClass, SimpleDataSource dataSource) {
+        requireAutoCommit(dataSource);
+        return borrow(dataSource, (connection, statement) -> add(connection, statement, sql, tClass));
+    }
+
+    /**
+     * 会话使用的主库数据源
+     *
+     * @return 返回主库数据源
+     */
+    SimpleDataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 分片路由
+     *
+     * @return 返回分片路由,未配置分片时返回null
+     */
+    public SimpleShardRouter getShardRouter() {
+        return dataSource.getShardRouter();
+    }
+
+    /**
+     * 表所属分组的数据源
+     *
+     * @param table 表名
+     * @return 返回分组数据源,表未分组时返回null
+     */
+    public SimpleDataSource getTableDataSource(String table) {
+        return dataSource.getTableDataSource(table);
+    }
+
+    /**
+     * 新增对象
+     *
+     * @param connection 执行语句的连接
+     * @param statement  执行语句的Statement
+     * @param sql        sql语句
+     * @param tClass     新增对象的类型
+     * @return 返回id集合
+     */
+    private List<Number> add(SimpleConnection connection, Statement statement, String sql, Class<?> tClass) throws SQLException {
         ResultSet result = null;
         try {
-            statement.executeUpdate(sql, Statement.RETURN_GENERATED_KEYS);
-            result = statement.getGeneratedKeys();
+            result = connection.executeInsert(statement, sql);
             List<Number> ids = new ArrayList<>();
             while (result.next()) {
                 //生成的主键只有一个值，所以获得第一列的值即可
@@ -181,8 +600,6 @@ public class SimpleSession {
             result.close();
             log(sql);
             return ids;
-        } catch (SQLException e) {
-            throw new SimpleException("执行语句异常:" + e.getMessage());
         } finally {
             closeResultSet(result);
         }
@@ -194,7 +611,13 @@ public class SimpleSession {
      */
     public void commit() throws SQLException {
         connection.commit();
-        dataSource.giveBack(connection);
+        transaction = false;
+        if (scoped) {
+            release();
+            return;
+        }
+        // thread模式继续占用该连接,恢复自动提交
+        connection.getConnection().setAutoCommit(true);
     }
 
     /**
@@ -203,17 +626,431 @@ public class SimpleSession {
      */
     public void rollback() throws SQLException {
         connection.rollback();
+        transaction = false;
+        if (scoped) {
+            release();
+            return;
+        }
+        connection.getConnection().setAutoCommit(true);
     }
 
     /**
      * 使用完连接(提交事务后)归还
+     * <p>
+     * 未提交的事务先回滚,避免恢复自动提交时被隐式提交
+     * </p>
      * @throws SQLException 数据连接关闭异常
      */
     public void clear() throws SQLException {
-        if (null != statement && !statement.isClosed()) {
+        if (transaction) {
+            rollback();
+        }
+        if (null == connection) {
+            return;
+        }
+        if (scoped) {
+            release();
+            return;
+        }
+        SimpleConnection borrowed = connection;
+        connection = null;
+        try {
+            if (!statement.isClosed()) {
+                statement.close();
+            }
+        } finally {
+            statement = null;
+            dataSource.giveBack(borrowed);
+        }
+    }
+
+    /**
+     * 关闭会话
+     * <p>
+     * 回滚未提交的事务,归还占用的连接并解除与当前线程的绑定
+     * 注意：事务中开启的会话与事务是同一个会话,不要在事务内关闭
+     * </p>
+     */
+    @Override
+    public void close() {
+        try {
+            clear();
+        } catch (SQLException e) {
+            throw new SimpleException("关闭连接会话失败:" + e.getMessage());
+        } finally {
+            if (this == SimpleThreadLocalStore.session.get()) {
+                SimpleThreadLocalStore.session.remove();
+            }
+        }
+    }
+
+    /**
+     * 在当前线程设置值后执行操作,结束后恢复原值
+     *
+     * @param local  线程变量
+     * @param value  执行期间的值,为null时清除
+     * @param action 执行的操作
+     */
+    private static <V, R> R scoped(ThreadLocal<V> local, V value, Supplier<R> action) {
+        V outer = local.get();
+        if (null == value) {
+            local.remove();
+        } else {
+            local.set(value);
+        }
+        try {
+            return action.get();
+        } finally {
+            if (null == outer) {
+                local.remove();
+            } else {
+                local.set(outer);
+            }
+        }
+    }
+
+    /**
+     * 借用连接并绑定到当前线程(statement模式)
+     *
+     * @throws SQLException 获取连接异常
+     */
+    private void bind() throws SQLException {
+        try {
+            connection = dataSource.activeConnect();
+        } catch (ClassNotFoundException e) {
+            throw new SimpleException(e);
+        }
+        statement = connection.createStatement();
+        SimpleThreadLocalStore.session.set(this);
+    }
+
+    /**
+     * 恢复自动提交后归还连接,并解除与当前线程的绑定(statement模式)
+     *
+     * @throws SQLException 数据库异常
+     */
+    private void release() throws SQLException {
+        SimpleConnection borrowed = connection;
+        connection = null;
+        SimpleThreadLocalStore.session.remove();
+        try {
             statement.close();
+            borrowed.getConnection().setAutoCommit(true);
+        } finally {
+            statement = null;
+            dataSource.giveBack(borrowed);
+        }
+    }
+
+    /**
+     * 执行只读操作
+     * <p>
+     * 事务中、readPrimary()范围内或没有可用的只读副本时使用当前会话的连接,
+     * 否则从执行中请求最少的副本借用连接,执行完立即归还
+     * 开启对冲读取时,副本超过延迟阈值未返回则向另一个副本(或主库)发送相同的查询,先返回的结果生效
+     * </p>
+     *
+     * @param callback 执行的操作
+     * @param <R>      返回的类型
+     * @return 返回执行结果
+     */
+    private <R> R read(StatementCallback<R> callback) {
+        return read(callback, false);
+    }
+
+    /**
+     * 执行只读操作
+     * <p>
+     * 流式查询不使用对冲读取(重复执行会重复处理数据),耗时取决于调用方的处理速度,不参与并发上限的调整
+     * </p>
+     *
+     * @param callback  执行的操作
+     * @param streaming 是否为流式查询
+     * @param <R>       返回的类型
+     * @return 返回执行结果
+     */
+    private <R> R read(StatementCallback<R> callback, boolean streaming) {
+        boolean primaryOnly = transaction || Boolean.TRUE.equals(SimpleThreadLocalStore.readPrimary.get());
+        SimpleReplicaRouter.Replica replica = primaryOnly ? null : dataSource.chooseReplica();
+        try {
+            if (null == replica) {
+                return primary(callback, !streaming);
+            }
+            SimpleHedgedReader hedgedReader = streaming ? null : dataSource.getHedgedReader();
+            if (null != hedgedReader) {
+                return limit(replica.getDataSource(), () -> hedgedReader.read(replica, callback));
+            }
+            try {
+                return execute(replica.begin(), callback, !streaming);
+            } finally {
+                replica.end();
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            throw new SimpleException("执行语句异常:" + e.getMessage(), e);
         }
-        dataSource.giveBack(connection);
+    }
+
+    /**
+     * 在主库执行操作
+     * <p>
+     * 会话占用连接时使用该连接,否则(statement模式)借用连接执行完立即归还
+     * 事务外的操作受数据源并发限制,事务中的操作不再限制,避免已占用连接的事务中途被拒绝
+     * thread模式在事务外指定了连接池分区时,不使用会话的连接,改为从分区借用连接
+     * </p>
+     *
+     * @param callback 执行的操作
+     * @param <R>      返回的类型
+     * @return 返回执行结果
+     */
+    private <R> R primary(StatementCallback<R> callback) throws SQLException, ClassNotFoundException {
+        return primary(callback, true);
+    }
+
+    /**
+     * 在主库执行操作
+     *
+     * @param callback 执行的操作
+     * @param sampled  是否按耗时调整并发上限
+     * @param <R>      返回的类型
+     * @return 返回执行结果
+     */
+    private <R> R primary(StatementCallback<R> callback, boolean sampled) throws SQLException, ClassNotFoundException {
+        if (null == connection || !scoped && !transaction && null != SimpleThreadLocalStore.partition.get()) {
+            return execute(dataSource, callback, sampled);
+        }
+        if (!transaction) {
+            return limit(dataSource, () -> callback.apply(connection, statement), sampled);
+        }
+        return callback.apply(connection, statement);
+    }
+
+    /**
+     * 检查能否在指定数据源执行写操作
+     * <p>
+     * 在其他数据源(分片、分组)的写操作借用该数据源的连接自动提交,当前会话的事务回滚时无法撤销,
+     * 因此事务中不允许执行,避免一个事务被静默拆分为多个独立提交的部分
+     * </p>
+     *
+     * @param target 执行写操作的数据源
+     */
+    private void requireAutoCommit(SimpleDataSource target) {
+        if (transaction && target != dataSource) {
+            throw new SimpleException(String.format("事务中不能在其他数据源执行写操作,该数据源的写入无法随事务回滚:dataSource=%s", target.getName()));
+        }
+    }
+
+    /**
+     * 从指定数据源借用连接执行操作
+     *
+     * @param dataSource 数据源
+     * @param callback   执行的操作
+     * @param <R>        返回的类型
+     * @return 返回执行结果
+     */
+    private static <R> R borrow(SimpleDataSource dataSource, StatementCallback<R> callback) {
+        try {
+            return execute(dataSource, callback);
+        } catch (SQLException | ClassNotFoundException e) {
+            throw new SimpleException("执行语句异常:" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 从指定数据源借用连接执行操作,执行完立即归还
+     * <p>
+     * 当前线程指定了连接池分区时从该数据源的分区借用连接
+     * 数据源开启并发限制时,获取连接与执行语句都在限制内进行
+     * </p>
+     *
+     * @param dataSource 数据源
+     * @param callback   执行的操作
+     * @param <R>        返回的类型
+     * @return 返回执行结果
+     */
+    private static <R> R execute(SimpleDataSource dataSource, StatementCallback<R> callback) throws SQLException, ClassNotFoundException {
+        return execute(dataSource, callback, true);
+    }
+
+    /**
+     * 从指定数据源借用连接执行操作,执行完立即归还
+     *
+     * @param dataSource 数据源
+     * @param callback   执行的操作
+     * @param sampled    是否按耗时调整并发上限
+     * @param <R>        返回的类型
+     * @return 返回执行结果
+     */
+    private static <R> R execute(SimpleDataSource dataSource, StatementCallback<R> callback, boolean sampled) throws SQLException, ClassNotFoundException {
+        SimpleDataSource target = dataSource.getPartition(SimpleThreadLocalStore.partition.get());
+        return limit(target, () -> {
+            SimpleConnection borrowed = target.activeConnect();
+            try (Statement borrowedStatement = borrowed.createStatement()) {
+                return callback.apply(borrowed, borrowedStatement);
+            } finally {
+                target.giveBack(borrowed);
+            }
+        }, sampled);
+    }
+
+    /**
+     * 在数据源的并发限制内执行操作
+     * <p>
+     * 达到并发上限时抛出SimpleOverloadException,未开启并发限制时直接执行
+     * </p>
+     *
+     * @param dataSource 数据源
+     * @param call       执行的操作
+     * @param <R>        返回的类型
+     * @return 返回执行结果
+     */
+    private static <R> R limit(SimpleDataSource dataSource, SimpleConcurrencyLimiter.Call<R> call) throws SQLException, ClassNotFoundException {
+        return limit(dataSource, call, true);
+    }
+
+    /**
+     * 在数据源的并发限制内执行操作
+     *
+     * @param dataSource 数据源
+     * @param call       执行的操作
+     * @param sampled    是否按耗时调整并发上限
+     * @param <R>        返回的类型
+     * @return 返回执行结果
+     */
+    private static <R> R limit(SimpleDataSource dataSource, SimpleConcurrencyLimiter.Call<R> call, boolean sampled) throws SQLException, ClassNotFoundException {
+        SimpleConcurrencyLimiter limiter = dataSource.getLimiter();
+        return null == limiter ? call.call() : limiter.execute(call, sampled);
+    }
+
+    /**
+     * 以流式读取的执行提示执行操作,已指定执行提示时沿用
+     *
+     * @param action 执行的操作
+     * @return 返回读取的行数
+     */
+    private static int streaming(Supplier<Integer> action) {
+        SimpleQueryHint hint = SimpleThreadLocalStore.queryHint.get();
+        return hint(null == hint ? new SimpleQueryHint().streaming() : hint, action);
+    }
+
+    /**
+     * 统计数据
+     *
+     * @param connection 执行语句的连接
+     * @param statement  无法使用PreparedStatement缓存时执行语句的Statement
+     * @param sql        查询sql
+     * @return 返回统计的数
+     */
+    private int count(SimpleConnection connection, Statement statement, String sql) throws SQLException {
+        ResultSet result = null;
+        boolean readOnly = connection.beginReadOnly();
+        try {
+            result = connection.executeQuery(statement, sql);
+            log(sql);
+            while (result.next()) {
+                return result.getInt(1);
+            }
+            return 0;
+        } finally {
+            closeResultSet(result);
+            connection.restoreReadOnly(readOnly);
+        }
+    }
+
+    /**
+     * 查询数据
+     *
+     * @param connection 执行语句的连接
+     * @param statement  无法使用PreparedStatement缓存时执行语句的Statement
+     * @param sql        查询语句
+     * @param readers    按结果集生成每行的读取方法
+     * @param <E>        每行数据的类型
+     * @return 返回查询的数据
+     */
+    private <E> List<E> query(SimpleConnection connection, Statement statement, String sql, ReaderFactory<E> readers) throws SQLException {
+        ResultSet result = null;
+        boolean readOnly = connection.beginReadOnly();
+        try {
+            result = connection.executeQuery(statement, sql);
+            log(sql);
+            List<E> list = new ArrayList<>();
+            RowReader<E> reader = readers.create(result);
+            while (result.next()) {
+                list.add(reader.read(result));
+            }
+            return list;
+        } finally {
+            closeResultSet(result);
+            connection.restoreReadOnly(readOnly);
+        }
+    }
+
+    /**
+     * 流式查询数据
+     *
+     * @param connection 执行语句的连接
+     * @param statement  无法使用PreparedStatement缓存时执行语句的Statement
+     * @param sql        查询语句
+     * @param readers    按结果集生成每行的读取方法
+     * @param consumer   每行数据的处理
+     * @param <E>        每行数据的类型
+     * @return 返回读取的行数
+     */
+    private <E> int stream(SimpleConnection connection, Statement statement, String sql, ReaderFactory<E> readers, Consumer<E> consumer) throws SQLException {
+        ResultSet result = null;
+        boolean readOnly = connection.beginReadOnly();
+        SimpleCancellation cancellation = SimpleThreadLocalStore.cancellation.get();
+        boolean completed = false;
+        try {
+            result = connection.executeQuery(statement, sql);
+            log(sql);
+            RowReader<E> reader = readers.create(result);
+            int rows = 0;
+            while (result.next()) {
+                if (null != cancellation && cancellation.isCancelled()) {
+                    throw new SimpleException("查询已取消");
+                }
+                consumer.accept(reader.read(result));
+                rows++;
+            }
+            completed = true;
+            return rows;
+        } finally {
+            // 提前结束时取消剩余结果的传输,避免关闭结果集时读完全部数据
+            if (!completed && null != result) {
+                cancelStatement(result);
+            }
+            closeResultSet(result);
+            connection.restoreReadOnly(readOnly);
+        }
+    }
+
+    /**
+     * 按列名读取为map
+     *
+     * @param result 结果集
+     * @return 返回每行的读取方法,列名(小写)与值
+     */
+    private static RowReader<Map<String, Object>> mapReader(ResultSet result) throws SQLException {
+        Map<String, Class<?>> columnType = SimpleSqlDataType.getColumnType(result.getMetaData());
+        return row -> {
+            Map<String, Object> map = new HashMap<>();
+            for (String paramName : columnType.keySet()) {
+                map.put(paramName.toLowerCase(), row.getObject(paramName, columnType.get(paramName)));
+            }
+            return map;
+        };
+    }
+
+    /**
+     * 按列序号直接映射为对象,映射计划按(sql形状,对象类型)缓存
+     *
+     * @param sql         查询语句
+     * @param resultClass 返回的类型
+     * @param <E>         返回的类型
+     * @return 返回读取方法的生成方式
+     */
+    private static <E> ReaderFactory<E> rowMapper(String sql, Class<E> resultClass) {
+        return result -> SimpleRowMapper.of(sql, resultClass, result.getMetaData())::map;
     }
 
     /**
@@ -231,6 +1068,19 @@ public class SimpleSession {
         }
     }
 
+    /**
+     * 取消结果集所属的语句
+     *
+     * @param result 结果集
+     */
+    private void cancelStatement(ResultSet result) {
+        try {
+            result.getStatement().cancel();
+        } catch (SQLException e) {
+            log.warn("取消流式查询异常:" + e.getMessage());
+        }
+    }
+
     /**
      * 关闭ResultSet
      *
@@ -245,4 +1095,56 @@ public class SimpleSession {
             }
         }
     }
+
+    /**
+     * 使用Statement执行的操作
+     *
+     * @param <R> 返回的类型
+     */
+    interface StatementCallback<R> {
+
+        /**
+         * 执行操作
+         *
+         * @param connection 执行语句的连接
+         * @param statement  执行语句的Statement
+         * @return 返回执行结果
+         * @throws SQLException 执行语句异常
+         */
+        R apply(SimpleConnection connection, Statement statement) throws SQLException;
+    }
+
+    /**
+     * 每行数据的读取方法
+     *
+     * @param <E> 每行数据的类型
+     */
+    interface RowReader<E> {
+
+        /**
+         * 读取当前行
+         *
+         * @param result 结果集
+         * @return 返回当前行的数据
+         * @throws SQLException 读取数据异常
+         */
+        E read(ResultSet result) throws SQLException;
+    }
+
+    /**
+     * 按结果集生成读取方法,每次查询调用一次
+     *
+     * @param <E> 每行数据的类型
+     */
+    interface ReaderFactory<E> {
+
+        /**
+         * 生成读取方法
+         *
+         * @param result 结果集
+         * @return 返回每行数据的读取方法
+         * @throws SQLException 读取列信息异常
+         */
+        RowReader<E> create(ResultSet result) throws SQLException;
+    }
 }
@@ -0,0 +1,166 @@
+package com.simple.repository.connect;
+
+import com.simple.repository.config.SimpleThreadLocalStore;
+import com.simple.repository.master.exception.SimpleException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 分片路由
+ * <p>
+ * 1.分片表按分片键取模选择分片,数字按数值取模,其他类型按hashCode取模
+ * 2.无法确定分片的操作并行分发到所有分片执行,由调用方合并结果
+ * 3.未配置分片的表由主库执行
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-23
+ */
+public class SimpleShardRouter {
+
+    /**
+     * 并行分发的执行线程
+     * <p>
+     * 调用线程执行第一个分片,其余分片由该线程池执行
+     * </p>
+     */
+    private static final ExecutorService SCATTER_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "simple-shard-scatter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 分片数据源
+     */
+    private final List<SimpleDataSource> shards;
+
+    /**
+     * 分片表与分片键
+     */
+    private final Map<String, String> tables;
+
+    public SimpleShardRouter(List<SimpleDataSource> shards, Map<String, String> tables) {
+        this.shards = shards;
+        this.tables = tables;
+    }
+
+    /**
+     * 获取分片键
+     *
+     * @param table 表名
+     * @return 返回分片字段,未分片的表返回null
+     */
+    public String getColumn(String table) {
+        return tables.get(table);
+    }
+
+    /**
+     * 按分片键选择分片
+     *
+     * @param key 分片键的值
+     * @return 返回分片数据源
+     */
+    public SimpleDataSource route(Object key) {
+        if (null == key) {
+            throw new SimpleException("分片键的值不能为空");
+        }
+        long hash = key instanceof Number ? ((Number) key).longValue() : key.hashCode();
+        return shards.get((int) Math.floorMod(hash, (long) shards.size()));
+    }
+
+    /**
+     * 并行分发到所有分片执行
+     * <p>
+     * 任一分片失败时取消尚未开始的分片,并通过取消句柄取消其他分片执行中的语句,之后抛出该分片的异常
+     * 调用线程绑定了取消句柄时,取消该句柄也会取消本次分发
+     * </p>
+     *
+     * @param callback 在每个分片执行的操作
+     * @param <R>      返回的类型
+     * @return 返回各分片的执行结果,与分片顺序一致
+     */
+    public <R> List<R> scatter(ShardCallback<R> callback) {
+        SimpleCancellation outer = SimpleThreadLocalStore.cancellation.get();
+        SimpleCancellation cancellation = null == outer ? new SimpleCancellation() : outer.child();
+        try {
+            return SimpleSession.cancellable(cancellation, () -> scatter(callback, cancellation));
+        } finally {
+            if (null != outer) {
+                outer.release(cancellation);
+            }
+        }
+    }
+
+    /**
+     * 在本次分发的取消句柄内并行执行
+     *
+     * @param callback     在每个分片执行的操作
+     * @param cancellation 本次分发的取消句柄
+     * @param <R>          返回的类型
+     * @return 返回各分片的执行结果,与分片顺序一致
+     */
+    private <R> List<R> scatter(ShardCallback<R> callback, SimpleCancellation cancellation) {
+        List<CompletableFuture<R>> futures = new ArrayList<>();
+        // 分发线程沿用调用线程的连接池分区、查询超时与取消句柄
+        for (int i = 1; i < shards.size(); i++) {
+            SimpleDataSource shard = shards.get(i);
+            futures.add(CompletableFuture.supplyAsync(SimpleSession.propagate(() -> callback.apply(shard)), SCATTER_EXECUTOR));
+        }
+        List<R> results = new ArrayList<>();
+        try {
+            results.add(callback.apply(shards.get(0)));
+            for (CompletableFuture<R> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            cancel(futures, cancellation);
+            Throwable cause = null == e.getCause() ? e : e.getCause();
+            throw cause instanceof SimpleException ? (SimpleException) cause : new SimpleException(cause);
+        } catch (RuntimeException | Error e) {
+            cancel(futures, cancellation);
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * 取消其他分片的执行
+     *
+     * @param futures      其他分片的执行结果
+     * @param cancellation 本次分发的取消句柄
+     */
+    private static void cancel(List<? extends CompletableFuture<?>> futures, SimpleCancellation cancellation) {
+        // 未开始的分片不再执行,已开始的分片取消执行中的语句,之后的语句直接抛出异常
+        for (CompletableFuture<?> future : futures) {
+            future.cancel(false);
+        }
+        cancellation.cancel();
+    }
+
+    public List<SimpleDataSource> getShards() {
+        return shards;
+    }
+
+    /**
+     * 在分片执行的操作
+     *
+     * @param <R> 返回的类型
+     */
+    public interface ShardCallback<R> {
+
+        /**
+         * 执行操作
+         *
+         * @param shard 分片数据源
+         * @return 返回执行结果
+         */
+        R apply(SimpleDataSource shard);
+    }
+}
@@ -0,0 +1,277 @@
+package com.simple.repository.connect;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+import com.simple.repository.util.SimpleSqlShape;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PreparedStatement缓存
+ * <p>
+ * 1.每个连接一个缓存,按sql形状(字面量替换为占位符)复用PreparedStatement,超出容量时关闭最久未使用的
+ * 2.同一sql形状在数据源内执行达到阈值后,改为服务端预编译,MySQL不再重复解析该语句;
+ * 数据源内服务端预编译语句数量达到上限或服务端返回1461(超出max_prepared_stmt_count)时使用客户端预编译
+ * 3.无法解析形状的sql返回null,由调用方使用Statement直接执行
+ * 注意：连接同一时间只被一个线程使用,缓存本身不做同步
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-21
+ */
+public class SimpleStatementCache {
+
+    private final static Logger log = LoggerFactory.getLogger(SimpleStatementCache.class);
+
+    /**
+     * MySQL错误码:服务端预编译语句数量超出max_prepared_stmt_count
+     */
+    private final static int MAX_PREPARED_STMT_COUNT_REACHED = 1461;
+
+    private final Connection connection;
+
+    private final ShapeCounter counter;
+
+    private final Map<String, Entry> statements;
+
+    public SimpleStatementCache(Connection connection, ShapeCounter counter) {
+        this.connection = connection;
+        this.counter = counter;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * 获取sql对应的PreparedStatement并绑定参数
+     *
+     * @param sql 拼接好字面量的sql语句
+     * @return 返回绑定参数后的PreparedStatement,无法解析形状时返回null
+     * @throws SQLException 预编译或绑定参数异常
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        SimpleSqlShape shape = SimpleSqlShape.parse(sql);
+        if (null == shape) {
+            return null;
+        }
+        boolean promote = counter.increment(shape.getSql()) >= counter.promoteThreshold;
+        Entry entry = statements.get(shape.getSql());
+        if (null != entry && promote && !entry.server) {
+            statements.remove(shape.getSql());
+            close(entry);
+            entry = null;
+        }
+        if (null == entry) {
+            counter.metrics.statementMissed();
+            entry = promote ? serverPrepare(shape.getSql()) : new Entry(connection.prepareStatement(shape.getSql()), false, false);
+            statements.put(shape.getSql(), entry);
+            evict();
+        } else {
+            counter.metrics.statementHit();
+        }
+        PreparedStatement statement = entry.statement;
+        statement.clearParameters();
+        List<Object> params = shape.getParams();
+        for (int i = 0; i < params.size(); i++) {
+            statement.setObject(i + 1, params.get(i));
+        }
+        return statement;
+    }
+
+    /**
+     * 关闭缓存的PreparedStatement
+     */
+    public void clear() {
+        for (Entry entry : statements.values()) {
+            close(entry);
+        }
+        statements.clear();
+    }
+
+    /**
+     * 服务端预编译
+     * <p>
+     * 数据源内服务端预编译语句达到上限、服务端语句数达到max_prepared_stmt_count或服务端不支持预编译的语句退回客户端预编译
+     * </p>
+     */
+    private Entry serverPrepare(String sql) throws SQLException {
+        if (!counter.acquireServer()) {
+            return new Entry(connection.prepareStatement(sql), true, false);
+        }
+        try {
+            PreparedStatement statement = connection.unwrap(JdbcConnection.class).serverPrepareStatement(sql);
+            counter.metrics.statementPromoted();
+            return new Entry(statement, true, true);
+        } catch (SQLException e) {
+            counter.releaseServer();
+            if (MAX_PREPARED_STMT_COUNT_REACHED == e.getErrorCode()) {
+                log.warn("服务端预编译语句数量超出max_prepared_stmt_count,使用客户端预编译:sql={}", sql);
+            } else {
+                log.warn("服务端预编译失败,使用客户端预编译:sql={},msg={}", sql, e.getMessage());
+            }
+            return new Entry(connection.prepareStatement(sql), true, false);
+        }
+    }
+
+    /**
+     * 关闭超出容量的最久未使用的PreparedStatement
+     */
+    private void evict() {
+        Iterator<Entry> iterator = statements.values().iterator();
+        while (statements.size() > counter.cacheSize && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            close(eldest);
+            counter.metrics.statementEvicted();
+        }
+    }
+
+    private void close(Entry entry) {
+        if (entry.serverPrepared) {
+            counter.releaseServer();
+        }
+        try {
+            entry.statement.close();
+        } catch (SQLException e) {
+            log.error("关闭PreparedStatement异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存的PreparedStatement
+     */
+    private static class Entry {
+
+        private final PreparedStatement statement;
+
+        /**
+         * 是否已尝试服务端预编译
+         */
+        private final boolean server;
+
+        /**
+         * 是否为服务端预编译,关闭时归还数据源的服务端预编译名额
+         */
+        private final boolean serverPrepared;
+
+        Entry(PreparedStatement statement, boolean server, boolean serverPrepared) {
+            this.statement = statement;
+            this.server = server;
+            this.serverPrepared = serverPrepared;
+        }
+    }
+
+    /**
+     * sql形状执行次数
+     * <p>
+     * 同一数据源的连接共享,记录的形状数量达到上限后不再记录新形状,新形状不会被提升为服务端预编译;
+     * 同时记录数据源所有连接中服务端预编译语句的数量
+     * </p>
+     */
+    public static class ShapeCounter {
+
+        /**
+         * 记录的sql形状数量上限
+         */
+        private static final int MAX_SHAPES = 10000;
+
+        private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+        /**
+         * 每个连接缓存的PreparedStatement数量
+         */
+        private final int cacheSize;
+
+        /**
+         * 服务端预编译的执行次数阈值
+         */
+        private final int promoteThreshold;
+
+        /**
+         * 数据源所有连接的服务端预编译语句数量上限,0为不使用服务端预编译
+         */
+        private final int serverMax;
+
+        /**
+         * 数据源所有连接中服务端预编译语句的数量
+         */
+        private final AtomicInteger serverCount = new AtomicInteger();
+
+        private final SimplePoolMetrics metrics;
+
+        public ShapeCounter(int cacheSize, int promoteThreshold, int serverMax, SimplePoolMetrics metrics) {
+            this.cacheSize = cacheSize;
+            this.promoteThreshold = promoteThreshold;
+            this.serverMax = serverMax;
+            this.metrics = metrics;
+        }
+
+        /**
+         * 累加执行次数
+         *
+         * @param shape sql形状
+         * @return 返回累加后的执行次数,形状未记录时返回0
+         */
+        int increment(String shape) {
+            AtomicInteger count = counts.get(shape);
+            if (null == count) {
+                if (counts.size() >= MAX_SHAPES) {
+                    return 0;
+                }
+                count = counts.computeIfAbsent(shape, key -> new AtomicInteger());
+            }
+            // 达到阈值后不再累加,避免溢出
+            int current = count.get();
+            return current >= promoteThreshold ? current : count.incrementAndGet();
+        }
+
+        /**
+         * 占用服务端预编译名额
+         *
+         * @return 未达到上限时返回true
+         */
+        boolean acquireServer() {
+            while (true) {
+                int current = serverCount.get();
+                if (current >= serverMax) {
+                    return false;
+                }
+                if (serverCount.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 归还服务端预编译名额
+         */
+        void releaseServer() {
+            serverCount.decrementAndGet();
+        }
+
+        /**
+         * 服务端预编译语句的数量
+         *
+         * @return 返回数据源所有连接中服务端预编译语句的数量
+         */
+        public int serverSize() {
+            return serverCount.get();
+        }
+
+        /**
+         * 记录的sql形状数量
+         *
+         * @return 返回形状数量
+         */
+        public int size() {
+            return counts.size();
+        }
+    }
+}
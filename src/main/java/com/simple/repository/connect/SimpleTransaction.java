@@ -0,0 +1,217 @@
+package com.simple.repository.connect;
+
+import com.simple.repository.config.SimpleConfig;
+import com.simple.repository.master.exception.SimpleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 事务模板
+ * <p>
+ * 1.开启事务执行操作,成功则提交,异常则回滚
+ * 2.因死锁(1213)或锁等待超时(1205)失败时,回滚后按退避时长重试整个事务,超过最大重试次数抛出异常
+ * 3.退避时长为基础时长按重试次数翻倍后,在其一半到全部之间随机取值,避免冲突的事务同时重试
+ * 4.当前线程已在事务中时直接在该事务中执行,由外层事务负责提交与重试
+ * 注意：重试会再次执行整个操作,操作中不要包含无法重复执行的外部调用;
+ * 分片表与分组表的写操作无法随事务回滚,在事务中执行时抛出SimpleException
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-25
+ */
+public class SimpleTransaction {
+
+    private final static Logger log = LoggerFactory.getLogger(SimpleTransaction.class);
+
+    /**
+     * 死锁
+     */
+    private static final int ER_LOCK_DEADLOCK = 1213;
+
+    /**
+     * 锁等待超时
+     */
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+    /**
+     * 退避时长翻倍次数上限
+     */
+    private static final int MAX_BACKOFF_SHIFT = 10;
+
+    private SimpleTransaction() {
+    }
+
+    /**
+     * 在事务中执行操作
+     *
+     * @param callback 执行的操作
+     * @param <R>      返回的类型
+     * @return 返回操作的结果
+     */
+    public static <R> R execute(TransactionCallback<R> callback) {
+        SimpleSession session = SimpleSession.openSession();
+        if (session.isTransaction()) {
+            return apply(session, callback);
+        }
+        SimpleConfig.DataSource config;
+        try {
+            config = SimpleConfig.initConfig().dataSource;
+        } catch (Exception e) {
+            throw new SimpleException(e);
+        }
+        return execute(session, config.getTransactionMaxRetries(), config.getTransactionRetryBackoff(), callback);
+    }
+
+    /**
+     * 在会话中开启事务执行操作,可重试的异常按退避时长重试
+     *
+     * @param session      未开启事务的会话
+     * @param maxRetries   最大重试次数
+     * @param retryBackoff 基础退避时长(单位：毫秒)
+     * @param callback     执行的操作
+     * @param <R>          返回的类型
+     * @return 返回操作的结果
+     */
+    static <R> R execute(SimpleSession session, int maxRetries, long retryBackoff, TransactionCallback<R> callback) {
+        SimplePoolMetrics metrics = session.getDataSource().getMetrics();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                session.openTransaction();
+                R result = apply(session, callback);
+                session.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                rollback(session);
+                if (!isRetryable(e)) {
+                    throw e instanceof RuntimeException ? (RuntimeException) e : new SimpleException("执行事务异常:" + e.getMessage(), e);
+                }
+                if (attempt >= maxRetries) {
+                    metrics.transactionRetryExhausted();
+                    throw new SimpleException(String.format("事务重试%s次后仍失败:%s", attempt, e.getMessage()), e);
+                }
+                metrics.transactionRetried();
+                long backoff = backoff(retryBackoff, attempt + 1);
+                log.warn("事务因死锁或锁等待超时失败,{}ms后第{}次重试:msg={}", backoff, attempt + 1, e.getMessage());
+                sleep(backoff, e);
+            }
+        }
+    }
+
+    /**
+     * 在事务中执行无返回值的操作
+     * <p>
+     * 与execute(TransactionCallback)区分命名,避免lambda重载歧义
+     * </p>
+     *
+     * @param callback 执行的操作
+     */
+    public static void run(TransactionRunnable callback) {
+        execute(session -> {
+            callback.run(session);
+            return null;
+        });
+    }
+
+    /**
+     * 是否可通过重试事务解决的异常
+     * <p>
+     * 沿异常链查找死锁(1213,SQLState 40001)或锁等待超时(1205)
+     * </p>
+     *
+     * @param e 异常
+     * @return 返回是否可重试
+     */
+    public static boolean isRetryable(Throwable e) {
+        for (Throwable cause = e; null != cause; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                SQLException sqlException = (SQLException) cause;
+                if (ER_LOCK_DEADLOCK == sqlException.getErrorCode() || ER_LOCK_WAIT_TIMEOUT == sqlException.getErrorCode()
+                        || "40001".equals(sqlException.getSQLState())) {
+                    return true;
+                }
+            }
+            if (cause == cause.getCause()) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 计算退避时长
+     *
+     * @param base  基础退避时长(单位：毫秒)
+     * @param retry 第几次重试,从1开始
+     * @return 返回退避时长(单位：毫秒)
+     */
+    static long backoff(long base, int retry) {
+        long max = base << Math.min(retry - 1, MAX_BACKOFF_SHIFT);
+        long half = max / 2;
+        return half + ThreadLocalRandom.current().nextLong(max - half + 1);
+    }
+
+    private static <R> R apply(SimpleSession session, TransactionCallback<R> callback) {
+        try {
+            return callback.apply(session);
+        } catch (SQLException e) {
+            throw new SimpleException("执行事务异常:" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 回滚事务,回滚失败只记录日志,保留原异常
+     */
+    private static void rollback(SimpleSession session) {
+        if (!session.isTransaction()) {
+            return;
+        }
+        try {
+            session.rollback();
+        } catch (SQLException e) {
+            log.error("事务回滚异常:" + e.getMessage());
+        }
+    }
+
+    private static void sleep(long millis, Exception cause) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SimpleException("等待事务重试被中断:" + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 事务中执行的操作
+     *
+     * @param <R> 返回的类型
+     */
+    public interface TransactionCallback<R> {
+
+        /**
+         * 执行操作
+         *
+         * @param session 开启了事务的会话
+         * @return 返回操作的结果
+         * @throws SQLException 执行语句异常
+         */
+        R apply(SimpleSession session) throws SQLException;
+    }
+
+    /**
+     * 事务中执行的无返回值操作
+     */
+    public interface TransactionRunnable {
+
+        /**
+         * 执行操作
+         *
+         * @param session 开启了事务的会话
+         * @throws SQLException 执行语句异常
+         */
+        void run(SimpleSession session) throws SQLException;
+    }
+}
@@ -13,6 +13,11 @@ import java.util.List;
  */
 public class ModelInfo {
 
+    /**
+     * 业务块标识
+     */
+    public String name;
+
     /**
      * 数据库名称
      */
@@ -33,4 +38,9 @@ public class ModelInfo {
         this.packageName = packageName;
         this.tables = tables;
     }
+
+    public ModelInfo(String name, String schema, String packageName, List<String> tables) {
+        this(schema, packageName, tables);
+        this.name = name;
+    }
 }
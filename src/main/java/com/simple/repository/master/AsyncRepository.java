@@ -0,0 +1,168 @@
+package com.simple.repository.master;
+
+import com.simple.repository.connect.SimpleSession;
+import com.simple.repository.master.search.BaseSearch;
+import com.simple.repository.master.search.Condition;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 异步存储操作对象
+ * <p>
+ * 1.包装BaseRepository,每个操作提交到线程池执行并返回CompletableFuture,调用线程可同时发起多个数据库操作
+ * 2.默认使用主库的异步线程池(simple.datasource.async-threads),线程数不超过连接池最大连接数
+ * 3.每个操作使用独立的会话,不参与调用线程的事务;需要事务时在操作内使用SimpleTransaction
+ * 4.沿用调用线程的连接池分区、查询超时、取消句柄与执行提示
+ * </p>
+ *
+ * @param <T> 操作对象类型
+ * @author laiqx
+ * date 2023-06-30
+ */
+public class AsyncRepository<T extends Entity<?>> {
+
+    private final BaseRepository<T> repository;
+
+    /**
+     * 执行操作的线程池,为null时使用主库的异步线程池
+     */
+    private final Executor executor;
+
+    public AsyncRepository(BaseRepository<T> repository) {
+        this(repository, null);
+    }
+
+    public AsyncRepository(BaseRepository<T> repository, Executor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Void> add(T entity) {
+        return run(() -> repository.add(entity));
+    }
+
+    public CompletableFuture<Void> add(List<T> entities) {
+        return run(() -> repository.add(entities));
+    }
+
+    public CompletableFuture<Integer> update(T entity) {
+        return supply(() -> repository.update(entity));
+    }
+
+    public CompletableFuture<Void> update(List<T> entities) {
+        return run(() -> repository.update(entities));
+    }
+
+    public CompletableFuture<Void> update(T entity, Condition condition) {
+        return run(() -> repository.update(entity, condition));
+    }
+
+    public CompletableFuture<Integer> updateAll(T entity) {
+        return supply(() -> repository.updateAll(entity));
+    }
+
+    public CompletableFuture<Void> updateAll(List<T> entities) {
+        return run(() -> repository.updateAll(entities));
+    }
+
+    public CompletableFuture<Void> updateAll(T entity, Condition condition) {
+        return run(() -> repository.updateAll(entity, condition));
+    }
+
+    public CompletableFuture<Void> delete(Number id) {
+        return run(() -> repository.delete(id));
+    }
+
+    public CompletableFuture<Void> delete(List<? extends Number> ids) {
+        return run(() -> repository.delete(ids));
+    }
+
+    public CompletableFuture<Void> delete(Condition condition) {
+        return run(() -> repository.delete(condition));
+    }
+
+    public CompletableFuture<T> get(Number id) {
+        return supply(() -> repository.get(id));
+    }
+
+    public CompletableFuture<T> get(Condition condition) {
+        return supply(() -> repository.get(condition));
+    }
+
+    public CompletableFuture<List<T>> list(BaseSearch search) {
+        return supply(() -> repository.list(search));
+    }
+
+    public <E extends Number> CompletableFuture<List<T>> list(List<E> ids) {
+        return supply(() -> repository.list(ids));
+    }
+
+    public CompletableFuture<List<T>> list(Condition condition) {
+        return supply(() -> repository.list(condition));
+    }
+
+    public CompletableFuture<Integer> count(Condition condition) {
+        return supply(() -> repository.count(condition));
+    }
+
+    public <E> CompletableFuture<List<E>> select(String sqlIndex, BaseSearch search, Class<E> resultClass) {
+        return supply(() -> repository.select(sqlIndex, search, resultClass));
+    }
+
+    public <E> CompletableFuture<List<E>> select(String sqlIndex, Map<String, Object> search, Class<E> resultClass) {
+        return supply(() -> repository.select(sqlIndex, search, resultClass));
+    }
+
+    public <E extends Entity<?>> CompletableFuture<Integer> execute(String sqlIndex, E params) {
+        return supply(() -> repository.execute(sqlIndex, params));
+    }
+
+    public CompletableFuture<Integer> execute(String sqlIndex, Map<String, Object> params) {
+        return supply(() -> repository.execute(sqlIndex, params));
+    }
+
+    public CompletableFuture<T> getCache(Number id) {
+        return supply(() -> repository.getCache(id));
+    }
+
+    public <E extends Number> CompletableFuture<Map<E, T>> getCache(List<E> ids) {
+        return supply(() -> repository.getCache(ids));
+    }
+
+    /**
+     * 被包装的存储操作对象,用于同步调用
+     *
+     * @return 返回存储操作对象
+     */
+    public BaseRepository<T> getRepository() {
+        return repository;
+    }
+
+    /**
+     * 异步执行有返回值的操作
+     *
+     * @param action 执行的操作
+     * @param <R>    返回的类型
+     * @return 返回操作结果的future
+     */
+    private <R> CompletableFuture<R> supply(Supplier<R> action) {
+        return null == executor ? SimpleSession.async(action) : SimpleSession.async(action, executor);
+    }
+
+    /**
+     * 异步执行无返回值的操作
+     *
+     * @param action 执行的操作
+     * @return 返回操作完成的future
+     */
+    private CompletableFuture<Void> run(Runnable action) {
+        return supply(() -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -2,7 +2,11 @@ package com.simple.repository.master;
 
 
 import com.simple.repository.config.SimpleConfig;
+import com.simple.repository.connect.SimpleDataSource;
+import com.simple.repository.connect.SimplePublisher;
+import com.simple.repository.connect.SimpleQueryHint;
 import com.simple.repository.connect.SimpleSession;
+import com.simple.repository.connect.SimpleShardRouter;
 import com.simple.repository.master.cache.SimpleCacheManager;
 import com.simple.repository.master.cache.SimpleInnerCacheManager;
 import com.simple.repository.master.cache.SimpleRedisCacheManager;
@@ -12,17 +16,33 @@ import com.simple.repository.master.search.Condition;
 import com.simple.repository.util.*;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 存储操作对象
+ * <p>
+ * 配置了分片的表(simple.datasource.shard-tables):
+ * 1.新增、按id的查询、更新、删除按分片键路由到单个分片,无法确定分片键时分发到所有分片
+ * 2.条件查询、统计、条件更新与删除并行分发到所有分片后合并结果,分页查询按排序规则归并后截取
+ * 3.分片上的写操作以自动提交方式执行,无法随事务回滚,在事务中写分片表抛出SimpleException;游标sql(select、execute)仍由主库执行
+ * 4.分发到多个分片时任一分片失败,取消其他分片尚未完成的执行后抛出异常
+ * 配置了分组的表(simple.datasource.groups):
+ * 所有操作(包括游标sql)由分组的数据源执行,写操作以自动提交方式执行,无法随事务回滚,在事务中写分组表抛出SimpleException
+ * 配置了连接池分区(simple.datasource.pool.partitions):
+ * 游标sql通过@partition指定分区,自定义的存储方法通过partition()指定分区,事务外的语句从该分区借用连接
+ * 查询执行提示(fetchSize、maxRows、结果集类型、只读):
+ * list(BaseSearch)与select(sqlIndex, BaseSearch, ...)使用BaseSearch.getHint(),自定义的存储方法通过hint()指定
+ * </p>
  *
  * @param <T> 操作对象类型
  * @author laiqx
  * date 2023-02-08
  */
-public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
+public class BaseRepository<T extends Entity<?>> implements IBaseRepository<T> {
 
     /**
      * 当前存储对象使用的entity类型
@@ -30,14 +50,14 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
     private Class<T> entityClass;
 
     /**
-     * 缓存管理
+     * 当前entity类型的元数据(表名、是否缓存、列)
      */
-    private SimpleCacheManager<T> cacheManager;
+    private EntityMetadata metadata;
 
     /**
-     * 开启数据缓存的表
+     * 缓存管理
      */
-    private static List<String> cacheTables = new ArrayList<>();
+    private SimpleCacheManager<T> cacheManager;
 
     /**
      * 批量处理最大数
@@ -57,7 +77,6 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
      */
     public BaseRepository() {
         try {
-            cacheTables = SimpleConfig.initConfig().cacheTable;
             cacheManager = null != SimpleConfig.initConfig().redis && SimpleConfig.initConfig().redis.getEnable() ? new SimpleRedisCacheManager<>() : new SimpleInnerCacheManager<>();
         } catch (Exception e) {
             cacheManager = new SimpleInnerCacheManager<>();
@@ -75,6 +94,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
     public void setEntityClass(Class<T> entityClass) {
         // 字段类型
         this.entityClass = entityClass;
+        this.metadata = EntityMetadata.of(entityClass);
     }
 
     /**
@@ -94,11 +114,18 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         String values = String.join(",", analysisMap.values());
         sql = String.format(sql, getTableName(), fields, values);
         // 执行保存
-        List<Number> ids = SimpleSession.openSession().add(sql, entity.getIdentityClass());
+        SimpleSession session = SimpleSession.openSession();
+        SimpleShardRouter router = shardRouter(session);
+        SimpleDataSource target = null == router ? groupDataSource(session) : router.route(requiredShardKey(router, entity));
+        Class<?> idType = null == metadata.getIdType() ? entity.getIdentityClass() : metadata.getIdType();
+        List<Number> ids = null == target ? session.add(sql, idType) : session.add(sql, idType, target);
         if (ids.isEmpty()) {
             return;
         }
-        entity.id = ids.get(0);
+        // 自增id的类型由getIdentityClass或字段类型决定,与Entity的类型参数一致
+        @SuppressWarnings("unchecked")
+        Entity<Number> added = (Entity<Number>) entity;
+        added.id = ids.get(0);
     }
 
     /**
@@ -111,7 +138,26 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         if (null == entities || entities.isEmpty()) {
             throw new SimpleException(SimpleException.Type.ENTITY_IS_NULL);
         }
-        add(getTableName(), entities);
+        SimpleSession session = SimpleSession.openSession();
+        SimpleShardRouter router = shardRouter(session);
+        if (null == router) {
+            add(session, getTableName(), entities, null, false);
+            return;
+        }
+        // 按id分片时新增前已指定id,插入语句保留id
+        boolean withId = Entity.ID.equals(router.getColumn(getTableName()));
+        Map<SimpleDataSource, List<T>> groups = new LinkedHashMap<>();
+        for (T entity : entities) {
+            groups.computeIfAbsent(router.route(requiredShardKey(router, entity)), shard -> new ArrayList<>()).add(entity);
+        }
+        // 分发线程使用调用线程的会话,不在分发线程打开会话
+        router.scatter(shard -> {
+            List<T> group = groups.get(shard);
+            if (null != group) {
+                add(session, getTableName(), group, shard, withId);
+            }
+            return null;
+        });
     }
 
     @Override
@@ -177,7 +223,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         String table = getTableName();
         String sql = "delete from %s where id = %s;";
         sql = String.format(sql, table, id);
-        int num = SimpleSession.openSession().update(sql);
+        int num = executeUpdate(sql, idShardKey(id));
         if (num <= 0) {
             return;
         }
@@ -210,7 +256,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         /* 删除数据 */
         String sql = "delete from %s where %s;";
         sql = String.format(sql, getTableName(), getWhereSql(condition));
-        SimpleSession.openSession().update(sql);
+        executeUpdate(sql, null);
         delAllCache();
     }
 
@@ -224,8 +270,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         String table = getTableName();
         // 分析对象生成组合sql的字段和字段值
         sql = String.format(sql, table, id);
-        List<Map<String, Object>> list = SimpleSession.openSession().query(sql);
-        List<T> results = SimpleCollectionUtil.listMapToObject(list, entityClass);
+        List<T> results = executeQuery(sql, idShardKey(id), entityClass);
         return results.isEmpty() ? null : results.get(0);
     }
 
@@ -235,8 +280,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         String where = getWhereSql(condition);
         String sql = "select * from %s where %s;";
         sql = String.format(sql, table, where);
-        List<Map<String, Object>> list = SimpleSession.openSession().query(sql);
-        List<T> results = SimpleCollectionUtil.listMapToObject(list, entityClass);
+        List<T> results = executeQuery(sql, null, entityClass);
         return results.isEmpty() ? null : results.get(0);
     }
 
@@ -254,6 +298,11 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         String table = getTableName();
         String where = getWhereSql(search.getCondition());
         String sort = search.getSort();
+        SimpleSession session = SimpleSession.openSession();
+        SimpleShardRouter router = shardRouter(session);
+        if (null != router) {
+            return SimpleSession.hint(search.getHint(), () -> shardList(session, router, search, table, where, sort));
+        }
         String sql = "select * from %s where %s %s limit %s,%s;";
         sql = String.format(sql, table, where, sort, search.getStartIndex(), search.getEndIndex());
         // 不分页查询
@@ -261,8 +310,8 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
             sql = "select * from %s where %s %s;";
             sql = String.format(sql, table, where, sort);
         }
-        List<Map<String, Object>> list = SimpleSession.openSession().query(sql);
-        return SimpleCollectionUtil.listMapToObject(list, entityClass);
+        String query = sql;
+        return SimpleSession.hint(search.getHint(), () -> executeQuery(query, null, entityClass));
     }
 
     /**
@@ -288,8 +337,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         String where = getWhereSql(condition);
         String sql = "select * from %s where %s;";
         sql = String.format(sql, table, where);
-        List<Map<String, Object>> list = SimpleSession.openSession().query(sql);
-        return SimpleCollectionUtil.listMapToObject(list, entityClass);
+        return executeQuery(sql, null, entityClass);
     }
 
     /**
@@ -305,9 +353,64 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         }
         String table = getTableName();
         String where = getWhereSql(condition);
-        String sql = "select count(1) from %s where %s;";
-        sql = String.format(sql, table, where);
-        return SimpleSession.openSession().count(sql);
+        String sql = String.format("select count(1) from %s where %s;", table, where);
+        SimpleSession session = SimpleSession.openSession();
+        SimpleShardRouter router = shardRouter(session);
+        if (null == router) {
+            SimpleDataSource group = groupDataSource(session);
+            return null == group ? session.count(sql) : session.count(sql, group);
+        }
+        int count = 0;
+        for (Integer shardCount : router.scatter(shard -> session.count(sql, shard))) {
+            count += shardCount;
+        }
+        return count;
+    }
+
+    /**
+     * 流式查询对象
+     * <p>
+     * 分片表按分片依次读取,consumer始终在调用线程执行;已分组的表由分组数据源执行
+     * </p>
+     *
+     * @param condition 条件对象
+     * @param consumer  每个对象的处理
+     * @return 返回读取的数量
+     */
+    @Override
+    public int stream(Condition condition, Consumer<T> consumer) {
+        if (null == condition || null == consumer) {
+            throw new SimpleException(SimpleException.Type.CONDITION_IS_NULL);
+        }
+        String sql = String.format("select * from %s where %s;", getTableName(), getWhereSql(condition));
+        SimpleSession session = SimpleSession.openSession();
+        SimpleShardRouter router = shardRouter(session);
+        if (null == router) {
+            SimpleDataSource group = groupDataSource(session);
+            return null == group ? session.stream(sql, entityClass, consumer) : session.stream(sql, group, entityClass, consumer);
+        }
+        int count = 0;
+        for (SimpleDataSource shard : router.getShards()) {
+            count += session.stream(sql, shard, entityClass, consumer);
+        }
+        return count;
+    }
+
+    /**
+     * 以发布者方式查询对象
+     * <p>
+     * 订阅者首次请求时由发布线程执行流式查询,说明同stream(condition, consumer)
+     * </p>
+     *
+     * @param condition 条件对象
+     * @return 返回查询结果的发布者
+     */
+    @Override
+    public Flow.Publisher<T> publish(Condition condition) {
+        if (null == condition) {
+            throw new SimpleException(SimpleException.Type.CONDITION_IS_NULL);
+        }
+        return new SimplePublisher<>(consumer -> stream(condition, consumer));
     }
 
     /**
@@ -325,8 +428,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
             throw new SimpleException(String.format("查询参数不能为空!sqlIndex=%s;search=%s;resultClass=%s", sqlIndex, SimpleJson.toJsonString(search), resultClass));
         }
         String sql = createIndexSql(sqlIndex, search);
-        List<Map<String, Object>> list = SimpleSession.openSession().query(sql);
-        return SimpleCollectionUtil.listMapToObject(list, resultClass);
+        return indexPartition(sqlIndex, () -> SimpleSession.hint(search.getHint(), () -> indexQuery(sql, resultClass)));
     }
 
     /**
@@ -351,8 +453,54 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         if (SimpleStringUtils.isEmpty(sql)) {
             throw new SimpleException(SimpleException.Type.SQL_IS_NULL);
         }
-        List<Map<String, Object>> list = SimpleSession.openSession().query(sql);
-        return SimpleCollectionUtil.listMapToObject(list, resultClass);
+        return indexPartition(sqlIndex, () -> indexQuery(sql, resultClass));
+    }
+
+    /**
+     * 游标方式流式查询数据
+     *
+     * @param sqlIndex    sql游标
+     * @param map         查询对象
+     * @param resultClass 返回的类型
+     * @param consumer    每个对象的处理
+     * @param <E>         返回结果对象类型
+     * @return 返回读取的数量
+     */
+    @Override
+    public <E> int stream(String sqlIndex, Map<String, Object> map, Class<E> resultClass, Consumer<E> consumer) {
+        if (SimpleStringUtils.isEmpty(sqlIndex) || null == map || null == resultClass || null == consumer) {
+            throw new SimpleException(String.format("查询参数不能为空!sqlIndex=%s;map=%s;resultClass=%s", sqlIndex, SimpleJson.toJsonString(map), resultClass));
+        }
+        Map<String, Object> newMap = new HashMap<>();
+        for (String key : map.keySet()) {
+            newMap.put(SimpleStringUtils.humpToUnderline(key), map.get(key));
+        }
+        String sql = createIndexSql(sqlIndex, newMap);
+        if (SimpleStringUtils.isEmpty(sql)) {
+            throw new SimpleException(SimpleException.Type.SQL_IS_NULL);
+        }
+        return indexPartition(sqlIndex, () -> {
+            SimpleSession session = SimpleSession.openSession();
+            SimpleDataSource group = groupDataSource(session);
+            return null == group ? session.stream(sql, resultClass, consumer) : session.stream(sql, group, resultClass, consumer);
+        });
+    }
+
+    /**
+     * 游标方式以发布者查询数据
+     *
+     * @param sqlIndex    sql游标
+     * @param map         查询对象
+     * @param resultClass 返回的类型
+     * @param <E>         返回结果对象类型
+     * @return 返回查询结果的发布者
+     */
+    @Override
+    public <E> Flow.Publisher<E> publish(String sqlIndex, Map<String, Object> map, Class<E> resultClass) {
+        if (SimpleStringUtils.isEmpty(sqlIndex) || null == map || null == resultClass) {
+            throw new SimpleException(String.format("查询参数不能为空!sqlIndex=%s;map=%s;resultClass=%s", sqlIndex, SimpleJson.toJsonString(map), resultClass));
+        }
+        return new SimplePublisher<>(consumer -> stream(sqlIndex, map, resultClass, consumer));
     }
 
     /**
@@ -371,7 +519,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
             throw new SimpleException("sqlIndex不能为空");
         }
         String sql = createIndexSql(sqlIndex, params);
-        int i = SimpleSession.openSession().update(sql);
+        int i = indexPartition(sqlIndex, () -> indexUpdate(sql));
         if (i > 0) {
             delAllCache();
         }
@@ -394,7 +542,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         if (SimpleStringUtils.isEmpty(sql)) {
             throw new SimpleException(SimpleException.Type.SQL_IS_NULL);
         }
-        int i = SimpleSession.openSession().update(sql);
+        int i = indexPartition(sqlIndex, () -> indexUpdate(sql));
         if (i > 0) {
             delAllCache();
         }
@@ -406,6 +554,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
      * 查询缓存
      * <p>
      * 如果缓存中没有则查询数据库后再加入缓存中
+     * 写入缓存的数据由主库查询,避免更新后删除缓存时从延迟的只读副本读到旧数据并长期缓存
      * </p>
      *
      * @param id 对象id
@@ -421,7 +570,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         }
         T entity = cacheManager.get(entityClass, id);
         if (null == entity) {
-            entity = get(id);
+            entity = SimpleSession.readPrimary(() -> get(id));
             cacheManager.save(entity);
         }
         return entity;
@@ -429,6 +578,9 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
 
     /**
      * 批量查询缓存数据
+     * <p>
+     * 未缓存的数据由主库查询后加入缓存
+     * </p>
      *
      * @param ids 对象id集合
      * @param <E> 返回的对象类型
@@ -461,7 +613,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
             return reusltMap;
         }
         /* 将对象保存到redis中 */
-        List<T> entities = list(nowCacheIds);
+        List<T> entities = SimpleSession.readPrimary(() -> list(nowCacheIds));
         entities.forEach(entity -> {
             cacheManager.save(entity);
             reusltMap.put((E) entity.id, entity);
@@ -488,20 +640,23 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
     /**
      * 批量新增表数据
      *
+     * @param session   数据库会话
      * @param tableName 指定表名
      * @param entities  数据集
+     * @param shard     执行的分片,为null时使用当前会话
+     * @param withId    插入语句是否包含id
      */
-    private void add(String tableName, List<T> entities) {
+    private void add(SimpleSession session, String tableName, List<T> entities, SimpleDataSource shard, boolean withId) {
         /* 如果大于最大批处理数，择进行分隔执行 */
         if (entities.size() > MAX_BATCH_NUMBER) {
             List<T> newEntities = entities.subList(MAX_BATCH_NUMBER, entities.size());
             entities = entities.subList(0, MAX_BATCH_NUMBER);
-            add(tableName, entities);
-            add(tableName, newEntities);
+            add(session, tableName, entities, shard, withId);
+            add(session, tableName, newEntities, shard, withId);
             return;
         }
         /* 创建批量插入语句 */
-        Map<String, String> analysisMap = analysisListPojo(entities, Collections.singletonList("id"));
+        Map<String, String> analysisMap = analysisListPojo(entities, withId ? Collections.emptyList() : Collections.singletonList("id"));
         String fields = analysisMap.get("fields");
         String values = analysisMap.get("values");
         if (SimpleStringUtils.isEmpty(values)) {
@@ -511,7 +666,12 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         String sql = "insert into %s %s values %s;";
         sql = String.format(sql, tableName, fields, values);
         // 执行保存
-        SimpleSession.openSession().add(sql, Long.class);
+        SimpleDataSource target = null == shard ? groupDataSource(session) : shard;
+        if (null == target) {
+            session.add(sql, Long.class);
+        } else {
+            session.add(sql, Long.class, target);
+        }
     }
 
 
@@ -528,7 +688,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         }
         /* sql语句构建 */
         String sql = createUpdateSql(entity, updateNull);
-        int num = SimpleSession.openSession().update(sql);
+        int num = executeUpdate(sql, entityShardKey(entity));
         delCache(entity.id);
         return num;
     }
@@ -558,7 +718,7 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         String where = getWhereSql(condition);
         sql = String.format(sql, table, updateSql, where);
         // 执行保存
-        SimpleSession.openSession().update(sql);
+        executeUpdate(sql, null);
         delAllCache();
     }
 
@@ -568,6 +728,8 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
      * <p>
      * 1.更新数据超过50行则使用临时表更新
      * 2.如果小于50行则使用update语句更新
+     * 3.分片表按分片键分组后在各分片使用update语句更新
+     * 4.分组表在分组数据源使用update语句更新(临时表需要同一连接)
      * </p>
      *
      * @param entities   待更新数据集
@@ -578,11 +740,18 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
             throw new SimpleException(SimpleException.Type.ENTITY_IS_NULL);
         }
         entities = distinct(entities);
-        if (entities.size() >= 50) {
+        SimpleSession session = SimpleSession.openSession();
+        SimpleShardRouter router = shardRouter(session);
+        SimpleDataSource group = groupDataSource(session);
+        if (null != router) {
+            shardUpdate(session, router, entities, updateNull);
+        } else if (null != group) {
+            session.update(createBatchUpdateSql(entities, updateNull), group);
+        } else if (entities.size() >= 50) {
             tempTableUpdate(entities, updateNull);
         } else {
             List<String> batchSql = createBatchUpdateSql(entities, updateNull);
-            SimpleSession.openSession().update(batchSql);
+            session.update(batchSql);
         }
         delAllCache();
     }
@@ -705,19 +874,13 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
      */
     private Map<String, Object> analysisPojo(Object entity, List<String> filterFields, boolean nullAnalysis) {
         Map<String, Object> map = new HashMap<>();
-        Map<String, Field> fieldMap = SimpleBeanUtils.getFields(entity);
-        for (String fieldName : fieldMap.keySet()) {
-            Field field = fieldMap.get(fieldName);
-            String name = SimpleStringUtils.humpToUnderline(fieldName);
-            try {
-                Object value = field.get(entity);
-                if (null != filterFields && filterFields.contains(name) || !nullAnalysis && null == value) {
-                    continue;
-                }
-                map.put(name, value);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
+        for (EntityMetadata.Column column : EntityMetadata.of(entity.getClass()).getColumns()) {
+            String name = column.getColumn();
+            Object value = column.get(entity);
+            if (null != filterFields && filterFields.contains(name) || !nullAnalysis && null == value) {
+                continue;
             }
+            map.put(name, value);
         }
         return map;
     }
@@ -732,25 +895,22 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
      * @return 返回解析后属性名与属性值，map由fields与value组成
      */
     private Map<String, String> analysisListPojo(List<T> entities, List<String> filterParams) {
-        Map<String, Field> fieldMap = SimpleBeanUtils.getFields(entities.get(0));
+        // 过滤后的列只解析一次,逐个对象取值
+        List<String> fieldList = new ArrayList<>();
+        List<SimpleFieldAccessor> accessors = new ArrayList<>();
+        for (EntityMetadata.Column column : EntityMetadata.of(entities.get(0).getClass()).getColumns()) {
+            if (filterParams.contains(column.getColumn())) {
+                continue;
+            }
+            fieldList.add(column.getColumn());
+            accessors.add(column.getAccessor());
+        }
         // 获取字段值
         List<String> values = new ArrayList<>();
-        List<String> fieldList = new ArrayList<>();
-        for (int i = 0; i < entities.size(); i++) {
-            T entity = entities.get(i);
-            List<String> value = new ArrayList<>();
-            for (String fieldName : fieldMap.keySet()) {
-                String name = SimpleStringUtils.humpToUnderline(fieldName);
-                if (filterParams.contains(name)) {
-                    continue;
-                } else if (i == 0) {
-                    fieldList.add(name);
-                }
-                try {
-                    value.add(SimpleSqlUtil.formatValue(fieldMap.get(fieldName).get(entity)));
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(e);
-                }
+        for (T entity : entities) {
+            List<String> value = new ArrayList<>(accessors.size());
+            for (SimpleFieldAccessor accessor : accessors) {
+                value.add(SimpleSqlUtil.formatValue(accessor.get(entity)));
             }
             values.add("(" + String.join(",", value) + ")");
         }
@@ -778,18 +938,12 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
     private List<String> analysisFields(T entity, List<String> filterParams, boolean nullAnalysis) {
         /* 对象转为下划线后将字段名与值装载进analysisMap */
         List<String> fields = new ArrayList<>();
-        Map<String, Field> fieldMap = SimpleBeanUtils.getFields(entity);
-        for (String fieldName : fieldMap.keySet()) {
-            try {
-                Object value = fieldMap.get(fieldName).get(entity);
-                fieldName = SimpleStringUtils.humpToUnderline(fieldName);
-                if (filterParams.contains(fieldName) || (!nullAnalysis && value == null)) {
-                    continue;
-                }
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
+        for (EntityMetadata.Column column : EntityMetadata.of(entity.getClass()).getColumns()) {
+            Object value = column.get(entity);
+            if (filterParams.contains(column.getColumn()) || (!nullAnalysis && value == null)) {
+                continue;
             }
-            fields.add(fieldName);
+            fields.add(column.getColumn());
         }
         return fields;
     }
@@ -801,16 +955,14 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
      * @return 返回表名
      */
     private String getTableName() {
-        String table = entityClass.getSimpleName().replace("Entity", "");
-        table = SimpleStringUtils.humpToUnderline(table);
-        return table;
+        return metadata.getTableName();
     }
 
     /**
      * 判断是否缓存
      */
     private boolean isCacheEntity() {
-        return cacheTables.contains(getTableName());
+        return metadata.isCache();
     }
 
 
@@ -884,20 +1036,23 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
      * @param updateNull 是否空值更新
      */
     private void tempTableUpdate(List<T> entities, boolean updateNull) {
-        /* 建立临时表 */
-        String targetTable = getTableName();
-        String tempTable = createTempTable(targetTable);
-        // 填充临时表数据
-        add(tempTable, entities);
-        /* 更新数据:从临时表同步到实体表 */
-        List<String> fields = analysisFields(entities.get(0), Collections.singletonList("id"), updateNull);
-        String sql = "update %s left join %s on %s.id = %s.id set  %s where %s.id is not null;";
-        String setContent = createSetContent(targetTable, tempTable, fields, updateNull);
-        sql = String.format(sql, targetTable, tempTable, tempTable, targetTable, setContent, tempTable);
-        SimpleSession.openSession().update(sql);
-        /* 删除临时表 */
-        sql = "drop table " + tempTable;
-        SimpleSession.openSession().update(sql);
+        // 临时表只对创建它的连接可见,整个过程占用同一个连接
+        SimpleSession.openSession().pinned(() -> {
+            /* 建立临时表 */
+            String targetTable = getTableName();
+            String tempTable = createTempTable(targetTable);
+            // 填充临时表数据
+            add(SimpleSession.openSession(), tempTable, entities, null, false);
+            /* 更新数据:从临时表同步到实体表 */
+            List<String> fields = analysisFields(entities.get(0), Collections.singletonList("id"), updateNull);
+            String sql = "update %s left join %s on %s.id = %s.id set  %s where %s.id is not null;";
+            String setContent = createSetContent(targetTable, tempTable, fields, updateNull);
+            sql = String.format(sql, targetTable, tempTable, tempTable, targetTable, setContent, tempTable);
+            SimpleSession.openSession().update(sql);
+            /* 删除临时表 */
+            sql = "drop table " + tempTable;
+            SimpleSession.openSession().update(sql);
+        });
     }
 
     /**
@@ -945,4 +1100,316 @@ public class BaseRepository<T extends Entity> implements IBaseRepository<T> {
         }
         return " 1 = 1 ";
     }
+
+    /**
+     * 当前表的分片路由
+     *
+     * @param session 数据库会话
+     * @return 返回分片路由,当前表未分片时返回null
+     */
+    private SimpleShardRouter shardRouter(SimpleSession session) {
+        SimpleShardRouter router = session.getShardRouter();
+        return null != router && null != router.getColumn(getTableName()) ? router : null;
+    }
+
+    /**
+     * 当前表所属分组的数据源
+     *
+     * @param session 数据库会话
+     * @return 返回分组数据源,当前表未分组时返回null
+     */
+    private SimpleDataSource groupDataSource(SimpleSession session) {
+        return session.getTableDataSource(getTableName());
+    }
+
+    /**
+     * 在指定的连接池分区执行操作
+     * <p>
+     * 用于自定义的存储方法,如报表查询使用独立分区,避免占满快速查询使用的连接池
+     * 事务中的语句仍使用事务的连接
+     * </p>
+     *
+     * @param partition 分区名称(simple.datasource.pool.partitions)
+     * @param action    执行的操作
+     * @param <R>       返回的类型
+     * @return 返回操作的结果
+     */
+    protected <R> R partition(String partition, Supplier<R> action) {
+        return SimpleSession.partition(partition, action);
+    }
+
+    /**
+     * 以指定的执行提示执行操作
+     * <p>
+     * 用于自定义的存储方法,如大数据量导出时指定fetchSize、单向只读游标
+     * </p>
+     *
+     * @param hint   执行提示
+     * @param action 执行的操作
+     * @param <R>    返回的类型
+     * @return 返回操作的结果
+     */
+    protected <R> R hint(SimpleQueryHint hint, Supplier<R> action) {
+        return SimpleSession.hint(hint, action);
+    }
+
+    /**
+     * 在游标sql指定的连接池分区(@partition)执行操作,未指定时沿用当前线程的分区
+     *
+     * @param sqlIndex 游标
+     * @param action   执行的操作
+     * @param <R>      返回的类型
+     * @return 返回操作的结果
+     */
+    private <R> R indexPartition(String sqlIndex, Supplier<R> action) {
+        String partition = SqlIndexCache.getPartition(sqlIndex);
+        return null == partition ? action.get() : SimpleSession.partition(partition, action);
+    }
+
+    /**
+     * 执行游标查询
+     * <p>
+     * 当前表已分组时由分组数据源执行,否则由主库执行
+     * </p>
+     *
+     * @param sql         查询语句
+     * @param resultClass 返回的类型
+     * @param <E>         返回结果对象类型
+     * @return 返回查询的数据
+     */
+    private <E> List<E> indexQuery(String sql, Class<E> resultClass) {
+        SimpleSession session = SimpleSession.openSession();
+        SimpleDataSource group = groupDataSource(session);
+        return null == group ? session.query(sql, resultClass) : session.query(sql, group, resultClass);
+    }
+
+    /**
+     * 执行游标更新
+     * <p>
+     * 当前表已分组时由分组数据源执行,否则由主库执行
+     * </p>
+     *
+     * @param sql 更新语句
+     * @return 返回变更数量
+     */
+    private int indexUpdate(String sql) {
+        SimpleSession session = SimpleSession.openSession();
+        SimpleDataSource group = groupDataSource(session);
+        return null == group ? session.update(sql) : session.update(sql, group);
+    }
+
+    /**
+     * 按id操作时的分片键
+     *
+     * @param id 主键
+     * @return 分片键为id时返回id,否则返回null(分发到所有分片)
+     */
+    private Object idShardKey(Number id) {
+        SimpleShardRouter router = shardRouter(SimpleSession.openSession());
+        return null != router && Entity.ID.equals(router.getColumn(getTableName())) ? id : null;
+    }
+
+    /**
+     * 对象的分片键
+     *
+     * @param entity 对象
+     * @return 返回分片键的值,未分片或对象未设置时返回null
+     */
+    private Object entityShardKey(T entity) {
+        SimpleShardRouter router = shardRouter(SimpleSession.openSession());
+        return null == router ? null : shardKey(router, entity);
+    }
+
+    /**
+     * 新增时的分片键
+     * <p>
+     * 按id分片的表无法使用自增id(新增前无法路由,且各分片的自增id会重复),需由调用方在新增前指定id
+     * </p>
+     *
+     * @param router 分片路由
+     * @param entity 对象
+     * @return 返回分片键的值
+     */
+    private Object requiredShardKey(SimpleShardRouter router, T entity) {
+        Object key = shardKey(router, entity);
+        if (null != key) {
+            return key;
+        }
+        String column = router.getColumn(getTableName());
+        if (Entity.ID.equals(column)) {
+            throw new SimpleException("按id分片的表新增前需指定id(不支持自增id):" + getTableName());
+        }
+        throw new SimpleException("分片表新增时分片键不能为空:" + getTableName() + "." + column);
+    }
+
+    private Object shardKey(SimpleShardRouter router, T entity) {
+        String column = router.getColumn(getTableName());
+        return Entity.ID.equals(column) ? entity.id : analysisPojo(entity, null, true).get(column);
+    }
+
+    /**
+     * 执行查询
+     * <p>
+     * 分片表有分片键时只查询对应分片,否则查询所有分片后合并
+     * </p>
+     *
+     * @param sql         查询语句
+     * @param key         分片键的值,为null时查询所有分片
+     * @param resultClass 返回的类型
+     * @param <E>         返回结果对象类型
+     * @return 返回查询的数据
+     */
+    private <E> List<E> executeQuery(String sql, Object key, Class<E> resultClass) {
+        SimpleSession session = SimpleSession.openSession();
+        SimpleShardRouter router = shardRouter(session);
+        if (null == router) {
+            SimpleDataSource group = groupDataSource(session);
+            return null == group ? session.query(sql, resultClass) : session.query(sql, group, resultClass);
+        } else if (null != key) {
+            return session.query(sql, router.route(key), resultClass);
+        }
+        List<E> list = new ArrayList<>();
+        router.scatter(shard -> session.query(sql, shard, resultClass)).forEach(list::addAll);
+        return list;
+    }
+
+    /**
+     * 执行更新
+     * <p>
+     * 分片表有分片键时只更新对应分片,否则更新所有分片
+     * </p>
+     *
+     * @param sql 更新语句
+     * @param key 分片键的值,为null时更新所有分片
+     * @return 返回变更数量
+     */
+    private int executeUpdate(String sql, Object key) {
+        SimpleSession session = SimpleSession.openSession();
+        SimpleShardRouter router = shardRouter(session);
+        if (null == router) {
+            SimpleDataSource group = groupDataSource(session);
+            return null == group ? session.update(sql) : session.update(sql, group);
+        } else if (null != key) {
+            return session.update(sql, router.route(key));
+        }
+        int num = 0;
+        for (Integer shardNum : router.scatter(shard -> session.update(sql, shard))) {
+            num += shardNum;
+        }
+        return num;
+    }
+
+    /**
+     * 分片表分页查询
+     * <p>
+     * 每个分片查询前 起始位置+加载数 条数据,按排序规则归并后截取当前页
+     * </p>
+     *
+     * @param session 数据库会话
+     * @param router  分片路由
+     * @param search  查询对象
+     * @param table   表名
+     * @param where   条件语句
+     * @param sort    排序语句
+     * @return 返回查询结果
+     */
+    private List<T> shardList(SimpleSession session, SimpleShardRouter router, BaseSearch search, String table, String where, String sort) {
+        int start = search.getStartIndex();
+        int size = search.getEndIndex();
+        String sql = search.getPage() ? String.format("select * from %s where %s %s limit 0,%s;", table, where, sort, start + size)
+                : String.format("select * from %s where %s %s;", table, where, sort);
+        List<Map<String, Object>> list = mergeShards(router.scatter(shard -> session.query(sql, shard)), search);
+        return SimpleCollectionUtil.listMapToObject(list, entityClass);
+    }
+
+    /**
+     * 合并各分片的查询结果
+     * <p>
+     * 按排序规则归并,分页时截取当前页
+     * </p>
+     *
+     * @param shardResults 各分片的查询结果
+     * @param search       查询对象
+     * @return 返回合并后的数据
+     */
+    static List<Map<String, Object>> mergeShards(List<List<Map<String, Object>>> shardResults, BaseSearch search) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        shardResults.forEach(list::addAll);
+        if (!search.getSorts().isEmpty()) {
+            list.sort(sortComparator(search.getSorts()));
+        }
+        if (search.getPage()) {
+            int start = search.getStartIndex();
+            int size = search.getEndIndex();
+            list = list.subList(Math.min(start, list.size()), Math.min(start + size, list.size()));
+        }
+        return list;
+    }
+
+    /**
+     * 分片表批量更新
+     * <p>
+     * 按分片键分组后在各分片并行执行批量更新语句,没有分片键的数据更新所有分片
+     * </p>
+     *
+     * @param session    数据库会话
+     * @param router     分片路由
+     * @param entities   待更新数据集
+     * @param updateNull 是否更新空值
+     */
+    private void shardUpdate(SimpleSession session, SimpleShardRouter router, List<T> entities, boolean updateNull) {
+        Map<SimpleDataSource, List<String>> groups = new HashMap<>();
+        for (T entity : entities) {
+            String sql = createUpdateSql(entity, updateNull);
+            Object key = shardKey(router, entity);
+            List<SimpleDataSource> shards = null == key ? router.getShards() : Collections.singletonList(router.route(key));
+            for (SimpleDataSource shard : shards) {
+                groups.computeIfAbsent(shard, k -> new ArrayList<>()).add(sql);
+            }
+        }
+        router.scatter(shard -> {
+            List<String> batchSql = groups.get(shard);
+            if (null != batchSql) {
+                session.update(batchSql, shard);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 查询结果的排序比较器
+     * <p>
+     * 与MySQL保持一致:null最小,字符串忽略大小写比较
+     * </p>
+     *
+     * @param sorts 排序规则
+     * @return 返回比较器
+     */
+    static Comparator<Map<String, Object>> sortComparator(List<BaseSearch.Sort> sorts) {
+        Comparator<Map<String, Object>> comparator = null;
+        for (BaseSearch.Sort sort : sorts) {
+            String column = sort.getFieldName().trim().toLowerCase().replace("`", "");
+            String key = column.substring(column.lastIndexOf('.') + 1);
+            Comparator<Map<String, Object>> next = (a, b) -> compareValue(a.get(key), b.get(key));
+            if (BaseSearch.SortType.desc == sort.getType()) {
+                next = next.reversed();
+            }
+            comparator = null == comparator ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValue(Object a, Object b) {
+        if (null == a || null == b) {
+            return null == a ? (null == b ? 0 : -1) : 1;
+        } else if (a instanceof String && b instanceof String) {
+            return ((String) a).compareToIgnoreCase((String) b);
+        } else if (a instanceof Number && b instanceof Number) {
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        } else if (a instanceof Comparable && a.getClass().equals(b.getClass())) {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
 }
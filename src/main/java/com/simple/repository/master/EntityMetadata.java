@@ -0,0 +1,178 @@
+package com.simple.repository.master;
+
+import com.simple.repository.config.SimpleConfig;
+import com.simple.repository.master.exception.SimpleException;
+import com.simple.repository.util.SimpleBeanUtils;
+import com.simple.repository.util.SimpleFieldAccessor;
+import com.simple.repository.util.SimpleStringUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 对象元数据
+ * <p>
+ * 1.每个类型只解析一次(repository初始化时或首次使用时),之后不可变,供新增、更新、条件解析等所有存储操作读取
+ * 2.包含表名(类名去掉Entity后驼峰转下划线)、是否缓存(simple.cache-table)、主键类型与按顺序排列的列
+ * 3.列名为属性名驼峰转下划线,每列带有字段访问器
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-07-03
+ */
+public final class EntityMetadata {
+
+    private static final Map<Class<?>, EntityMetadata> REGISTRY = new ConcurrentHashMap<>();
+
+    private final Class<?> entityClass;
+
+    private final String tableName;
+
+    private final boolean cache;
+
+    /**
+     * 主键类型(Entity.getIdentityClass()),非Entity或未声明时为null
+     */
+    private final Class<?> idType;
+
+    private final List<Column> columns;
+
+    /**
+     * key:列名
+     */
+    private final Map<String, Column> columnMap;
+
+    private EntityMetadata(Class<?> entityClass) {
+        this.entityClass = entityClass;
+        this.tableName = SimpleStringUtils.humpToUnderline(entityClass.getSimpleName().replace("Entity", ""));
+        this.cache = cacheTables().contains(tableName);
+        this.idType = identityClass(entityClass);
+        List<Column> columns = new ArrayList<>();
+        Map<String, Column> columnMap = new LinkedHashMap<>();
+        for (Field field : SimpleBeanUtils.getFields(entityClass).values()) {
+            Column column = new Column(field);
+            columns.add(column);
+            columnMap.put(column.getColumn(), column);
+        }
+        this.columns = Collections.unmodifiableList(columns);
+        this.columnMap = Collections.unmodifiableMap(columnMap);
+    }
+
+    /**
+     * 获取对象元数据
+     *
+     * @param entityClass 对象类型
+     * @return 返回元数据,首次获取时解析
+     */
+    public static EntityMetadata of(Class<?> entityClass) {
+        return REGISTRY.computeIfAbsent(entityClass, EntityMetadata::new);
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public boolean isCache() {
+        return cache;
+    }
+
+    public Class<?> getIdType() {
+        return idType;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 按列名获取列
+     *
+     * @param column 列名(下划线)
+     * @return 返回列,不存在时返回null
+     */
+    public Column getColumn(String column) {
+        return columnMap.get(column);
+    }
+
+    /**
+     * 开启数据缓存的表
+     * <p>
+     * 配置读取失败时抛出异常,元数据不登记,下次获取时重新解析,避免以不缓存的结果固定下来
+     * </p>
+     */
+    private static List<String> cacheTables() {
+        List<String> cacheTable;
+        try {
+            cacheTable = SimpleConfig.initConfig().cacheTable;
+        } catch (RuntimeException e) {
+            throw new SimpleException("读取缓存表配置失败:" + e.getMessage(), e);
+        }
+        return null == cacheTable ? Collections.emptyList() : cacheTable;
+    }
+
+    private static Class<?> identityClass(Class<?> entityClass) {
+        if (!Entity.class.isAssignableFrom(entityClass)) {
+            return null;
+        }
+        try {
+            return ((Entity<?>) entityClass.getDeclaredConstructor().newInstance()).getIdentityClass();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 对象的列
+     */
+    public static final class Column {
+
+        /**
+         * 属性名
+         */
+        private final String name;
+
+        /**
+         * 列名
+         */
+        private final String column;
+
+        private final SimpleFieldAccessor accessor;
+
+        Column(Field field) {
+            this.name = field.getName();
+            this.column = SimpleStringUtils.humpToUnderline(name);
+            this.accessor = SimpleFieldAccessor.of(field);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public SimpleFieldAccessor getAccessor() {
+            return accessor;
+        }
+
+        /**
+         * 读取对象的列值
+         *
+         * @param entity 对象
+         * @return 返回属性值
+         */
+        public Object get(Object entity) {
+            return accessor.get(entity);
+        }
+    }
+}
@@ -6,6 +6,8 @@ import com.simple.repository.master.search.Condition;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 
 public interface IBaseRepository<T> {
 
@@ -135,6 +137,29 @@ public interface IBaseRepository<T> {
      */
     Integer count(Condition condition);
 
+    /**
+     * 流式查询对象
+     * <p>
+     * 逐行读取并转换后交给consumer处理,不保存完整的结果,用于导出等大数据量查询
+     * </p>
+     *
+     * @param condition 条件对象
+     * @param consumer  每个对象的处理
+     * @return 返回读取的数量
+     */
+    int stream(Condition condition, Consumer<T> consumer);
+
+    /**
+     * 以发布者方式查询对象
+     * <p>
+     * 订阅后按订阅者的请求数逐行读取并发布,订阅者取消时取消查询
+     * </p>
+     *
+     * @param condition 条件对象
+     * @return 返回查询结果的发布者,每次订阅执行一次查询
+     */
+    Flow.Publisher<T> publish(Condition condition);
+
     /**
      * 执行sql游标查询语句
      *
@@ -156,6 +181,29 @@ public interface IBaseRepository<T> {
      */
     <E> List<E> select(String sqlIndex, Map<String, Object> search, Class<E> resultClass);
 
+    /**
+     * 流式执行sql游标查询语句
+     *
+     * @param sqlIndex    sql游标
+     * @param search      查询对象
+     * @param resultClass 返回的类型
+     * @param consumer    每个对象的处理
+     * @param <E>         返回的对象类型
+     * @return 返回读取的数量
+     */
+    <E> int stream(String sqlIndex, Map<String, Object> search, Class<E> resultClass, Consumer<E> consumer);
+
+    /**
+     * 以发布者方式执行sql游标查询语句
+     *
+     * @param sqlIndex    sql游标
+     * @param search      查询对象
+     * @param resultClass 返回的类型
+     * @param <E>         返回的对象类型
+     * @return 返回查询结果的发布者,每次订阅执行一次查询
+     */
+    <E> Flow.Publisher<E> publish(String sqlIndex, Map<String, Object> search, Class<E> resultClass);
+
     /**
      * 执行sql
      * @param sqlIndex 游标
@@ -1,5 +1,7 @@
 package com.simple.repository.master;
 
+import com.simple.repository.config.SimpleConfig;
+import com.simple.repository.master.exception.SimpleException;
 import com.simple.repository.util.SimpleJson;
 import com.simple.repository.util.SimpleStringUtils;
 import org.slf4j.Logger;
@@ -36,6 +38,16 @@ public class SqlIndexCache {
         return sqlMap.get(idnex).requiredField;
     }
 
+    /**
+     * 获取sql指定的连接池分区
+     *
+     * @param index sql索引
+     * @return 返回分区名称,未指定时返回null
+     */
+    public static String getPartition(String index) {
+        return sqlMap.get(index).partition;
+    }
+
     /**
      * 缓存sql语句
      *
@@ -47,20 +59,58 @@ public class SqlIndexCache {
         sqlMap.put(index, new SqlCacheDTO(index, sql, requiredField));
     }
 
+    /**
+     * 缓存sql语句
+     *
+     * @param index         sql索引
+     * @param sql           sql对象
+     * @param requiredField 非空字段
+     * @param partition     执行语句的连接池分区,为null时使用数据源自身的连接池
+     */
+    public static void pushCacheSql(String index, String sql, List<String> requiredField, String partition) {
+        SqlCacheDTO cache = new SqlCacheDTO(index, sql, requiredField);
+        cache.partition = partition;
+        sqlMap.put(index, cache);
+    }
+
     /**
      * 初始化sql游标
+     * <p>
+     * sql通过@partition指定的分区未在任何数据源配置时抛出异常,避免运行时静默使用数据源自身的连接池
+     * </p>
      *
      * @throws IOException 读取sql文件异常
      */
     public static void initSqlIndex() throws IOException {
         Map<String, String> sqlContentMap = getFileSqlContent("sql/");
+        Set<String> partitions = configuredPartitions(SimpleConfig.initConfig().dataSource);
         for (String key : sqlContentMap.keySet()) {
             // 解析文档中的sql语句
             String fileTag = SimpleStringUtils.underlineToHump(key);
-            analysisDocContent(fileTag, sqlContentMap.get(key));
+            analysisDocContent(fileTag, sqlContentMap.get(key), partitions);
         }
     }
 
+    /**
+     * 已配置的连接池分区
+     * <p>
+     * 包括主库、只读副本、分片与分组配置的分区
+     * </p>
+     *
+     * @param dataSource 主库配置
+     * @return 返回分区名称
+     */
+    static Set<String> configuredPartitions(SimpleConfig.DataSource dataSource) {
+        Set<String> partitions = new HashSet<>(dataSource.getPartitions().keySet());
+        List<SimpleConfig.DataSource> others = new ArrayList<>(dataSource.getReplicas());
+        others.addAll(dataSource.getShards());
+        others.addAll(dataSource.getGroups().values());
+        for (SimpleConfig.DataSource other : others) {
+            partitions.addAll(other.getPartitions().keySet());
+        }
+        return partitions;
+    }
+
 
     /**
      * 解析文档内容
@@ -68,14 +118,16 @@ public class SqlIndexCache {
      * 将文档的sql语句处理后保存到sqlMap中
      * 1.通过@name截取出sql方法名
      * 2.通过@required 截取非空传参
-     * 3.将sql名称转为常量命名
-     * 4.保存到sql缓存map中
+     * 3.通过@partition 截取执行语句的连接池分区,分区需已配置
+     * 4.将sql名称转为常量命名
+     * 5.保存到sql缓存map中
      * </p>
      *
-     * @param fileTag 文件标识
-     * @param data    文本数据
+     * @param fileTag    文件标识
+     * @param data       文本数据
+     * @param partitions 已配置的连接池分区
      */
-    private static void analysisDocContent(String fileTag, String data) {
+    static void analysisDocContent(String fileTag, String data, Set<String> partitions) {
         // 读取文档内容后进行解析
         String[] sqlArray = data.split(";");
         for (String sqlModel : sqlArray) {
@@ -87,12 +139,17 @@ public class SqlIndexCache {
             String filedStr = getAnnotationText(sqlModel, REQUIRED_FILED_TAG);
             List<String> requiredField = SimpleStringUtils.isEmpty(filedStr) ? new ArrayList<>()
                     : Arrays.stream(filedStr.split(",")).map(String::trim).collect(Collectors.toList());
+            // 获取连接池分区
+            String partition = getAnnotationText(sqlModel, PARTITION_TAG).trim();
+            if (!SimpleStringUtils.isEmpty(partition) && !partitions.contains(partition)) {
+                throw new SimpleException(String.format("sql指定的连接池分区未配置:sqlName=%s,partition=%s", sqlName, partition));
+            }
             // 截取sql语句
             String sql = sqlModel.substring(sqlModel.indexOf("*/") + 2).replaceAll("\r\n", " ")
                     .replaceAll("\n", " ").toLowerCase().trim() + ";";
             sql = SimpleStringUtils.replaceAll(sql, "  ", " ");
-            pushCacheSql(sqlName, sql, requiredField);
-            log.info("sql预加载:装置sql语句完成,sqlName = {},requiredField={},sql = {}", sqlName, SimpleJson.toJsonString(requiredField), sql);
+            pushCacheSql(sqlName, sql, requiredField, SimpleStringUtils.isEmpty(partition) ? null : partition);
+            log.info("sql预加载:装置sql语句完成,sqlName = {},requiredField={},partition={},sql = {}", sqlName, SimpleJson.toJsonString(requiredField), partition, sql);
         }
     }
 
@@ -159,6 +216,10 @@ public class SqlIndexCache {
          * 非空字段
          */
         public List<String> requiredField;
+        /**
+         * 连接池分区
+         */
+        public String partition;
 
         public SqlCacheDTO(String index, String sql, List<String> requiredField) {
             this.index = index;
@@ -172,6 +233,11 @@ public class SqlIndexCache {
      */
     private static final String REQUIRED_FILED_TAG = "@required";
 
+    /**
+     * 连接池分区标识
+     */
+    private static final String PARTITION_TAG = "@partition";
+
     /**
      * sql名称标识
      */
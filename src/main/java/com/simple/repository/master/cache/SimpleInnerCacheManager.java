@@ -14,7 +14,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author laiqx
  * date 2023-01-16
  */
-public class SimpleInnerCacheManager<T extends Entity> implements SimpleCacheManager<T> {
+public class SimpleInnerCacheManager<T extends Entity<?>> implements SimpleCacheManager<T> {
     public Map<Number, T> cacheManager = new ConcurrentHashMap<>();
 
     public boolean save(T t) {
@@ -14,7 +14,7 @@ import com.simple.repository.util.SimpleStringUtils;
  * @author laiqx
  * date 2023-01-16
  */
-public class SimpleRedisCacheManager<T extends Entity> implements SimpleCacheManager<T> {
+public class SimpleRedisCacheManager<T extends Entity<?>> implements SimpleCacheManager<T> {
 
     /**
      * 保存
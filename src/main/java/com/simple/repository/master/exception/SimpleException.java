@@ -14,6 +14,10 @@ public class SimpleException extends RuntimeException {
         super(message);
     }
 
+    public SimpleException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
     public SimpleException(Type type) {
         super(type.getMsg());
     }
@@ -0,0 +1,18 @@
+package com.simple.repository.master.exception;
+
+/**
+ * 过载异常
+ * <p>
+ * 数据源执行中的请求达到并发上限时直接拒绝,不排队等待;连接池获取连接超时或等待队列已满时同样抛出
+ * 调用方可据此降级或快速失败
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-26
+ */
+public class SimpleOverloadException extends SimpleException {
+
+    public SimpleOverloadException(String message) {
+        super(message);
+    }
+}
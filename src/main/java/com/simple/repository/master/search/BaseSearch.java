@@ -1,5 +1,7 @@
 package com.simple.repository.master.search;
 
+import com.simple.repository.connect.SimpleQueryHint;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -49,6 +51,11 @@ public class BaseSearch implements Serializable {
      */
     private List<Sort> sorts = new ArrayList<>();
 
+    /**
+     * 执行提示,为null时使用驱动默认值
+     */
+    private SimpleQueryHint hint;
+
     /**
      * 新增排序规则
      * @param fieldName 字段
@@ -76,10 +83,21 @@ public class BaseSearch implements Serializable {
         return sortStr.substring(0, sortStr.length() - 1);
     }
 
+    /**
+     * 排序规则
+     *
+     * @return 返回排序规则,按添加顺序
+     */
+    public List<Sort> getSorts() {
+        return sorts;
+    }
+
     /**
      * 排序对象
      */
-    class Sort {
+    public static class Sort implements Serializable {
+
+        private static final long serialVersionUID = 1L;
 
         private String fieldName;
 
@@ -89,6 +107,14 @@ public class BaseSearch implements Serializable {
             this.fieldName = fieldName;
             this.type = type;
         }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public SortType getType() {
+            return type;
+        }
     }
 
     /**
@@ -157,4 +183,12 @@ public class BaseSearch implements Serializable {
     public void setPage(Boolean page) {
         this.page = page;
     }
+
+    public SimpleQueryHint getHint() {
+        return hint;
+    }
+
+    public void setHint(SimpleQueryHint hint) {
+        this.hint = hint;
+    }
 }
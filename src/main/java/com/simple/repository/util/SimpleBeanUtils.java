@@ -3,9 +3,11 @@ package com.simple.repository.util;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 字符处理工具
@@ -16,6 +18,11 @@ import java.util.Map;
  */
 public class SimpleBeanUtils {
 
+    /**
+     * 类型的属性,首次获取时解析
+     */
+    private static final Map<Class<?>, Map<String, Field>> FIELDS = new ConcurrentHashMap<>();
+
     /**
      * 对象拷贝
      * @param source 来源
@@ -100,12 +107,19 @@ public class SimpleBeanUtils {
 
     /**
      * 查询出对象的属性MAP
+     * <p>
+     * 每个类型只解析一次,返回的map不可修改,顺序为公开属性(含父类)在前、本类声明的属性在后
+     * </p>
      *
      * @param tClass 操作对象的类型
      * @return 返回对象属性MAP
      */
     public static Map<String, Field> getFields(Class<?> tClass) {
-        Map<String, Field> map = new HashMap<>();
+        return FIELDS.computeIfAbsent(tClass, SimpleBeanUtils::scanFields);
+    }
+
+    private static Map<String, Field> scanFields(Class<?> tClass) {
+        Map<String, Field> map = new LinkedHashMap<>();
         for (Field field : tClass.getFields()) {
             if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
                 continue;
@@ -119,7 +133,7 @@ public class SimpleBeanUtils {
             field.setAccessible(true);
             map.put(field.getName(), field);
         }
-        return map;
+        return Collections.unmodifiableMap(map);
     }
 
 }
@@ -1,5 +1,7 @@
 package com.simple.repository.util;
 
+import com.simple.repository.master.EntityMetadata;
+
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.util.*;
@@ -157,38 +159,54 @@ public class SimpleCollectionUtil {
      * @return 返回对象列表
      */
     public static <T> List<T> listMapToObject(List<Map<String, Object>> listMap, Class<T> paramClass) {
-        Map<String, Field> fieldMap = SimpleBeanUtils.getFields(paramClass);
+        List<EntityMetadata.Column> columns = EntityMetadata.of(paramClass).getColumns();
         List<T> result = new ArrayList<>();
         for (Map<String, Object> map : listMap) {
-            try {
-                T entity = paramClass.newInstance();
-                for (String fieldName : fieldMap.keySet()) {
-                    Field field = fieldMap.get(fieldName);
-                    if (null == field) {
-                        continue;
-                    }
-                    Object value = map.get(SimpleStringUtils.humpToUnderline(fieldName));
-                    if (value instanceof BigDecimal) {
-                        if (field.getType().equals(Integer.class)) {
-                            value = ((BigDecimal) value).intValue();
-                        } else if (field.getType().equals(Long.class)) {
-                            value = ((BigDecimal) value).longValue();
-                        } else if (field.getType().equals(Double.class)) {
-                            value = ((BigDecimal) value).doubleValue();
-                        } else if (field.getType().equals(Float.class)) {
-                            value = ((BigDecimal) value).floatValue();
-                        } else if (field.getType().equals(String.class)) {
-                            value = value.toString();
-                        }
+            result.add(mapToObject(map, paramClass, columns));
+        }
+        return result;
+    }
+
+    /**
+     * map 转 java对象
+     * <p>
+     * 用于逐行转换,如流式查询;列名与字段访问器取自类型的元数据,每个类型只解析一次
+     * </p>
+     *
+     * @param map        数据,key为下划线列名
+     * @param paramClass 参数类型
+     * @param <T>        返回的对象类型
+     * @return 返回对象
+     */
+    public static <T> T mapToObject(Map<String, Object> map, Class<T> paramClass) {
+        return mapToObject(map, paramClass, EntityMetadata.of(paramClass).getColumns());
+    }
+
+    private static <T> T mapToObject(Map<String, Object> map, Class<T> paramClass, List<EntityMetadata.Column> columns) {
+        try {
+            T entity = paramClass.newInstance();
+            for (EntityMetadata.Column column : columns) {
+                Object value = map.get(column.getColumn());
+                if (value instanceof BigDecimal) {
+                    Class<?> type = column.getAccessor().getType();
+                    if (type.equals(Integer.class)) {
+                        value = ((BigDecimal) value).intValue();
+                    } else if (type.equals(Long.class)) {
+                        value = ((BigDecimal) value).longValue();
+                    } else if (type.equals(Double.class)) {
+                        value = ((BigDecimal) value).doubleValue();
+                    } else if (type.equals(Float.class)) {
+                        value = ((BigDecimal) value).floatValue();
+                    } else if (type.equals(String.class)) {
+                        value = value.toString();
                     }
-                    field.set(entity, value);
                 }
-                result.add(entity);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+                column.getAccessor().set(entity, value);
             }
+            return entity;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
-        return result;
     }
 
     /**
@@ -0,0 +1,100 @@
+package com.simple.repository.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 字段访问器
+ * <p>
+ * 1.按字段生成读写的MethodHandle并缓存,替代Field.get()/Field.set()在批量解析与映射中的逐次访问检查
+ * 2.句柄统一为(Object)Object与(Object,Object)void,调用时由句柄完成类型转换,基本类型自动装箱/拆箱
+ * 3.对象只有公开字段没有getter/setter,LambdaMetafactory不支持字段句柄,因此直接调用MethodHandle
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-07-02
+ */
+public class SimpleFieldAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final Map<Field, SimpleFieldAccessor> ACCESSORS = new ConcurrentHashMap<>();
+
+    private final Field field;
+
+    private final MethodHandle getter;
+
+    private final MethodHandle setter;
+
+    private SimpleFieldAccessor(Field field) {
+        this.field = field;
+        try {
+            field.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            this.getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+            this.setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("生成字段访问器失败:" + field, e);
+        }
+    }
+
+    /**
+     * 获取字段访问器
+     *
+     * @param field 字段,非static、非final
+     * @return 返回缓存的访问器
+     */
+    public static SimpleFieldAccessor of(Field field) {
+        return ACCESSORS.computeIfAbsent(field, SimpleFieldAccessor::new);
+    }
+
+    /**
+     * 读取字段值
+     *
+     * @param target 对象
+     * @return 返回字段值,基本类型返回包装类型
+     */
+    public Object get(Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("读取字段失败:" + field.getName(), e);
+        }
+    }
+
+    /**
+     * 写入字段值
+     *
+     * @param target 对象
+     * @param value  字段值,类型不匹配时抛出ClassCastException
+     */
+    public void set(Object target, Object value) {
+        try {
+            setter.invokeExact(target, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("写入字段失败:" + field.getName(), e);
+        }
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+}
@@ -0,0 +1,242 @@
+package com.simple.repository.util;
+
+import com.simple.repository.master.EntityMetadata;
+
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 结果集映射
+ * <p>
+ * 1.按列序号与字段类型选择读取方法(getInt、getLong、getString等),直接写入对象,不再生成中间的map
+ * 2.映射计划按(sql形状,对象类型)缓存,首次执行时根据ResultSetMetaData生成;列数或列名变化(如表结构变更)时重新生成
+ * 3.列名按对象元数据(EntityMetadata)的列名匹配字段,没有对应字段的列忽略;列为null时基本类型字段保持默认值
+ * 4.字段类型没有专用读取方法时,按列的类型读取后写入(与SimpleCollectionUtil.listMapToObject一致)
+ * </p>
+ *
+ * @param <T> 映射的对象类型
+ * @author laiqx
+ * date 2023-07-01
+ */
+public class SimpleRowMapper<T> {
+
+    /**
+     * 映射计划缓存的最大数量,超过后不再缓存新的计划
+     */
+    private static final int MAX_PLANS = 2048;
+
+    private static final Map<PlanKey, SimpleRowMapper<?>> PLANS = new ConcurrentHashMap<>();
+
+    private final Constructor<T> constructor;
+
+    /**
+     * 列名(用于校验计划是否仍然适用)
+     */
+    private final String[] labels;
+
+    /**
+     * 每列写入的字段,没有对应字段时为null
+     */
+    private final SimpleFieldAccessor[] fields;
+
+    /**
+     * 每列的读取方法
+     */
+    private final ColumnReader[] readers;
+
+    private SimpleRowMapper(Class<T> tClass, ResultSetMetaData metaData) throws SQLException {
+        try {
+            this.constructor = tClass.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(tClass.getName() + "缺少无参构造方法", e);
+        }
+        EntityMetadata metadata = EntityMetadata.of(tClass);
+        int count = metaData.getColumnCount();
+        this.labels = new String[count];
+        this.fields = new SimpleFieldAccessor[count];
+        this.readers = new ColumnReader[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+            EntityMetadata.Column column = metadata.getColumn(labels[i].toLowerCase());
+            if (null == column) {
+                continue;
+            }
+            fields[i] = column.getAccessor();
+            readers[i] = reader(fields[i].getType(), metaData.getColumnTypeName(i + 1));
+        }
+    }
+
+    /**
+     * 获取映射计划
+     *
+     * @param sql      查询语句,按形状缓存计划
+     * @param tClass   映射的对象类型
+     * @param metaData 结果集的列信息
+     * @param <T>      映射的对象类型
+     * @return 返回映射计划
+     * @throws SQLException 读取列信息异常
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SimpleRowMapper<T> of(String sql, Class<T> tClass, ResultSetMetaData metaData) throws SQLException {
+        SimpleSqlShape shape = SimpleSqlShape.parse(sql);
+        PlanKey key = new PlanKey(null == shape ? sql : shape.getSql(), tClass);
+        SimpleRowMapper<T> mapper = (SimpleRowMapper<T>) PLANS.get(key);
+        if (null != mapper && mapper.matches(metaData)) {
+            return mapper;
+        }
+        mapper = new SimpleRowMapper<>(tClass, metaData);
+        if (PLANS.size() < MAX_PLANS || PLANS.containsKey(key)) {
+            PLANS.put(key, mapper);
+        }
+        return mapper;
+    }
+
+    /**
+     * 映射当前行
+     *
+     * @param result 结果集
+     * @return 返回映射的对象
+     * @throws SQLException 读取数据异常
+     */
+    public T map(ResultSet result) throws SQLException {
+        T entity;
+        try {
+            entity = constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("创建对象失败:" + constructor.getDeclaringClass().getName(), e);
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (null == fields[i]) {
+                continue;
+            }
+            Object value = readers[i].read(result, i + 1);
+            if (null == value && fields[i].getType().isPrimitive()) {
+                continue;
+            }
+            fields[i].set(entity, value);
+        }
+        return entity;
+    }
+
+    /**
+     * 计划的列是否与结果集一致
+     */
+    private boolean matches(ResultSetMetaData metaData) throws SQLException {
+        if (metaData.getColumnCount() != labels.length) {
+            return false;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (!labels[i].equals(metaData.getColumnLabel(i + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按字段类型选择读取方法
+     *
+     * @param type           字段类型
+     * @param columnTypeName 列的数据库类型
+     * @return 返回读取方法
+     */
+    private static ColumnReader reader(Class<?> type, String columnTypeName) {
+        if (String.class == type) {
+            return ResultSet::getString;
+        } else if (Integer.class == type || int.class == type) {
+            return (result, index) -> {
+                int value = result.getInt(index);
+                return result.wasNull() ? null : value;
+            };
+        } else if (Long.class == type || long.class == type) {
+            return (result, index) -> {
+                long value = result.getLong(index);
+                return result.wasNull() ? null : value;
+            };
+        } else if (Double.class == type || double.class == type) {
+            return (result, index) -> {
+                double value = result.getDouble(index);
+                return result.wasNull() ? null : value;
+            };
+        } else if (Float.class == type || float.class == type) {
+            return (result, index) -> {
+                float value = result.getFloat(index);
+                return result.wasNull() ? null : value;
+            };
+        } else if (Boolean.class == type || boolean.class == type) {
+            return (result, index) -> {
+                boolean value = result.getBoolean(index);
+                return result.wasNull() ? null : value;
+            };
+        } else if (BigDecimal.class == type) {
+            return ResultSet::getBigDecimal;
+        } else if (Timestamp.class == type) {
+            return ResultSet::getTimestamp;
+        } else if (Date.class == type) {
+            return (result, index) -> {
+                Timestamp value = result.getTimestamp(index);
+                return null == value ? null : new Date(value.getTime());
+            };
+        }
+        SimpleSqlDataType.SqlType sqlType = SimpleSqlDataType.MYSQL_TYPE.get(columnTypeName);
+        Class<?> columnType = null == sqlType ? String.class : sqlType.getType();
+        return (result, index) -> result.getObject(index, columnType);
+    }
+
+    /**
+     * 列的读取方法
+     */
+    private interface ColumnReader {
+
+        /**
+         * 读取当前行的列
+         *
+         * @param result 结果集
+         * @param index  列序号,从1开始
+         * @return 返回列的值
+         * @throws SQLException 读取数据异常
+         */
+        Object read(ResultSet result, int index) throws SQLException;
+    }
+
+    /**
+     * 映射计划的缓存键
+     */
+    private static class PlanKey {
+
+        private final String shape;
+
+        private final Class<?> type;
+
+        PlanKey(String shape, Class<?> type) {
+            this.shape = shape;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey other = (PlanKey) o;
+            return type == other.type && shape.equals(other.shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(shape, type);
+        }
+    }
+}
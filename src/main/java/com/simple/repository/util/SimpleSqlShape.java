@@ -0,0 +1,221 @@
+package com.simple.repository.util;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * sql形状
+ * <p>
+ * 将拼接好字面量的sql语句拆分为带占位符的语句与参数,用于复用PreparedStatement
+ * 例如：select * from test where id = 12 and name = 'a';
+ * 解析结果 sql = "select * from test where id = ? and name = ?" params = [12, "a"]
+ * 1.单引号字符串与独立的数字替换为占位符,数字为整数时参数为Long,否则为BigDecimal
+ * 2.order by、group by 中的数字表示列序号,保持原样
+ * 3.带前缀的字面量(如 x'0F'、_utf8'a')、双引号与反引号内容保持原样
+ * 4.包含注释、占位符或多条语句时无法解析,返回null
+ * </p>
+ *
+ * @author laiqx
+ * date 2023-06-21
+ */
+public class SimpleSqlShape {
+
+    /**
+     * 结束列序号区域的关键字
+     */
+    private static final List<String> ORDINAL_END_WORDS = Arrays.asList("limit", "having", "union", "for", "lock", "offset", "select", "from", "where");
+
+    /**
+     * 带占位符的sql语句
+     */
+    private final String sql;
+
+    /**
+     * 占位符对应的参数
+     */
+    private final List<Object> params;
+
+    private SimpleSqlShape(String sql, List<Object> params) {
+        this.sql = sql;
+        this.params = params;
+    }
+
+    /**
+     * 解析sql形状
+     *
+     * @param sql 拼接好字面量的sql语句
+     * @return 返回sql形状,无法解析时返回null
+     */
+    public static SimpleSqlShape parse(String sql) {
+        if (SimpleStringUtils.isEmpty(sql)) {
+            return null;
+        }
+        StringBuilder shape = new StringBuilder(sql.length());
+        List<Object> params = new ArrayList<>();
+        String lastWord = "";
+        boolean ordinal = false;
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '?' || c == '#' || c == '-' && i + 1 < length && sql.charAt(i + 1) == '-'
+                    || c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                return null;
+            } else if (c == ';') {
+                // 只允许结尾的分号
+                if (!sql.substring(i + 1).trim().isEmpty()) {
+                    return null;
+                }
+                break;
+            } else if (c == '\'') {
+                int end = quoteEnd(sql, i, '\'');
+                if (end < 0) {
+                    return null;
+                }
+                if (i > 0 && isWordChar(sql.charAt(i - 1))) {
+                    shape.append(sql, i, end + 1);
+                } else {
+                    shape.append('?');
+                    params.add(unescape(sql.substring(i + 1, end)));
+                }
+                i = end + 1;
+            } else if (c == '"' || c == '`') {
+                int end = quoteEnd(sql, i, c);
+                if (end < 0) {
+                    return null;
+                }
+                shape.append(sql, i, end + 1);
+                i = end + 1;
+            } else if (Character.isDigit(c) && (i == 0 || !isWordChar(sql.charAt(i - 1)))) {
+                int end = i;
+                while (end < length && (Character.isDigit(sql.charAt(end)) || sql.charAt(end) == '.')) {
+                    end++;
+                }
+                String number = sql.substring(i, end);
+                if (ordinal || end < length && isWordChar(sql.charAt(end)) || number.endsWith(".")
+                        || number.indexOf('.') != number.lastIndexOf('.')) {
+                    shape.append(number);
+                } else {
+                    shape.append('?');
+                    params.add(number.indexOf('.') >= 0 ? new BigDecimal(number) : toNumber(number));
+                }
+                i = end;
+            } else if (isWordChar(c)) {
+                int end = i;
+                while (end < length && isWordChar(sql.charAt(end))) {
+                    end++;
+                }
+                String word = sql.substring(i, end).toLowerCase();
+                if (word.equals("by") && (lastWord.equals("order") || lastWord.equals("group"))) {
+                    ordinal = true;
+                } else if (ORDINAL_END_WORDS.contains(word)) {
+                    ordinal = false;
+                }
+                lastWord = word;
+                shape.append(sql, i, end);
+                i = end;
+            } else {
+                shape.append(c);
+                i++;
+            }
+        }
+        return new SimpleSqlShape(shape.toString().trim(), params);
+    }
+
+    /**
+     * 查找引号结束位置
+     *
+     * @param sql   sql语句
+     * @param start 开始引号位置
+     * @param quote 引号
+     * @return 返回结束引号位置,未闭合返回-1
+     */
+    private static int quoteEnd(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i += 2;
+            } else if (c == quote) {
+                // 连续两个引号表示引号本身
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 字符串字面量反转义
+     *
+     * @param text 引号内的文本
+     * @return 返回参数值
+     */
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0 && !text.contains("''")) {
+            return text;
+        }
+        StringBuilder value = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                switch (next) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case '0':
+                        value.append('\0');
+                        break;
+                    case 'Z':
+                        value.append('\032');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    default:
+                        value.append(next);
+                }
+            } else if (c == '\'' && i + 1 < text.length() && text.charAt(i + 1) == '\'') {
+                value.append('\'');
+                i++;
+            } else {
+                value.append(c);
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * 整数转换,超出Long范围时使用BigDecimal
+     */
+    private static Object toNumber(String number) {
+        return number.length() < 19 ? (Object) Long.valueOf(number) : new BigDecimal(number);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.' || c == '@';
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getParams() {
+        return Collections.unmodifiableList(params);
+    }
+}
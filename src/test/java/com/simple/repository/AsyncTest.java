@@ -0,0 +1,107 @@
+package com.simple.repository;
+
+import com.simple.repository.config.SimpleThreadLocalStore;
+import com.simple.repository.connect.SimpleFanOut;
+import com.simple.repository.connect.SimpleSession;
+import com.simple.repository.master.exception.SimpleException;
+import com.simple.repository.master.exception.SimpleOverloadException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 异步与并行查询测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class AsyncTest {
+
+    private final static Logger log = LoggerFactory.getLogger(AsyncTest.class);
+
+    @Test
+    public void asyncExecute() throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        CountDownLatch release = new CountDownLatch(1);
+        // 异步操作沿用调用线程的分区
+        CompletableFuture<String> running = SimpleSession.partition("report", () -> SimpleSession.async(() -> {
+            try {
+                release.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return SimpleThreadLocalStore.partition.get();
+        }, executor));
+        CompletableFuture<String> queued = SimpleSession.async(() -> SimpleThreadLocalStore.partition.get(), executor);
+        // 线程与队列已满时直接返回过载
+        CompletableFuture<String> rejected = SimpleSession.async(() -> "rejected", executor);
+        try {
+            rejected.get();
+            Assert.fail("线程池已满时应拒绝");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SimpleOverloadException);
+        }
+        release.countDown();
+        Assert.assertEquals("report", running.get(1, TimeUnit.SECONDS));
+        Assert.assertNull(queued.get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void fanOut() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        // 等待取消的操作,返回是否被取消
+        Supplier<Boolean> waitCancel = () -> {
+            long end = System.currentTimeMillis() + 2000;
+            while (System.currentTimeMillis() < end) {
+                if (SimpleThreadLocalStore.cancellation.get().isCancelled()) {
+                    return true;
+                }
+                Thread.onSpinWait();
+            }
+            return false;
+        };
+        try (SimpleFanOut fanOut = new SimpleFanOut(1000, executor)) {
+            CompletableFuture<Integer> one = fanOut.fork(() -> 1);
+            CompletableFuture<String> two = fanOut.fork(() -> "two");
+            fanOut.join();
+            Assert.assertEquals(Integer.valueOf(1), one.join());
+            Assert.assertEquals("two", two.join());
+        }
+        // 任一操作失败时立即返回并取消其余操作
+        CompletableFuture<Boolean> cancelled = null;
+        long start = System.currentTimeMillis();
+        try (SimpleFanOut fanOut = new SimpleFanOut(5000, executor)) {
+            cancelled = fanOut.fork(waitCancel);
+            fanOut.fork(() -> {
+                throw new SimpleException("查询失败");
+            });
+            fanOut.join();
+            Assert.fail("操作失败时应抛出异常");
+        } catch (SimpleException e) {
+            Assert.assertEquals("查询失败", e.getMessage());
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assert.assertTrue(cancelled.get(1, TimeUnit.SECONDS));
+        // 超过截止时间
+        try (SimpleFanOut fanOut = new SimpleFanOut(50, executor)) {
+            fanOut.fork(waitCancel);
+            fanOut.join();
+            Assert.fail("超过截止时间应抛出异常");
+        } catch (SimpleException e) {
+            log.info("异步测试类:并行查询超时,msg={}", e.getMessage());
+        }
+        executor.shutdown();
+    }
+}
@@ -1,15 +1,22 @@
 package com.simple.repository;
 
+import com.simple.repository.master.EntityMetadata;
 import com.simple.repository.search.TestDTO;
 import com.simple.repository.test.entity.TestEntity;
 import com.simple.repository.util.SimpleBeanUtils;
+import com.simple.repository.util.SimpleCollectionUtil;
+import com.simple.repository.util.SimpleFieldAccessor;
 import com.simple.repository.util.SimpleJson;
+import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Field;
+import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -52,4 +59,61 @@ public class BeanUtilsTest {
         log.info("bean工具测试类:对象列表拷贝,fieldMap={},fieldMap2={}", SimpleJson.toJsonString(fieldMap), SimpleJson.toJsonString(fieldMap2));
     }
 
+    @Test
+    public void fieldAccessor() throws Exception {
+        Map<String, Field> fieldMap = SimpleBeanUtils.getFields(TestEntity.class);
+        SimpleFieldAccessor name = SimpleFieldAccessor.of(fieldMap.get("name"));
+        SimpleFieldAccessor id = SimpleFieldAccessor.of(fieldMap.get("id"));
+        Assert.assertSame(name, SimpleFieldAccessor.of(fieldMap.get("name")));
+        TestEntity entity = new TestEntity();
+        name.set(entity, "张三");
+        id.set(entity, 1);
+        Assert.assertEquals("张三", entity.name);
+        Assert.assertEquals(1, id.get(entity));
+        // 私有字段与基本类型
+        SimpleFieldAccessor count = SimpleFieldAccessor.of(SimpleBeanUtils.getFields(Counter.class).get("count"));
+        Counter counter = new Counter();
+        count.set(counter, 3);
+        Assert.assertEquals(3, count.get(counter));
+    }
+
+    @Test
+    public void mapToObject() {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", 1);
+        row.put("age", new BigDecimal("18"));
+        row.put("name", "张三");
+        row.put("create_time", null);
+        row.put("ignored", "x");
+        TestEntity entity = SimpleCollectionUtil.mapToObject(row, TestEntity.class);
+        // 数字列按字段类型转换,没有对应字段的列忽略
+        Assert.assertEquals(Integer.valueOf(1), entity.id);
+        Assert.assertEquals(Integer.valueOf(18), entity.age);
+        Assert.assertEquals("张三", entity.name);
+        Assert.assertNull(entity.createTime);
+        List<TestEntity> entities = SimpleCollectionUtil.listMapToObject(Arrays.asList(row, Collections.singletonMap("name", "李四")), TestEntity.class);
+        Assert.assertEquals(2, entities.size());
+        Assert.assertEquals("李四", entities.get(1).name);
+        Assert.assertNull(entities.get(1).id);
+    }
+
+    @Test
+    public void entityMetadata() {
+        EntityMetadata metadata = EntityMetadata.of(TestEntity.class);
+        Assert.assertSame(metadata, EntityMetadata.of(TestEntity.class));
+        Assert.assertEquals("test", metadata.getTableName());
+        Assert.assertEquals(Integer.class, metadata.getIdType());
+        // id、name、age、create_time、update_time,静态常量不作为列
+        Assert.assertEquals(5, metadata.getColumns().size());
+        TestEntity entity = new TestEntity();
+        entity.name = "张三";
+        Assert.assertEquals("createTime", metadata.getColumn("create_time").getName());
+        Assert.assertEquals("张三", metadata.getColumn("name").get(entity));
+    }
+
+    private static class Counter {
+
+        private int count;
+    }
+
 }
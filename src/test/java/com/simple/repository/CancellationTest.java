@@ -0,0 +1,89 @@
+package com.simple.repository;
+
+import com.simple.repository.connect.SimpleCancellation;
+import com.simple.repository.connect.SimpleConnection;
+import com.simple.repository.connect.SimpleSession;
+import com.simple.repository.master.exception.SimpleException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 查询超时与取消测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class CancellationTest {
+
+    private final static Logger log = LoggerFactory.getLogger(CancellationTest.class);
+
+    @Test
+    public void cancelRunningQuery() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicInteger timeout = new AtomicInteger(-1);
+        // 执行查询时阻塞直到被取消的Statement
+        Statement statement = JdbcProxy.statement((method, args) -> {
+            switch (method) {
+                case "setQueryTimeout":
+                    timeout.set((Integer) args[0]);
+                    return null;
+                case "executeQuery":
+                    if ("select 1".equals(args[0])) {
+                        return null;
+                    }
+                    executing.countDown();
+                    if (!cancelled.await(5, TimeUnit.SECONDS)) {
+                        return null;
+                    }
+                    throw new SQLException("Statement cancelled due to client request");
+                case "cancel":
+                    cancelled.countDown();
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        SimpleConnection connection = new SimpleConnection();
+        connection.setQueryTimeout(30);
+        SimpleCancellation cancellation = new SimpleCancellation();
+        CompletableFuture<Exception> result = CompletableFuture.supplyAsync(() -> SimpleSession.timeout(5, () -> SimpleSession.cancellable(cancellation, () -> {
+            try {
+                connection.executeQuery(statement, "select sleep(60)");
+                return null;
+            } catch (SQLException e) {
+                return e;
+            }
+        })));
+        Assert.assertTrue(executing.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(5, timeout.get());
+        cancellation.cancel();
+        Assert.assertNotNull(result.get(1, TimeUnit.SECONDS));
+        Assert.assertTrue(cancellation.isCancelled());
+        // 取消后句柄范围内的语句直接拒绝
+        try {
+            SimpleSession.cancellable(cancellation, () -> {
+                try {
+                    return connection.executeQuery(statement, "select 1");
+                } catch (SQLException e) {
+                    throw new SimpleException(e);
+                }
+            });
+            Assert.fail("已取消的句柄应拒绝执行语句");
+        } catch (SimpleException e) {
+            log.info("查询取消测试类:取消后拒绝执行,msg={}", e.getMessage());
+        }
+        // 未指定超时时使用默认值
+        connection.executeQuery(statement, "select 1");
+        Assert.assertEquals(30, timeout.get());
+    }
+}
@@ -0,0 +1,291 @@
+package com.simple.repository;
+
+import com.simple.repository.config.SimpleThreadLocalStore;
+import com.simple.repository.connect.SimpleConcurrencyLimiter;
+import com.simple.repository.connect.SimpleConnection;
+import com.simple.repository.connect.SimpleConnectionPool;
+import com.simple.repository.connect.SimplePoolSizer;
+import com.simple.repository.connect.SimpleSession;
+import com.simple.repository.master.exception.SimpleException;
+import com.simple.repository.master.exception.SimpleOverloadException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接池测试类
+ *
+ * @author laiqx
+ * @date 2023-06-12
+ */
+public class ConnectionPoolTest {
+
+    private final static Logger log = LoggerFactory.getLogger(ConnectionPoolTest.class);
+
+    @Test
+    public void borrowTimeout() throws Exception {
+        SimpleConnectionPool pool = new SimpleConnectionPool(SimpleConnection::new, 1, 100, 8);
+        pool.borrow();
+        long start = System.currentTimeMillis();
+        try {
+            pool.borrow();
+            Assert.fail("连接池已满时应等待超时");
+        } catch (SimpleException e) {
+            log.info("连接池测试类:获取连接超时,cost={}ms,msg={}", System.currentTimeMillis() - start, e.getMessage());
+        }
+        Assert.assertEquals(0, pool.getWaiterCount());
+    }
+
+    @Test
+    public void giveBackToWaiter() throws Exception {
+        SimpleConnectionPool pool = new SimpleConnectionPool(SimpleConnection::new, 1, 5000, 8);
+        SimpleConnection connection = pool.borrow();
+        CompletableFuture<SimpleConnection> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.borrow();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (pool.getWaiterCount() == 0) {
+            Thread.sleep(1);
+        }
+        pool.giveBack(connection);
+        Assert.assertSame(connection, future.get(1, TimeUnit.SECONDS));
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(1, pool.getTotalCount());
+    }
+
+    @Test
+    public void housekeep() throws Exception {
+        SimpleConnectionPool pool = new SimpleConnectionPool(() -> new SimpleConnection(null, 60000), 8, 100, 8);
+        pool.fill(4);
+        // 没有底层连接,校验失败后全部关闭,再补足到最小连接数
+        int evicted = pool.housekeep(2, 60000, 1);
+        log.info("连接池测试类:维护连接池,evicted={},total={},idle={}", evicted, pool.getTotalCount(), pool.getIdleCount());
+        Assert.assertEquals(4, evicted);
+        Assert.assertEquals(2, pool.getTotalCount());
+        Assert.assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        SimpleConnectionPool pool = new SimpleConnectionPool(SimpleConnection::new, 2, 50, 8);
+        pool.giveBack(pool.borrow());
+        SimpleConnection first = pool.borrow();
+        SimpleConnection second = pool.borrow();
+        try {
+            pool.borrow();
+        } catch (SimpleException ignored) {
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.simple.repository:type=SimpleDataSource,name=test");
+        server.registerMBean(pool.getMetrics(), name);
+        TabularData histogram = (TabularData) server.getAttribute(name, "AcquireLatencyHistogram");
+        log.info("连接池测试类:监控指标,histogram={}", histogram.values());
+        Assert.assertEquals(2, server.getAttribute(name, "ActiveConnections"));
+        Assert.assertEquals(3L, server.getAttribute(name, "AcquireCount"));
+        Assert.assertEquals(1L, server.getAttribute(name, "AcquireTimeoutCount"));
+        Assert.assertEquals(2L, server.getAttribute(name, "CreatedCount"));
+        // 调低上限后,归还时超过上限的连接被关闭
+        pool.resize(1);
+        pool.giveBack(first);
+        pool.giveBack(second);
+        Assert.assertEquals(1L, server.getAttribute(name, "OverLimitClosedCount"));
+        Assert.assertEquals(1, pool.getTotalCount());
+        server.unregisterMBean(name);
+    }
+
+    @Test
+    public void reclaimLeak() throws Exception {
+        SimpleConnectionPool pool = new SimpleConnectionPool(SimpleConnection::new, 2, 100, 8);
+        pool.enableLeakDetection(0);
+        Thread thread = new Thread(() -> {
+            try {
+                pool.borrow();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, "leak-test");
+        thread.start();
+        thread.join();
+        Thread.sleep(5);
+        Assert.assertEquals(1, pool.getLeakSuspects().size());
+        Assert.assertEquals(1, pool.detectLeaks());
+        Assert.assertEquals(0, pool.getTotalCount());
+        log.info("连接池测试类:回收泄漏连接,reclaimed={}", pool.getMetrics().getReclaimedCount());
+    }
+
+    @Test
+    public void adaptiveSizing() throws Exception {
+        SimpleConnectionPool pool = new SimpleConnectionPool(SimpleConnection::new, 16, 5000, 8);
+        SimplePoolSizer sizer = new SimplePoolSizer(pool, 1, 16, 10);
+        pool.resize(2);
+        SimpleConnection first = pool.borrow();
+        SimpleConnection second = pool.borrow();
+        CompletableFuture<SimpleConnection> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.borrow();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (pool.getWaiterCount() == 0) {
+            Thread.sleep(1);
+        }
+        // 有线程等待时提高上限,等待线程新建连接
+        Assert.assertEquals(3, sizer.resize());
+        SimpleConnection third = future.get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(3, pool.getTotalCount());
+        pool.giveBack(first);
+        pool.giveBack(second);
+        pool.giveBack(third);
+        // 连续低负载后降低上限,关闭多余的空闲连接
+        int limit = 3;
+        for (int i = 0; i < 31; i++) {
+            limit = sizer.resize();
+        }
+        log.info("连接池测试类:自适应调整,limit={},total={}", limit, pool.getTotalCount());
+        Assert.assertEquals(2, limit);
+        Assert.assertEquals(2, pool.getTotalCount());
+    }
+
+    @Test
+    public void concurrencyLimit() throws Exception {
+        SimpleConnectionPool pool = new SimpleConnectionPool(SimpleConnection::new, 8, 100, 8);
+        SimpleConcurrencyLimiter limiter = new SimpleConcurrencyLimiter(2, 1, 4, 10, pool.getMetrics());
+        CountDownLatch running = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    limiter.execute(() -> {
+                        running.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return null;
+                    });
+                } catch (Exception e) {
+                    log.error("连接池测试类:并发限制执行失败:" + e.getMessage());
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        Assert.assertTrue(running.await(1, TimeUnit.SECONDS));
+        try {
+            limiter.execute(() -> null);
+            Assert.fail("达到并发上限时应直接拒绝");
+        } catch (SimpleOverloadException e) {
+            log.info("连接池测试类:并发限制拒绝,msg={}", e.getMessage());
+        }
+        Assert.assertEquals(1, pool.getMetrics().getLimiterRejectedCount());
+        // 慢请求超过目标耗时,上限降低
+        Thread.sleep(20);
+        release.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Assert.assertEquals(0, limiter.getInFlight());
+        Assert.assertEquals(1, limiter.getLimit());
+        limiter.execute(() -> null);
+        Assert.assertEquals(0, limiter.getInFlight());
+        // 流式查询不采样耗时,慢请求不降低上限
+        SimpleConcurrencyLimiter streaming = new SimpleConcurrencyLimiter(4, 1, 4, 1, pool.getMetrics());
+        SimpleConcurrencyLimiter.Call<Void> slow = () -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+            while (System.nanoTime() < end) {
+                Thread.yield();
+            }
+            return null;
+        };
+        streaming.execute(slow, false);
+        Assert.assertEquals(4, streaming.getLimit());
+        streaming.execute(slow);
+        Assert.assertEquals(3, streaming.getLimit());
+    }
+
+    @Test
+    public void limiterDropsOnAcquireTimeout() throws Exception {
+        SimpleConnectionPool pool = new SimpleConnectionPool(SimpleConnection::new, 1, 20, 8);
+        SimpleConcurrencyLimiter limiter = new SimpleConcurrencyLimiter(4, 1, 4, 10, pool.getMetrics());
+        pool.borrow();
+        Thread.sleep(20);
+        // 获取连接超时说明数据库跟不上当前并发,按超时类异常降低上限
+        try {
+            limiter.execute(pool::borrow);
+            Assert.fail("连接池已满时应等待超时");
+        } catch (SimpleOverloadException e) {
+            log.info("连接池测试类:并发限制内获取连接超时,msg={}", e.getMessage());
+        }
+        Assert.assertEquals(1, pool.getMetrics().getAcquireTimeoutCount());
+        Assert.assertEquals(0, limiter.getInFlight());
+        Assert.assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void partitionScope() {
+        String partition = SimpleSession.partition("report", () -> {
+            Assert.assertEquals("report", SimpleThreadLocalStore.partition.get());
+            SimpleSession.partition("oltp", () -> {
+                Assert.assertEquals("oltp", SimpleThreadLocalStore.partition.get());
+                return null;
+            });
+            return SimpleThreadLocalStore.partition.get();
+        });
+        Assert.assertEquals("report", partition);
+        Assert.assertNull(SimpleThreadLocalStore.partition.get());
+    }
+
+    @Test
+    public void manyThreadsSharePool() throws Exception {
+        int threads = 2000;
+        SimpleConnectionPool pool = new SimpleConnectionPool(SimpleConnection::new, 8, 10000, threads);
+        AtomicInteger done = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    // 每条语句借用连接执行完立即归还
+                    for (int j = 0; j < 5; j++) {
+                        pool.giveBack(pool.borrow());
+                    }
+                    done.incrementAndGet();
+                } catch (Exception e) {
+                    log.error("连接池测试类:并发借用失败:" + e.getMessage());
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.currentTimeMillis();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        log.info("连接池测试类:并发共享,threads={},cost={}ms,total={}", threads, System.currentTimeMillis() - begin, pool.getTotalCount());
+        Assert.assertEquals(threads, done.get());
+        Assert.assertTrue(pool.getTotalCount() <= 8);
+        Assert.assertEquals(pool.getTotalCount(), pool.getIdleCount());
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(0, pool.getWaiterCount());
+    }
+}
@@ -0,0 +1,162 @@
+package com.simple.repository;
+
+import com.simple.repository.connect.SimpleConnection;
+import com.simple.repository.connect.SimpleConnectionPool;
+import com.simple.repository.connect.SimpleDataSource;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的jdbc对象
+ * <p>
+ * 以Proxy生成Statement、Connection、ResultSet,未处理的方法返回null,基本类型返回默认值
+ * </p>
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public final class JdbcProxy {
+
+    /**
+     * 方法处理
+     */
+    public interface Handler {
+
+        /**
+         * @param method 方法名
+         * @param args   参数,无参数时为null
+         * @return 返回值
+         */
+        Object invoke(String method, Object[] args) throws Throwable;
+    }
+
+    private static final Handler NONE = (method, args) -> null;
+
+    private JdbcProxy() {
+    }
+
+    public static Statement statement(Handler handler) {
+        return proxy(Statement.class, handler);
+    }
+
+    public static Connection connection(Handler handler) {
+        return proxy(Connection.class, handler);
+    }
+
+    /**
+     * 只加载连接池的数据源,连接由Proxy生成
+     *
+     * @param name       数据源名称
+     * @param connection 连接的方法处理,createStatement()未处理时返回空操作的Statement
+     * @return 返回数据源
+     */
+    public static SimpleDataSource dataSource(String name, Handler connection) throws Exception {
+        Constructor<SimpleDataSource> constructor = SimpleDataSource.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        SimpleDataSource dataSource = constructor.newInstance();
+        set(dataSource, "name", name);
+        set(dataSource, "connectionPool", new SimpleConnectionPool(() -> new SimpleConnection(connection((method, args) -> {
+            Object value = connection.invoke(method, args);
+            return null == value && "createStatement".equals(method) ? statement(NONE) : value;
+        })), 4, 1000, 8));
+        return dataSource;
+    }
+
+    /**
+     * 列信息,列类型均为VARCHAR
+     *
+     * @param labels 列名
+     * @return 返回列信息
+     */
+    public static ResultSetMetaData metaData(String... labels) {
+        return proxy(ResultSetMetaData.class, (method, args) -> {
+            switch (method) {
+                case "getColumnCount":
+                    return labels.length;
+                case "getColumnLabel":
+                case "getColumnName":
+                    return labels[(int) args[0] - 1];
+                case "getColumnTypeName":
+                    return "VARCHAR";
+                default:
+                    return null;
+            }
+        });
+    }
+
+    public static ResultSet resultSet(String[] labels, Object[][] rows) {
+        return resultSet(labels, rows, NONE);
+    }
+
+    /**
+     * 结果集,按列序号或列名读取数据
+     *
+     * @param labels   列名
+     * @param rows     每行数据
+     * @param fallback 其他方法的处理,如next()之外的读取计数、close()
+     * @return 返回结果集
+     */
+    public static ResultSet resultSet(String[] labels, Object[][] rows, Handler fallback) {
+        ResultSetMetaData metaData = metaData(labels);
+        AtomicInteger row = new AtomicInteger(-1);
+        AtomicInteger column = new AtomicInteger(1);
+        return proxy(ResultSet.class, (method, args) -> {
+            switch (method) {
+                case "getMetaData":
+                    return metaData;
+                case "next":
+                    fallback.invoke(method, args);
+                    return row.incrementAndGet() < rows.length;
+                case "wasNull":
+                    return null == rows[row.get()][column.get() - 1];
+                default:
+                    if (!method.startsWith("get") || null == args) {
+                        return fallback.invoke(method, args);
+                    }
+                    column.set(args[0] instanceof String ? Arrays.asList(labels).indexOf(args[0]) + 1 : (int) args[0]);
+                    return rows[row.get()][column.get() - 1];
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(JdbcProxy.class.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            Object value = handler.invoke(method.getName(), args);
+            return null == value ? defaultValue(method.getReturnType()) : value;
+        });
+    }
+
+    private static void set(SimpleDataSource dataSource, String field, Object value) throws Exception {
+        Field declared = SimpleDataSource.class.getDeclaredField(field);
+        declared.setAccessible(true);
+        declared.set(dataSource, value);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || void.class == type) {
+            return null;
+        } else if (boolean.class == type) {
+            return false;
+        } else if (long.class == type) {
+            return 0L;
+        } else if (double.class == type) {
+            return 0D;
+        } else if (float.class == type) {
+            return 0F;
+        } else if (short.class == type) {
+            return (short) 0;
+        } else if (byte.class == type) {
+            return (byte) 0;
+        }
+        return 0;
+    }
+}
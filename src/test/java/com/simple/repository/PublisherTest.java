@@ -0,0 +1,127 @@
+package com.simple.repository;
+
+import com.simple.repository.config.SimpleThreadLocalStore;
+import com.simple.repository.connect.SimpleDataSource;
+import com.simple.repository.connect.SimplePublisher;
+import com.simple.repository.connect.SimpleSession;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 查询结果发布者测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class PublisherTest {
+
+    @Test
+    public void publisherBackpressure() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        CountDownLatch stopped = new CountDownLatch(1);
+        SimplePublisher<Integer> publisher = new SimplePublisher<>(consumer -> {
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    produced.incrementAndGet();
+                    consumer.accept(i);
+                }
+                return 1000;
+            } finally {
+                stopped.countDown();
+            }
+        });
+        List<Integer> received = new ArrayList<>();
+        CountDownLatch twoReceived = new CountDownLatch(2);
+        AtomicInteger terminated = new AtomicInteger();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        publisher.subscribe(new Flow.Subscriber<Integer>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+                s.request(2);
+            }
+
+            @Override
+            public void onNext(Integer item) {
+                received.add(item);
+                twoReceived.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                terminated.incrementAndGet();
+            }
+
+            @Override
+            public void onComplete() {
+                terminated.incrementAndGet();
+            }
+        });
+        Assert.assertTrue(twoReceived.await(1, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        // 请求数用完后停止读取,最多多读一行等待请求
+        Assert.assertEquals(2, received.size());
+        Assert.assertTrue(produced.get() <= 3);
+        subscription[0].cancel();
+        Assert.assertTrue(stopped.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(0, terminated.get());
+        Assert.assertEquals(2, received.size());
+    }
+
+    @Test
+    public void publisherClosesSession() throws Exception {
+        Constructor<SimpleSession> constructor = SimpleSession.class.getDeclaredConstructor(SimpleDataSource.class, boolean.class);
+        constructor.setAccessible(true);
+        SimpleSession opened = constructor.newInstance(null, true);
+        // 查询中在发布线程开启会话,如thread模式的openSession()
+        String thread = publish(() -> {
+            SimpleThreadLocalStore.session.set(opened);
+            return Thread.currentThread().getName();
+        }).get(1, TimeUnit.SECONDS);
+        Thread.sleep(50);
+        // 复用的发布线程不再持有上一次订阅的会话
+        Assert.assertEquals(thread + ":null", publish(() -> Thread.currentThread().getName() + ":" + SimpleThreadLocalStore.session.get())
+                .get(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 发布一个对象,返回订阅者收到的对象
+     */
+    private static CompletableFuture<String> publish(Supplier<String> query) {
+        CompletableFuture<String> received = new CompletableFuture<>();
+        new SimplePublisher<String>(consumer -> {
+            consumer.accept(query.get());
+            return 1;
+        }).subscribe(new Flow.Subscriber<String>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(String item) {
+                received.complete(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                received.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        return received;
+    }
+}
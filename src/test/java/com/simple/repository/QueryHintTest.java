@@ -0,0 +1,72 @@
+package com.simple.repository;
+
+import com.simple.repository.connect.SimpleConnection;
+import com.simple.repository.connect.SimpleQueryHint;
+import com.simple.repository.connect.SimpleSession;
+import com.simple.repository.master.exception.SimpleException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 查询执行提示测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class QueryHintTest {
+
+    @Test
+    public void queryHint() throws Exception {
+        Map<String, Object> applied = new ConcurrentHashMap<>();
+        Statement statement = JdbcProxy.statement((method, args) -> {
+            if (method.startsWith("set") || "closeOnCompletion".equals(method)) {
+                applied.put(method, null == args ? true : args[0]);
+            }
+            return null;
+        });
+        Connection sqlConnection = JdbcProxy.connection((method, args) -> {
+            switch (method) {
+                case "createStatement":
+                    applied.put("resultSetType", null == args ? -1 : args[0]);
+                    return statement;
+                case "getAutoCommit":
+                    return true;
+                case "isReadOnly":
+                    return false;
+                case "setReadOnly":
+                    applied.put("readOnly", args[0]);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        SimpleConnection connection = new SimpleConnection(sqlConnection);
+        SimpleQueryHint hint = new SimpleQueryHint().streaming().maxRows(500).readOnly();
+        SimpleSession.hint(hint, () -> {
+            try {
+                boolean readOnly = connection.beginReadOnly();
+                Assert.assertTrue(readOnly);
+                Assert.assertEquals(true, applied.get("readOnly"));
+                connection.executeQuery(null, "select * from test");
+                connection.restoreReadOnly(readOnly);
+                return null;
+            } catch (SQLException e) {
+                throw new SimpleException(e);
+            }
+        });
+        Assert.assertEquals(ResultSet.TYPE_FORWARD_ONLY, applied.get("resultSetType"));
+        Assert.assertEquals(Integer.MIN_VALUE, applied.get("setFetchSize"));
+        Assert.assertEquals(500, applied.get("setMaxRows"));
+        Assert.assertEquals(true, applied.get("closeOnCompletion"));
+        Assert.assertEquals(false, applied.get("readOnly"));
+        // 未指定提示时不切换只读
+        Assert.assertFalse(connection.beginReadOnly());
+    }
+}
@@ -0,0 +1,51 @@
+package com.simple.repository;
+
+import com.simple.repository.util.SimpleRowMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 结果集映射测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class RowMapperTest {
+
+    @Test
+    public void rowMapper() throws Exception {
+        String[] labels = {"id", "user_name", "age", "remark"};
+        Object[][] rows = {{1L, "a", 18, "x"}, {2L, null, null, null}};
+        ResultSetMetaData metaData = JdbcProxy.metaData(labels);
+        ResultSet result = JdbcProxy.resultSet(labels, rows);
+        String sql = "select id, user_name, age, remark from user where id in (1, 2);";
+        SimpleRowMapper<MappedUser> mapper = SimpleRowMapper.of(sql, MappedUser.class, metaData);
+        List<MappedUser> users = new ArrayList<>();
+        while (result.next()) {
+            users.add(mapper.map(result));
+        }
+        Assert.assertEquals(Long.valueOf(1), users.get(0).id);
+        Assert.assertEquals("a", users.get(0).userName);
+        Assert.assertEquals(18, users.get(0).age);
+        Assert.assertNull(users.get(1).userName);
+        Assert.assertEquals(0, users.get(1).age);
+        // 相同形状的语句复用映射计划,列变化时重新生成
+        Assert.assertSame(mapper, SimpleRowMapper.of("select id, user_name, age, remark from user where id in (3, 4);", MappedUser.class, metaData));
+        labels[3] = "user_name";
+        Assert.assertNotSame(mapper, SimpleRowMapper.of(sql, MappedUser.class, metaData));
+    }
+
+    public static class MappedUser {
+
+        private Long id;
+
+        private String userName;
+
+        private int age;
+    }
+}
@@ -0,0 +1,38 @@
+package com.simple.repository;
+
+import com.simple.repository.util.SimpleSqlShape;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * sql形状解析测试类
+ *
+ * @author laiqx
+ * @date 2023-06-21
+ */
+public class SqlShapeTest {
+
+    @Test
+    public void parse() {
+        SimpleSqlShape shape = SimpleSqlShape.parse("select * from test where id = 12 and name = 'a\\'b' and price > 1.5 order by 2 desc limit 0,10;");
+        Assert.assertEquals("select * from test where id = ? and name = ? and price > ? order by 2 desc limit ?,?", shape.getSql());
+        Assert.assertEquals(Arrays.asList(12L, "a'b", new BigDecimal("1.5"), 0L, 10L), shape.getParams());
+    }
+
+    @Test
+    public void keepLiteral() {
+        SimpleSqlShape shape = SimpleSqlShape.parse("select `t1`.id from t1 where c = x'0F' and d = \"e\" and f1 = 1e5");
+        Assert.assertEquals("select `t1`.id from t1 where c = x'0F' and d = \"e\" and f1 = 1e5", shape.getSql());
+        Assert.assertTrue(shape.getParams().isEmpty());
+    }
+
+    @Test
+    public void unsupported() {
+        Assert.assertNull(SimpleSqlShape.parse("select * from test where id = ?"));
+        Assert.assertNull(SimpleSqlShape.parse("select * from test -- comment"));
+        Assert.assertNull(SimpleSqlShape.parse("delete from test; delete from test2"));
+    }
+}
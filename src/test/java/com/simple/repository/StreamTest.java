@@ -0,0 +1,128 @@
+package com.simple.repository;
+
+import com.simple.repository.connect.SimpleDataSource;
+import com.simple.repository.connect.SimpleSession;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 流式查询测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class StreamTest {
+
+    private static final String SQL = "select id, user_name, age, remark from user;";
+
+    private static final String[] LABELS = {"id", "user_name", "age", "remark"};
+
+    private static final Object[][] ROWS = {{1L, "a", 18, "x"}, {2L, "b", 20, "y"}, {3L, "c", 22, "z"}};
+
+    @Test
+    public void streamRowByRow() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger fetched = new AtomicInteger();
+        SimpleDataSource dataSource = dataSource(calls, fetched);
+        List<Long> ids = new ArrayList<>();
+        // 每行读取后立即交给consumer,不先读完全部结果
+        int rows = session(dataSource).stream(SQL, dataSource, StreamUser.class, user -> {
+            Assert.assertEquals(ids.size() + 1, fetched.get());
+            ids.add(user.id);
+        });
+        Assert.assertEquals(3, rows);
+        Assert.assertEquals(3, ids.size());
+        Assert.assertEquals(Long.valueOf(3), ids.get(2));
+        // 未指定执行提示时使用MySQL逐行读取
+        Assert.assertTrue(calls.contains("createStatement:" + ResultSet.TYPE_FORWARD_ONLY));
+        Assert.assertTrue(calls.contains("setFetchSize:" + Integer.MIN_VALUE));
+        // 读取完成时不取消语句
+        Assert.assertFalse(calls.contains("cancel"));
+        Assert.assertTrue(calls.contains("close"));
+    }
+
+    @Test
+    public void streamEarlyExit() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger fetched = new AtomicInteger();
+        SimpleDataSource dataSource = dataSource(calls, fetched);
+        try {
+            session(dataSource).stream(SQL, dataSource, StreamUser.class, user -> {
+                throw new IllegalStateException("停止读取");
+            });
+            Assert.fail("consumer抛出异常时应停止读取");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("停止读取", e.getMessage());
+        }
+        Assert.assertEquals(1, fetched.get());
+        // 提前结束时先取消剩余结果的传输,再关闭结果集
+        Assert.assertTrue(calls.contains("cancel"));
+        Assert.assertTrue(calls.indexOf("cancel") < calls.indexOf("close"));
+    }
+
+    private static SimpleSession session(SimpleDataSource dataSource) throws Exception {
+        Constructor<SimpleSession> constructor = SimpleSession.class.getDeclaredConstructor(SimpleDataSource.class, boolean.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(dataSource, true);
+    }
+
+    /**
+     * 记录Statement与结果集操作的数据源
+     *
+     * @param calls   创建语句、执行提示、取消与关闭结果集的记录
+     * @param fetched 已读取的行数
+     */
+    private static SimpleDataSource dataSource(List<String> calls, AtomicInteger fetched) throws Exception {
+        Statement[] statement = new Statement[1];
+        ResultSet result = JdbcProxy.resultSet(LABELS, ROWS, (method, args) -> {
+            switch (method) {
+                case "next":
+                    fetched.incrementAndGet();
+                    return null;
+                case "getStatement":
+                    return statement[0];
+                case "close":
+                    calls.add(method);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        statement[0] = JdbcProxy.statement((method, args) -> {
+            switch (method) {
+                case "setFetchSize":
+                    calls.add(method + ":" + args[0]);
+                    return null;
+                case "cancel":
+                    calls.add(method);
+                    return null;
+                case "executeQuery":
+                    return result;
+                default:
+                    return null;
+            }
+        });
+        return JdbcProxy.dataSource("stream", (method, args) -> {
+            if ("createStatement".equals(method)) {
+                calls.add(method + ":" + (null == args ? -1 : args[0]));
+                return statement[0];
+            }
+            return "getAutoCommit".equals(method) ? true : null;
+        });
+    }
+
+    public static class StreamUser {
+
+        private Long id;
+
+        private String userName;
+    }
+}
@@ -0,0 +1,90 @@
+package com.simple.repository.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 数据源分组配置测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class GroupConfigTest {
+
+    private static final String YML = String.join("\n",
+            "simple:",
+            "  env: dev",
+            "  dev:",
+            "    log: false",
+            "    datasource:",
+            "      url: jdbc:mysql://main:3306/simple",
+            "      username: root",
+            "      password: main",
+            "      driver: com.mysql.cj.jdbc.Driver",
+            "      pool:",
+            "        max-size: 64",
+            "        acquire-timeout: 3000",
+            "      groups:",
+            "        report:",
+            "          url: jdbc:mysql://report:3306/report",
+            "          tables: Edl_Report_Daily | edl_user",
+            "          pool:",
+            "            max-size: 8",
+            "        order:",
+            "          url: jdbc:mysql://order:3306/order",
+            "          username: order",
+            "  generate:",
+            "    report:",
+            "      schema: simple",
+            "      package: com.simple.repository.test.report",
+            "      tables: edl_report_month",
+            "    user:",
+            "      schema: order",
+            "      package: com.simple.repository.test.userEntity",
+            "      tables: edl_user|edl_address",
+            "    goods:",
+            "      schema: simple",
+            "      package: com.simple.repository.test.entity",
+            "      tables: edl_goods");
+
+    @Test
+    public void groupInherit() {
+        SimpleConfig.DataSource dataSource = config().dataSource;
+        Assert.assertEquals(Arrays.asList("report", "order"), Arrays.asList(dataSource.getGroups().keySet().toArray()));
+        // 分组未配置的账号与连接池参数沿用主库
+        SimpleConfig.DataSource report = dataSource.getGroups().get("report");
+        Assert.assertEquals("jdbc:mysql://report:3306/report", report.getUrl());
+        Assert.assertEquals("root", report.getUsername());
+        Assert.assertEquals("main", report.getPassword());
+        Assert.assertEquals(Integer.valueOf(8), report.getMaxSize());
+        Assert.assertEquals(Long.valueOf(3000), report.getAcquireTimeout());
+        SimpleConfig.DataSource order = dataSource.getGroups().get("order");
+        Assert.assertEquals("order", order.getUsername());
+        Assert.assertEquals(Integer.valueOf(64), order.getMaxSize());
+        Assert.assertTrue(order.getTables().isEmpty());
+    }
+
+    @Test
+    public void groupTables() {
+        Map<String, String> expected = new HashMap<>();
+        // 配置的tables,表名转为小写
+        expected.put("edl_report_daily", "report");
+        // 业务块标识与分组名称相同
+        expected.put("edl_report_month", "report");
+        // 属于多个分组时以先配置的分组为准
+        expected.put("edl_user", "report");
+        // schema与分组名称相同
+        expected.put("edl_address", "order");
+        Assert.assertEquals(expected, config().dataSource.getGroupTables());
+    }
+
+    private static SimpleConfig config() {
+        return new SimpleConfig(new ByteArrayInputStream(YML.getBytes(StandardCharsets.UTF_8)));
+    }
+}
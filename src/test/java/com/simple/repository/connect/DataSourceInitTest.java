@@ -0,0 +1,149 @@
+package com.simple.repository.connect;
+
+import com.simple.repository.JdbcProxy;
+import com.simple.repository.config.SimpleConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * 数据源加载测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class DataSourceInitTest {
+
+    private static final String YML = String.join("\n",
+            "simple:",
+            "  env: dev",
+            "  dev:",
+            "    log: false",
+            "    datasource:",
+            "      url: jdbc:fake:main",
+            "      username: root",
+            "      password: root",
+            "      driver: " + FakeDriver.class.getName(),
+            "      pool:",
+            "        min-size: 2",
+            "        initial-size: 2",
+            "        max-size: 4",
+            "        warm-up: sync",
+            "      replica-check-period: 10",
+            "      replicas:",
+            "        - url: jdbc:fake:replica",
+            "      shards:",
+            "        - url: jdbc:fake:shard0",
+            "        - url: jdbc:fake:broken");
+
+    @Test
+    public void releaseOnFailure() throws Exception {
+        FakeDriver driver = new FakeDriver();
+        DriverManager.registerDriver(driver);
+        try {
+            SimpleDataSource.initSimpleDataSource(config());
+            Assert.fail("分片数据源创建失败时应抛出异常");
+        } catch (SQLException e) {
+            Assert.assertEquals("连接被拒绝:jdbc:fake:broken", e.getMessage());
+        } finally {
+            DriverManager.deregisterDriver(driver);
+        }
+        // 已创建的主库、副本与分片数据源的连接全部关闭
+        Assert.assertEquals(Arrays.asList("jdbc:fake:main", "jdbc:fake:main", "jdbc:fake:replica", "jdbc:fake:replica",
+                "jdbc:fake:shard0", "jdbc:fake:shard0"), driver.opened);
+        Assert.assertEquals(driver.opened, driver.closed);
+        // 副本延迟检查已取消,不再从副本借出连接
+        Thread.sleep(100);
+        Assert.assertEquals(6, driver.opened.size());
+        // 监控指标注销
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (String name : Arrays.asList(SimpleDataSource.DEFAULT_NAME, SimpleDataSource.DEFAULT_NAME + "-replica-0", "shard-0", "shard-1")) {
+            Assert.assertFalse(name, server.isRegistered(new ObjectName("com.simple.repository:type=SimpleDataSource,name=" + name)));
+        }
+        Field field = SimpleDataSource.class.getDeclaredField("simpleDataSource");
+        field.setAccessible(true);
+        Assert.assertNull(field.get(null));
+    }
+
+    private static SimpleConfig.DataSource config() throws Exception {
+        Constructor<SimpleConfig> constructor = SimpleConfig.class.getDeclaredConstructor(InputStream.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(new ByteArrayInputStream(YML.getBytes(StandardCharsets.UTF_8))).dataSource;
+    }
+
+    /**
+     * 记录打开与关闭连接的驱动,url包含broken时拒绝连接
+     */
+    public static class FakeDriver implements Driver {
+
+        private final List<String> opened = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<String> closed = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            if (url.contains("broken")) {
+                throw new SQLException("连接被拒绝:" + url);
+            }
+            opened.add(url);
+            return JdbcProxy.connection((method, args) -> {
+                if ("close".equals(method)) {
+                    closed.add(url);
+                }
+                return null;
+            });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:fake:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.simple.repository.connect;
+
+import com.simple.repository.JdbcProxy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对冲读取测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class HedgedReaderTest {
+
+    @Test
+    public void noHedgeWithoutSamples() throws Exception {
+        SimpleDataSource primary = dataSource("primary");
+        SimpleReplicaRouter router = new SimpleReplicaRouter(Arrays.asList(dataSource("r1"), dataSource("r2")), 1, 1);
+        SimpleHedgedReader reader = new SimpleHedgedReader(router, primary, 95, 1, 10);
+        // 样本不足时不发送对冲查询,首选副本的异常直接抛出
+        Assert.assertEquals("first", reader.read(router.choose(), (connection, statement) -> "first"));
+        try {
+            reader.read(router.choose(), (connection, statement) -> {
+                throw new SQLException("首选副本失败");
+            });
+            Assert.fail("首选副本失败且未发送对冲查询时应抛出异常");
+        } catch (SQLException e) {
+            Assert.assertEquals("首选副本失败", e.getMessage());
+        }
+        Assert.assertEquals(0, primary.getMetrics().getHedgedReadCount());
+    }
+
+    @Test
+    public void hedgeWins() throws Exception {
+        SimpleDataSource primary = dataSource("primary");
+        SimpleReplicaRouter router = new SimpleReplicaRouter(Arrays.asList(dataSource("r1"), dataSource("r2")), 1, 1);
+        SimpleHedgedReader reader = warmUp(new SimpleHedgedReader(router, primary, 95, 10, 10), router);
+        // 首选副本超过延迟阈值,对冲查询先返回
+        String result = reader.read(router.choose(), (connection, statement) -> {
+            if (isHedge()) {
+                return "hedge";
+            }
+            sleep(200);
+            return "first";
+        });
+        Assert.assertEquals("hedge", result);
+        Assert.assertEquals(1, primary.getMetrics().getHedgedReadCount());
+        Assert.assertEquals(1, primary.getMetrics().getHedgeWonCount());
+    }
+
+    @Test
+    public void firstFailsAfterHedgeSent() throws Exception {
+        SimpleDataSource primary = dataSource("primary");
+        SimpleReplicaRouter router = new SimpleReplicaRouter(Arrays.asList(dataSource("r1"), dataSource("r2")), 1, 1);
+        SimpleHedgedReader reader = warmUp(new SimpleHedgedReader(router, primary, 95, 10, 10), router);
+        CountDownLatch hedgeRunning = new CountDownLatch(1);
+        // 首选副本失败时以对冲查询的结果为准,对冲查询结束时已被标记结束也要交付结果
+        CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return reader.read(router.choose(), (connection, statement) -> {
+                    if (isHedge()) {
+                        hedgeRunning.countDown();
+                        sleep(50);
+                        return "hedge";
+                    }
+                    await(hedgeRunning);
+                    throw new SQLException("首选副本失败");
+                });
+            } catch (SQLException | ClassNotFoundException e) {
+                return e.getMessage();
+            }
+        });
+        Assert.assertEquals("hedge", future.get(2, TimeUnit.SECONDS));
+        Assert.assertEquals(0, primary.getMetrics().getHedgeWonCount());
+        // 对冲查询也失败时抛出首选副本的异常,Error不做类型转换
+        CountDownLatch hedgeFailing = new CountDownLatch(1);
+        try {
+            reader.read(router.choose(), (connection, statement) -> {
+                if (isHedge()) {
+                    hedgeFailing.countDown();
+                    sleep(50);
+                    throw new AssertionError("对冲查询失败");
+                }
+                await(hedgeFailing);
+                throw new SQLException("首选副本失败");
+            });
+            Assert.fail("两个查询都失败时应抛出异常");
+        } catch (SQLException e) {
+            Assert.assertEquals("首选副本失败", e.getMessage());
+        }
+    }
+
+    @Test
+    public void firstFailsWhileHedgeStarting() throws Exception {
+        SimpleDataSource primary = dataSource("primary");
+        CountDownLatch[] starting = new CountDownLatch[1];
+        // 对冲查询选择副本时首选副本同时失败,两边竞争结束标记
+        SimpleReplicaRouter router = new SimpleReplicaRouter(Arrays.asList(dataSource("r1"), dataSource("r2")), 1, 1) {
+            @Override
+            public Replica chooseOther(Replica exclude) {
+                starting[0].countDown();
+                return super.chooseOther(exclude);
+            }
+        };
+        SimpleHedgedReader reader = warmUp(new SimpleHedgedReader(router, primary, 95, 1, 100), router);
+        for (int i = 0; i < 200; i++) {
+            starting[0] = new CountDownLatch(1);
+            CountDownLatch latch = starting[0];
+            CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return reader.read(router.choose(), (connection, statement) -> {
+                        if (isHedge()) {
+                            return "hedge";
+                        }
+                        await(latch);
+                        throw new SQLException("首选副本失败");
+                    });
+                } catch (SQLException | ClassNotFoundException e) {
+                    return e.getMessage();
+                }
+            });
+            // 不论哪一方先结束,调用线程都不能一直等待对冲结果
+            try {
+                String result = future.get(2, TimeUnit.SECONDS);
+                Assert.assertTrue(result, "hedge".equals(result) || "首选副本失败".equals(result));
+            } catch (ExecutionException e) {
+                throw new AssertionError(e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void hedgeBudget() throws Exception {
+        SimpleDataSource primary = dataSource("primary");
+        SimpleReplicaRouter router = new SimpleReplicaRouter(Arrays.asList(dataSource("r1"), dataSource("r2")), 1, 1);
+        // 预算1%,预热的100次读取积累一次对冲的额度
+        SimpleHedgedReader reader = warmUp(new SimpleHedgedReader(router, primary, 95, 10, 1), router);
+        Assert.assertEquals(100, sampleCount(reader));
+        SimpleSession.StatementCallback<String> slow = (connection, statement) -> {
+            if (isHedge()) {
+                return "hedge";
+            }
+            sleep(100);
+            return "first";
+        };
+        Assert.assertEquals("hedge", reader.read(router.choose(), slow));
+        // 首选副本与对冲查询的耗时都记录
+        Assert.assertEquals(102, sampleCount(reader));
+        // 预算用完后不再发送对冲查询
+        Assert.assertEquals("first", reader.read(router.choose(), slow));
+        Assert.assertEquals(1, primary.getMetrics().getHedgedReadCount());
+        Assert.assertEquals(1, primary.getMetrics().getHedgeSkippedCount());
+        Assert.assertEquals(103, sampleCount(reader));
+        // 失败的查询也记录耗时
+        try {
+            reader.read(router.choose(), (connection, statement) -> {
+                throw new SQLException("首选副本失败");
+            });
+            Assert.fail("首选副本失败且未发送对冲查询时应抛出异常");
+        } catch (SQLException e) {
+            Assert.assertEquals(104, sampleCount(reader));
+        }
+    }
+
+    private static long sampleCount(SimpleHedgedReader reader) throws Exception {
+        Field field = SimpleHedgedReader.class.getDeclaredField("sampleCount");
+        field.setAccessible(true);
+        return ((AtomicLong) field.get(reader)).get();
+    }
+
+    /**
+     * 积累足够的样本,使后续查询按最小延迟阈值发送对冲查询
+     */
+    private static SimpleHedgedReader warmUp(SimpleHedgedReader reader, SimpleReplicaRouter router) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            reader.read(router.choose(), (connection, statement) -> null);
+        }
+        return reader;
+    }
+
+    private static boolean isHedge() {
+        return Thread.currentThread().getName().startsWith("simple-hedged-read");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static SimpleDataSource dataSource(String name) throws Exception {
+        return JdbcProxy.dataSource(name, (method, args) -> null);
+    }
+}
@@ -0,0 +1,243 @@
+package com.simple.repository.connect;
+
+import com.simple.repository.JdbcProxy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 只读副本路由测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class ReplicaRouterTest {
+
+    private static final String[] LABELS = {"Seconds_Behind_Source"};
+
+    private static final String[] SLAVE_LABELS = {"Seconds_Behind_Master"};
+
+    /**
+     * 非复制节点,无复制状态
+     */
+    private static final Object NOT_REPLICA = new Object();
+
+    /**
+     * 检查时抛出异常
+     */
+    private static final Object CHECK_FAILED = new Object();
+
+    /**
+     * MySQL 8.0.22之前的版本,不支持show replica status
+     */
+    private static final Object SLAVE_ONLY = new Object();
+
+    /**
+     * 缺少REPLICATION CLIENT权限
+     */
+    private static final Object DENIED = new Object();
+
+    @Test
+    public void chooseLeastOutstanding() throws Exception {
+        SimpleReplicaRouter router = new SimpleReplicaRouter(Arrays.asList(dataSource("r1", null), dataSource("r2", null), dataSource("r3", null)), 1, 1);
+        SimpleReplicaRouter.Replica first = router.choose();
+        first.begin();
+        first.begin();
+        SimpleReplicaRouter.Replica second = router.choose();
+        Assert.assertNotSame(first, second);
+        second.begin();
+        // 选择执行中请求最少的副本
+        SimpleReplicaRouter.Replica third = router.choose();
+        Assert.assertNotSame(first, third);
+        Assert.assertNotSame(second, third);
+        Assert.assertEquals(0, third.getOutstanding());
+        // 排除指定副本后选择请求最少的其他副本
+        Assert.assertSame(second, router.chooseOther(third));
+        third.begin();
+        third.begin();
+        third.begin();
+        Assert.assertSame(second, router.choose());
+        second.end();
+        first.end();
+        first.end();
+        Assert.assertEquals(0, first.getOutstanding());
+        Assert.assertEquals(0, second.getOutstanding());
+    }
+
+    @Test
+    public void checkLag() throws Exception {
+        Map<String, Object> lags = new ConcurrentHashMap<>();
+        List<SimpleDataSource> dataSources = new ArrayList<>();
+        for (String name : Arrays.asList("r1", "r2", "r3")) {
+            dataSources.add(dataSource(name, lags));
+        }
+        SimpleReplicaRouter router = new SimpleReplicaRouter(dataSources, 5, 1);
+        lags.put("r1", 3L);
+        lags.put("r2", 6L);
+        lags.put("r3", NOT_REPLICA);
+        router.checkLag();
+        // 超过最大延迟的副本摘除,非复制节点视为无延迟
+        Assert.assertTrue(replica(router, "r1").isAvailable());
+        Assert.assertEquals(3, replica(router, "r1").getLag());
+        Assert.assertFalse(replica(router, "r2").isAvailable());
+        Assert.assertEquals(6, replica(router, "r2").getLag());
+        Assert.assertTrue(replica(router, "r3").isAvailable());
+        Assert.assertEquals(0, replica(router, "r3").getLag());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertNotSame(replica(router, "r2"), router.choose());
+        }
+        // 复制中断与检查异常的副本不可用
+        lags.put("r1", CHECK_FAILED);
+        lags.remove("r3");
+        router.checkLag();
+        Assert.assertFalse(replica(router, "r1").isAvailable());
+        Assert.assertEquals(-1, replica(router, "r1").getLag());
+        Assert.assertFalse(replica(router, "r3").isAvailable());
+        Assert.assertEquals(-1, replica(router, "r3").getLag());
+        // 所有副本都不可用时由主库执行
+        Assert.assertNull(router.choose());
+        Assert.assertNull(router.chooseOther(null));
+        // 延迟恢复后重新加入
+        lags.put("r2", 5L);
+        router.checkLag();
+        Assert.assertTrue(replica(router, "r2").isAvailable());
+        Assert.assertEquals("r2", router.choose().getDataSource().getName());
+        Assert.assertNull(router.chooseOther(router.choose()));
+    }
+
+    @Test
+    public void lagQueryFallback() throws Exception {
+        Map<String, Object> lags = new ConcurrentHashMap<>();
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        List<SimpleDataSource> dataSources = new ArrayList<>();
+        for (String name : Arrays.asList("r1", "r2", "r3")) {
+            dataSources.add(dataSource(name, lags, calls));
+        }
+        SimpleReplicaRouter router = new SimpleReplicaRouter(dataSources, 5, 1);
+        lags.put("r1", 2L);
+        lags.put("r2", SLAVE_ONLY);
+        lags.put("r3", DENIED);
+        router.checkLag();
+        // 先执行show replica status,语法不支持时改为show slave status
+        Assert.assertEquals(Arrays.asList("r1:show replica status", "r2:show replica status", "r2:show slave status",
+                "r3:show replica status"), calls);
+        Assert.assertEquals(2, replica(router, "r1").getLag());
+        Assert.assertEquals("show replica status", replica(router, "r1").getLagQuery());
+        Assert.assertTrue(replica(router, "r2").isAvailable());
+        Assert.assertEquals(4, replica(router, "r2").getLag());
+        Assert.assertEquals("show slave status", replica(router, "r2").getLagQuery());
+        // 无权限的副本不可用,只告警一次
+        Assert.assertFalse(replica(router, "r3").isAvailable());
+        Assert.assertTrue(rejectWarned(replica(router, "r3")));
+        Assert.assertFalse(rejectWarned(replica(router, "r1")));
+        calls.clear();
+        router.checkLag();
+        Assert.assertEquals(Arrays.asList("r1:show replica status", "r2:show slave status", "r3:show replica status"), calls);
+        Assert.assertFalse(replica(router, "r3").isAvailable());
+    }
+
+    @Test
+    public void configuredLagQuery() throws Exception {
+        String sql = "select ts_lag from heartbeat";
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        SimpleDataSource dataSource = JdbcProxy.dataSource("r1", (method, args) -> {
+            if (!"createStatement".equals(method)) {
+                return null;
+            }
+            return JdbcProxy.statement((statementMethod, statementArgs) -> {
+                if (!"executeQuery".equals(statementMethod)) {
+                    return null;
+                }
+                calls.add((String) statementArgs[0]);
+                if (calls.size() > 1) {
+                    throw new SQLException("语法错误", "42000", 1064);
+                }
+                return JdbcProxy.resultSet(new String[]{"ts_lag"}, new Object[][]{{3}});
+            });
+        });
+        SimpleReplicaRouter router = new SimpleReplicaRouter(Collections.singletonList(dataSource), 5, 1, sql);
+        // 配置的语句没有复制状态列时取第一列
+        router.checkLag();
+        Assert.assertEquals(3, replica(router, "r1").getLag());
+        Assert.assertTrue(replica(router, "r1").isAvailable());
+        // 配置的语句失败时不改用其他语句
+        router.checkLag();
+        Assert.assertEquals(Arrays.asList(sql, sql), calls);
+        Assert.assertFalse(replica(router, "r1").isAvailable());
+        Assert.assertEquals(sql, replica(router, "r1").getLagQuery());
+        Assert.assertTrue(rejectWarned(replica(router, "r1")));
+    }
+
+    private static boolean rejectWarned(SimpleReplicaRouter.Replica replica) throws Exception {
+        Field field = SimpleReplicaRouter.Replica.class.getDeclaredField("rejectWarned");
+        field.setAccessible(true);
+        return ((AtomicBoolean) field.get(replica)).get();
+    }
+
+    /**
+     * 按名称查找副本,不可用的副本无法通过选择取得
+     */
+    @SuppressWarnings("unchecked")
+    private static SimpleReplicaRouter.Replica replica(SimpleReplicaRouter router, String name) throws Exception {
+        Field field = SimpleReplicaRouter.class.getDeclaredField("replicas");
+        field.setAccessible(true);
+        for (SimpleReplicaRouter.Replica replica : (List<SimpleReplicaRouter.Replica>) field.get(router)) {
+            if (name.equals(replica.getDataSource().getName())) {
+                return replica;
+            }
+        }
+        throw new AssertionError("副本不存在:" + name);
+    }
+
+    private static SimpleDataSource dataSource(String name, Map<String, Object> lags) throws Exception {
+        return dataSource(name, lags, new ArrayList<>());
+    }
+
+    /**
+     * 副本数据源,show replica status按lags中的值返回复制延迟
+     *
+     * @param name  数据源名称
+     * @param lags  复制延迟,key:数据源名称,无值时Seconds_Behind_Source为null
+     * @param calls 执行的延迟查询,格式为数据源名称:sql
+     */
+    private static SimpleDataSource dataSource(String name, Map<String, Object> lags, List<String> calls) throws Exception {
+        return JdbcProxy.dataSource(name, (method, args) -> {
+            if (!"createStatement".equals(method)) {
+                return null;
+            }
+            return JdbcProxy.statement((statementMethod, statementArgs) -> {
+                if (!"executeQuery".equals(statementMethod)) {
+                    return null;
+                }
+                calls.add(name + ":" + statementArgs[0]);
+                Object lag = lags.get(name);
+                if (CHECK_FAILED == lag) {
+                    throw new SQLException("连接已断开");
+                }
+                if (DENIED == lag) {
+                    throw new SQLException("Access denied; you need the REPLICATION CLIENT privilege", "42000", 1227);
+                }
+                if (SLAVE_ONLY == lag) {
+                    if (!"show slave status".equals(statementArgs[0])) {
+                        throw new SQLException("You have an error in your SQL syntax", "42000", 1064);
+                    }
+                    return JdbcProxy.resultSet(SLAVE_LABELS, new Object[][]{{4L}});
+                }
+                Assert.assertEquals("show replica status", statementArgs[0]);
+                if (NOT_REPLICA == lag) {
+                    return JdbcProxy.resultSet(LABELS, new Object[0][]);
+                }
+                return JdbcProxy.resultSet(LABELS, new Object[][]{{lag}});
+            });
+        });
+    }
+}
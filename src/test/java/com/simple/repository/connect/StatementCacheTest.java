@@ -0,0 +1,103 @@
+package com.simple.repository.connect;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+import com.simple.repository.JdbcProxy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PreparedStatement缓存测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class StatementCacheTest {
+
+    private static final String SQL = "select * from edl_user where id = 1";
+
+    private static final String SHAPE = "select * from edl_user where id = ?";
+
+    @Test
+    public void serverPrepareLimit() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        SimpleStatementCache.ShapeCounter counter = new SimpleStatementCache.ShapeCounter(2, 1, 1, new SimplePoolMetrics(null));
+        SimpleStatementCache first = new SimpleStatementCache(connection(calls, false), counter);
+        SimpleStatementCache second = new SimpleStatementCache(connection(calls, false), counter);
+        first.prepare(SQL);
+        Assert.assertEquals(1, counter.serverSize());
+        // 数据源的服务端预编译名额用完后,其他连接使用客户端预编译
+        second.prepare(SQL);
+        Assert.assertEquals(Arrays.asList("server:" + SHAPE, "client:" + SHAPE), calls);
+        Assert.assertEquals(1, counter.serverSize());
+        // 关闭服务端预编译语句后归还名额
+        first.clear();
+        second.clear();
+        Assert.assertEquals(0, counter.serverSize());
+        Assert.assertEquals(Arrays.asList("server:" + SHAPE, "client:" + SHAPE, "close", "close"), calls);
+        new SimpleStatementCache(connection(calls, false), counter).prepare(SQL);
+        Assert.assertEquals("server:" + SHAPE, calls.get(4));
+        Assert.assertEquals(1, counter.serverSize());
+    }
+
+    @Test
+    public void serverPrepareCountReached() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        SimpleStatementCache.ShapeCounter counter = new SimpleStatementCache.ShapeCounter(2, 1, 8, new SimplePoolMetrics(null));
+        // 服务端返回1461时使用客户端预编译,不占用名额
+        new SimpleStatementCache(connection(calls, true), counter).prepare(SQL);
+        Assert.assertEquals(Arrays.asList("server:" + SHAPE, "client:" + SHAPE), calls);
+        Assert.assertEquals(0, counter.serverSize());
+        // 上限为0时不使用服务端预编译
+        calls.clear();
+        SimpleStatementCache.ShapeCounter disabled = new SimpleStatementCache.ShapeCounter(2, 1, 0, new SimplePoolMetrics(null));
+        new SimpleStatementCache(connection(calls, false), disabled).prepare(SQL);
+        Assert.assertEquals(Collections.singletonList("client:" + SHAPE), calls);
+    }
+
+    /**
+     * 记录预编译方式的连接
+     *
+     * @param calls   预编译记录,格式为server/client:sql,关闭语句记录为close
+     * @param reached 服务端预编译是否返回1461
+     */
+    private static Connection connection(List<String> calls, boolean reached) {
+        JdbcConnection server = JdbcProxy.proxy(JdbcConnection.class, (method, args) -> {
+            if (!"serverPrepareStatement".equals(method)) {
+                return null;
+            }
+            calls.add("server:" + args[0]);
+            if (reached) {
+                throw new SQLException("Can't create more than max_prepared_stmt_count statements", "42000", 1461);
+            }
+            return statement(calls);
+        });
+        return JdbcProxy.connection((method, args) -> {
+            switch (method) {
+                case "unwrap":
+                    return server;
+                case "prepareStatement":
+                    calls.add("client:" + args[0]);
+                    return statement(calls);
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static PreparedStatement statement(List<String> calls) {
+        return JdbcProxy.proxy(PreparedStatement.class, (method, args) -> {
+            if ("close".equals(method)) {
+                calls.add(method);
+            }
+            return null;
+        });
+    }
+}
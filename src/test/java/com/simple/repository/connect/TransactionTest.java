@@ -0,0 +1,144 @@
+package com.simple.repository.connect;
+
+import com.simple.repository.JdbcProxy;
+import com.simple.repository.master.exception.SimpleException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 事务模板测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class TransactionTest {
+
+    @Test
+    public void isRetryable() {
+        Assert.assertTrue(SimpleTransaction.isRetryable(new SQLException("Deadlock found", "40001", 1213)));
+        Assert.assertTrue(SimpleTransaction.isRetryable(new SQLException("Lock wait timeout exceeded", "HY000", 1205)));
+        Assert.assertTrue(SimpleTransaction.isRetryable(new SQLException("serialization failure", "40001")));
+        // 沿异常链查找
+        Assert.assertTrue(SimpleTransaction.isRetryable(new SimpleException("执行事务异常", new RuntimeException(new SQLException("Deadlock found", null, 1213)))));
+        Assert.assertFalse(SimpleTransaction.isRetryable(new SQLException("Duplicate entry", "23000", 1062)));
+        Assert.assertFalse(SimpleTransaction.isRetryable(new SimpleException("执行事务异常", new IllegalStateException())));
+        Assert.assertFalse(SimpleTransaction.isRetryable(null));
+    }
+
+    @Test
+    public void backoff() {
+        // 第n次重试的上限为基础时长翻倍n-1次,在上限的一半到全部之间随机取值
+        assertBackoff(20, 1, 10, 20);
+        assertBackoff(20, 3, 40, 80);
+        // 翻倍次数不超过上限
+        assertBackoff(20, 11, 10240, 20480);
+        assertBackoff(20, 100, 10240, 20480);
+        Assert.assertEquals(0, SimpleTransaction.backoff(0, 5));
+    }
+
+    @Test
+    public void retryDeadlock() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        SimpleSession session = session(calls);
+        AtomicInteger attempts = new AtomicInteger();
+        // 前两次死锁,第三次成功
+        String result = SimpleTransaction.execute(session, 3, 1, s -> {
+            Assert.assertTrue(s.isTransaction());
+            if (attempts.incrementAndGet() < 3) {
+                throw new SQLException("Deadlock found", "40001", 1213);
+            }
+            return "ok";
+        });
+        Assert.assertEquals("ok", result);
+        Assert.assertFalse(session.isTransaction());
+        Assert.assertEquals(Arrays.asList("begin", "rollback", "begin", "rollback", "begin", "commit"), calls);
+        Assert.assertEquals(2, session.getDataSource().getMetrics().getTransactionRetryCount());
+        Assert.assertEquals(0, session.getDataSource().getMetrics().getTransactionRetryExhaustedCount());
+    }
+
+    @Test
+    public void retryExhausted() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        SimpleSession session = session(calls);
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            SimpleTransaction.execute(session, 2, 1, s -> {
+                attempts.incrementAndGet();
+                throw new SQLException("Lock wait timeout exceeded", "HY000", 1205);
+            });
+            Assert.fail("超过最大重试次数应抛出异常");
+        } catch (SimpleException e) {
+            Assert.assertTrue(e.getMessage().startsWith("事务重试2次后仍失败"));
+            Assert.assertTrue(SimpleTransaction.isRetryable(e));
+        }
+        Assert.assertEquals(3, attempts.get());
+        Assert.assertEquals(3, Collections.frequency(calls, "rollback"));
+        Assert.assertFalse(calls.contains("commit"));
+        Assert.assertEquals(1, session.getDataSource().getMetrics().getTransactionRetryExhaustedCount());
+    }
+
+    @Test
+    public void notRetryable() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        SimpleSession session = session(calls);
+        AtomicInteger attempts = new AtomicInteger();
+        // 其他异常回滚后直接抛出,不重试
+        try {
+            SimpleTransaction.execute(session, 3, 1, s -> {
+                attempts.incrementAndGet();
+                throw new SQLException("Duplicate entry", "23000", 1062);
+            });
+            Assert.fail("不可重试的异常应直接抛出");
+        } catch (SimpleException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        }
+        Assert.assertEquals(1, attempts.get());
+        Assert.assertEquals(Arrays.asList("begin", "rollback"), calls);
+        Assert.assertEquals(0, session.getDataSource().getMetrics().getTransactionRetryCount());
+    }
+
+    private static void assertBackoff(long base, int retry, long min, long max) {
+        long lowest = Long.MAX_VALUE;
+        long highest = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long backoff = SimpleTransaction.backoff(base, retry);
+            Assert.assertTrue(backoff + " not in [" + min + "," + max + "]", backoff >= min && backoff <= max);
+            lowest = Math.min(lowest, backoff);
+            highest = Math.max(highest, backoff);
+        }
+        // 随机抖动,避免冲突的事务同时重试
+        Assert.assertTrue(lowest < highest);
+    }
+
+    /**
+     * thread模式的会话,记录连接上的事务操作
+     */
+    private static SimpleSession session(List<String> calls) throws Exception {
+        SimpleDataSource dataSource = JdbcProxy.dataSource("test", (method, args) -> {
+            switch (method) {
+                case "setAutoCommit":
+                    if (!(Boolean) args[0]) {
+                        calls.add("begin");
+                    }
+                    return null;
+                case "commit":
+                case "rollback":
+                    calls.add(method);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        Constructor<SimpleSession> constructor = SimpleSession.class.getDeclaredConstructor(SimpleDataSource.class, boolean.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(dataSource, false);
+    }
+}
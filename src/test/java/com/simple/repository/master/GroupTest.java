@@ -0,0 +1,197 @@
+package com.simple.repository.master;
+
+import com.simple.repository.JdbcProxy;
+import com.simple.repository.config.SimpleThreadLocalStore;
+import com.simple.repository.connect.SimpleDataSource;
+import com.simple.repository.connect.SimpleSession;
+import com.simple.repository.master.exception.SimpleException;
+import com.simple.repository.master.search.Condition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 数据源分组路由测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class GroupTest {
+
+    private final List<String> mainCalls = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<String> groupCalls = Collections.synchronizedList(new ArrayList<>());
+
+    private SimpleSession session;
+
+    /**
+     * 开启thread模式的会话,group_report表绑定到report分组的数据源
+     */
+    @SuppressWarnings("unchecked")
+    private void openSession() throws Exception {
+        SimpleDataSource main = dataSource("main", mainCalls);
+        SimpleDataSource group = dataSource("report", groupCalls);
+        Field field = SimpleDataSource.class.getDeclaredField("tableDataSources");
+        field.setAccessible(true);
+        ((Map<String, SimpleDataSource>) field.get(main)).put("group_report", group);
+        Constructor<SimpleSession> constructor = SimpleSession.class.getDeclaredConstructor(SimpleDataSource.class, boolean.class);
+        constructor.setAccessible(true);
+        session = constructor.newInstance(main, false);
+        SimpleThreadLocalStore.session.set(session);
+        mainCalls.clear();
+    }
+
+    @Test
+    public void groupedTable() throws Exception {
+        openSession();
+        try {
+            BaseRepository<GroupReportEntity> repository = repository(GroupReportEntity.class);
+            Assert.assertSame(session.getTableDataSource("group_report"), session.getTableDataSource("group_report"));
+            Assert.assertNull(session.getTableDataSource("plain"));
+            Assert.assertEquals(Integer.valueOf(3), repository.count(new Condition().eq("age", 18)));
+            GroupReportEntity entity = new GroupReportEntity();
+            entity.name = "日报";
+            repository.add(entity);
+            Assert.assertEquals(Long.valueOf(7), entity.id);
+            Assert.assertEquals(2, groupCalls.size());
+            Assert.assertTrue(groupCalls.get(0).startsWith("select count(1) from group_report"));
+            Assert.assertTrue(groupCalls.get(1).startsWith("insert into group_report"));
+            Assert.assertFalse(mainCalls.stream().anyMatch(call -> call.contains("group_report")));
+        } finally {
+            SimpleThreadLocalStore.clear();
+        }
+    }
+
+    @Test
+    public void groupedWriteInTransaction() throws Exception {
+        openSession();
+        try {
+            BaseRepository<GroupReportEntity> repository = repository(GroupReportEntity.class);
+            session.openTransaction();
+            // 分组数据源的写入无法随事务回滚,事务中直接拒绝,不拆分事务
+            GroupReportEntity entity = new GroupReportEntity();
+            entity.id = 1L;
+            entity.name = "日报";
+            List<Runnable> writes = Arrays.asList(() -> repository.add(entity), () -> repository.update(entity),
+                    () -> repository.update(Collections.singletonList(entity)), () -> repository.delete(1L));
+            for (Runnable write : writes) {
+                try {
+                    write.run();
+                    Assert.fail("事务中写分组表应抛出异常");
+                } catch (SimpleException e) {
+                    Assert.assertEquals("事务中不能在其他数据源执行写操作,该数据源的写入无法随事务回滚:dataSource=report", e.getMessage());
+                }
+            }
+            // 事务中仍可读取分组表
+            Assert.assertEquals(Integer.valueOf(3), repository.count(new Condition().eq("age", 18)));
+            session.rollback();
+            Assert.assertEquals(1, groupCalls.size());
+            Assert.assertFalse(groupCalls.contains("setAutoCommit:false"));
+        } finally {
+            SimpleThreadLocalStore.clear();
+        }
+    }
+
+    @Test
+    public void groupedBatchUpdate() throws Exception {
+        openSession();
+        try {
+            BaseRepository<GroupReportEntity> repository = repository(GroupReportEntity.class);
+            List<GroupReportEntity> entities = new ArrayList<>();
+            for (long i = 1; i <= 60; i++) {
+                GroupReportEntity entity = new GroupReportEntity();
+                entity.id = i;
+                entity.age = 18;
+                entities.add(entity);
+            }
+            // 超过50行也使用update语句,临时表需要同一连接
+            repository.update(entities);
+            Assert.assertEquals(60, groupCalls.stream().filter(call -> call.startsWith("update group_report")).count());
+            Assert.assertFalse(groupCalls.stream().anyMatch(call -> call.contains("temporary")));
+            Assert.assertTrue(mainCalls.isEmpty());
+        } finally {
+            SimpleThreadLocalStore.clear();
+        }
+    }
+
+    @Test
+    public void ungroupedTable() throws Exception {
+        openSession();
+        try {
+            // 未分组的表由主库执行
+            Assert.assertEquals(Integer.valueOf(3), repository(PlainEntity.class).count(new Condition().eq("age", 18)));
+            Assert.assertTrue(mainCalls.get(0).startsWith("select count(1) from plain"));
+            Assert.assertTrue(groupCalls.isEmpty());
+        } finally {
+            SimpleThreadLocalStore.clear();
+        }
+    }
+
+    private static <T extends Entity<?>> BaseRepository<T> repository(Class<T> entityClass) {
+        BaseRepository<T> repository = new BaseRepository<>();
+        repository.setEntityClass(entityClass);
+        return repository;
+    }
+
+    /**
+     * 记录执行语句的数据源,统计返回3,新增返回id为7
+     *
+     * @param name  数据源名称
+     * @param calls 执行的sql与关闭自动提交的记录
+     */
+    private static SimpleDataSource dataSource(String name, List<String> calls) throws Exception {
+        return JdbcProxy.dataSource(name, (method, args) -> {
+            switch (method) {
+                case "setAutoCommit":
+                    calls.add(method + ":" + args[0]);
+                    return null;
+                case "getAutoCommit":
+                    return true;
+                case "createStatement":
+                    return JdbcProxy.statement((statementMethod, statementArgs) -> {
+                        switch (statementMethod) {
+                            case "executeQuery":
+                                calls.add((String) statementArgs[0]);
+                                return JdbcProxy.resultSet(new String[]{"count(1)"}, new Object[][]{{3}});
+                            case "executeUpdate":
+                            case "addBatch":
+                                calls.add((String) statementArgs[0]);
+                                return null;
+                            case "getGeneratedKeys":
+                                return JdbcProxy.resultSet(new String[]{"id"}, new Object[][]{{7L}});
+                            case "executeBatch":
+                                return new int[0];
+                            default:
+                                return null;
+                        }
+                    });
+                default:
+                    return null;
+            }
+        });
+    }
+
+    public static class GroupReportEntity extends Entity<Long> {
+
+        public String name;
+
+        public Integer age;
+
+        @Override
+        public Class<?> getIdentityClass() {
+            return Long.class;
+        }
+    }
+
+    public static class PlainEntity extends Entity<Long> {
+
+        public Integer age;
+    }
+}
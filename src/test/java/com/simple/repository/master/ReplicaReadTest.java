@@ -0,0 +1,96 @@
+package com.simple.repository.master;
+
+import com.simple.repository.JdbcProxy;
+import com.simple.repository.config.SimpleThreadLocalStore;
+import com.simple.repository.connect.SimpleDataSource;
+import com.simple.repository.connect.SimpleReplicaRouter;
+import com.simple.repository.connect.SimpleSession;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 只读副本读取测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class ReplicaReadTest {
+
+    @Test
+    public void cacheFillFromPrimary() throws Exception {
+        List<String> mainCalls = Collections.synchronizedList(new ArrayList<>());
+        List<String> replicaCalls = Collections.synchronizedList(new ArrayList<>());
+        SimpleDataSource main = dataSource("main", mainCalls);
+        Field field = SimpleDataSource.class.getDeclaredField("replicaRouter");
+        field.setAccessible(true);
+        field.set(main, new SimpleReplicaRouter(Collections.singletonList(dataSource("replica", replicaCalls)), 10, 1));
+        Constructor<SimpleSession> constructor = SimpleSession.class.getDeclaredConstructor(SimpleDataSource.class, boolean.class);
+        constructor.setAccessible(true);
+        SimpleThreadLocalStore.session.set(constructor.newInstance(main, false));
+        try {
+            BaseRepository<EdlGoodsEntity> repository = new BaseRepository<>();
+            repository.setEntityClass(EdlGoodsEntity.class);
+            repository.delAllCache();
+            // 事务外的查询由只读副本执行
+            Assert.assertNotNull(repository.get(1L));
+            Assert.assertEquals(1, replicaCalls.size());
+            Assert.assertTrue(mainCalls.isEmpty());
+            // 写入缓存的数据由主库查询,副本的复制延迟不会进入缓存
+            Assert.assertNotNull(repository.getCache(1L));
+            Assert.assertEquals(1, mainCalls.size());
+            Assert.assertNotNull(repository.getCache(1L));
+            Assert.assertEquals(1, mainCalls.size());
+            Assert.assertEquals(2, repository.getCache(Arrays.asList(1L, 2L)).size());
+            Assert.assertEquals(2, mainCalls.size());
+            Assert.assertTrue(mainCalls.get(1).contains("in"));
+            Assert.assertEquals(1, replicaCalls.size());
+            // 范围结束后恢复由副本执行
+            Assert.assertNull(SimpleThreadLocalStore.readPrimary.get());
+            repository.get(1L);
+            Assert.assertEquals(2, replicaCalls.size());
+        } finally {
+            SimpleThreadLocalStore.clear();
+        }
+    }
+
+    /**
+     * 记录查询语句的数据源,查询返回id为1、2的两行
+     *
+     * @param name  数据源名称
+     * @param calls 执行的查询语句
+     */
+    private static SimpleDataSource dataSource(String name, List<String> calls) throws Exception {
+        return JdbcProxy.dataSource(name, (method, args) -> {
+            if (!"createStatement".equals(method)) {
+                return "getAutoCommit".equals(method) ? true : null;
+            }
+            return JdbcProxy.statement((statementMethod, statementArgs) -> {
+                if (!"executeQuery".equals(statementMethod)) {
+                    return null;
+                }
+                calls.add((String) statementArgs[0]);
+                return JdbcProxy.resultSet(new String[]{"id", "age"}, new Object[][]{{1L, 18}, {2L, 20}});
+            });
+        });
+    }
+
+    /**
+     * 表名edl_goods已配置为缓存表(simple.cache-table)
+     */
+    public static class EdlGoodsEntity extends Entity<Long> {
+
+        public Integer age;
+
+        @Override
+        public Class<?> getIdentityClass() {
+            return Long.class;
+        }
+    }
+}
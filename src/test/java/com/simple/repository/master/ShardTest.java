@@ -0,0 +1,280 @@
+package com.simple.repository.master;
+
+import com.simple.repository.JdbcProxy;
+import com.simple.repository.config.SimpleThreadLocalStore;
+import com.simple.repository.connect.SimpleCancellation;
+import com.simple.repository.connect.SimpleDataSource;
+import com.simple.repository.connect.SimpleSession;
+import com.simple.repository.connect.SimpleShardRouter;
+import com.simple.repository.master.exception.SimpleException;
+import com.simple.repository.master.search.BaseSearch;
+import com.simple.repository.master.search.Condition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 分片路由与结果合并测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class ShardTest {
+
+    @Test
+    public void route() throws Exception {
+        List<SimpleDataSource> shards = dataSources(3);
+        SimpleShardRouter router = new SimpleShardRouter(shards, Collections.singletonMap("test", "id"));
+        Assert.assertEquals("id", router.getColumn("test"));
+        Assert.assertNull(router.getColumn("user"));
+        // 数字按数值取模,负数取非负余数
+        Assert.assertSame(shards.get(1), router.route(4));
+        Assert.assertSame(shards.get(1), router.route(4L));
+        Assert.assertSame(shards.get(2), router.route(-1));
+        // 其他类型按hashCode取模,相同的值路由到相同分片
+        Assert.assertSame(shards.get(Math.floorMod("abc".hashCode(), 3)), router.route("abc"));
+        Assert.assertSame(router.route("abc"), router.route(new String("abc")));
+        try {
+            router.route(null);
+            Assert.fail("分片键为空时应抛出异常");
+        } catch (SimpleException e) {
+            Assert.assertEquals("分片键的值不能为空", e.getMessage());
+        }
+    }
+
+    @Test
+    public void scatter() throws Exception {
+        List<SimpleDataSource> shards = dataSources(3);
+        SimpleShardRouter router = new SimpleShardRouter(shards, Collections.emptyMap());
+        // 结果与分片顺序一致,分发线程沿用调用线程的分区
+        List<String> results = SimpleSession.partition("report", () -> router.scatter(shard -> shards.indexOf(shard) + ":" + SimpleThreadLocalStore.partition.get()));
+        Assert.assertEquals(Arrays.asList("0:report", "1:report", "2:report"), results);
+        try {
+            router.scatter(shard -> {
+                if (shards.indexOf(shard) == 2) {
+                    throw new IllegalStateException("分片执行失败");
+                }
+                return null;
+            });
+            Assert.fail("任一分片失败时应抛出异常");
+        } catch (SimpleException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void scatterCancelsOnFailure() throws Exception {
+        List<String> cancelled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch running = new CountDownLatch(2);
+        // 第一个分片在其他分片执行中时失败
+        List<SimpleDataSource> shards = Arrays.asList(blockingShard("s0", running, cancelled, true),
+                blockingShard("s1", running, cancelled, false), blockingShard("s2", running, cancelled, false));
+        SimpleShardRouter router = new SimpleShardRouter(shards, Collections.emptyMap());
+        SimpleSession session = session(shards.get(0), true);
+        try {
+            router.scatter(shard -> session.query("select * from shard_order;", shard));
+            Assert.fail("任一分片失败时应抛出异常");
+        } catch (SimpleException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("分片执行失败"));
+        }
+        // 抛出异常前取消其他分片执行中的语句
+        Assert.assertEquals(Arrays.asList("s1", "s2"), cancelled.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void scatterFollowsOuterCancellation() throws Exception {
+        List<String> cancelled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch running = new CountDownLatch(2);
+        List<SimpleDataSource> shards = Arrays.asList(blockingShard("s0", running, cancelled, false),
+                blockingShard("s1", running, cancelled, false));
+        SimpleShardRouter router = new SimpleShardRouter(shards, Collections.emptyMap());
+        SimpleSession session = session(shards.get(0), true);
+        SimpleCancellation cancellation = new SimpleCancellation();
+        CompletableFuture<Void> watchdog = CompletableFuture.runAsync(() -> {
+            await(running);
+            cancellation.cancel();
+        });
+        // 调用方的取消句柄同样取消分发到各分片的语句
+        try {
+            SimpleSession.cancellable(cancellation, () -> router.scatter(shard -> session.query("select * from shard_order;", shard)));
+            Assert.fail("取消后应抛出异常");
+        } catch (SimpleException e) {
+            Assert.assertTrue(cancellation.isCancelled());
+        }
+        watchdog.get(2, TimeUnit.SECONDS);
+        Assert.assertEquals(Arrays.asList("s0", "s1"), cancelled.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shardWriteInTransaction() throws Exception {
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        List<SimpleDataSource> shards = Arrays.asList(recordingShard("s0", calls), recordingShard("s1", calls));
+        SimpleDataSource main = recordingShard("main", calls);
+        Field field = SimpleDataSource.class.getDeclaredField("shardRouter");
+        field.setAccessible(true);
+        field.set(main, new SimpleShardRouter(shards, Collections.singletonMap("shard_order", "id")));
+        SimpleSession session = session(main, false);
+        SimpleThreadLocalStore.session.set(session);
+        try {
+            BaseRepository<ShardOrderEntity> repository = new BaseRepository<>();
+            repository.setEntityClass(ShardOrderEntity.class);
+            ShardOrderEntity entity = new ShardOrderEntity();
+            entity.id = 1L;
+            entity.age = 18;
+            session.openTransaction();
+            // 分片的写入无法随事务回滚,单个分片与分发到所有分片的写操作都直接拒绝
+            List<Runnable> writes = Arrays.asList(() -> repository.add(entity), () -> repository.add(Collections.singletonList(entity)),
+                    () -> repository.update(entity), () -> repository.update(Collections.singletonList(entity)),
+                    () -> repository.delete(1L), () -> repository.delete(new Condition().eq("age", 18)));
+            for (Runnable write : writes) {
+                try {
+                    write.run();
+                    Assert.fail("事务中写分片表应抛出异常");
+                } catch (SimpleException e) {
+                    Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("事务中不能在其他数据源执行写操作"));
+                }
+            }
+            session.rollback();
+            Assert.assertTrue(calls.isEmpty());
+        } finally {
+            SimpleThreadLocalStore.clear();
+        }
+    }
+
+    @Test
+    public void mergeShards() {
+        List<Map<String, Object>> shard0 = Arrays.asList(row(1, "b", 20), row(3, null, 18));
+        List<Map<String, Object>> shard1 = Arrays.asList(row(2L, "A", new BigDecimal("20")), row(4L, "c", 30L));
+        BaseSearch search = new BaseSearch();
+        search.setPage(false);
+        search.putSort("age", BaseSearch.SortType.desc).putSort("t.`NAME`", BaseSearch.SortType.asc);
+        // 数字按数值比较,字符串忽略大小写,null最小
+        Assert.assertEquals(Arrays.asList(4L, 2L, 1, 3), ids(BaseRepository.mergeShards(Arrays.asList(shard0, shard1), search)));
+        search = new BaseSearch();
+        search.putSort("name", BaseSearch.SortType.asc);
+        Assert.assertEquals(Arrays.asList(3, 2L, 1, 4L), ids(BaseRepository.mergeShards(Arrays.asList(shard0, shard1), search)));
+        // 分页时截取当前页
+        search.setLoadSize(2);
+        search.setPageNum(2);
+        Assert.assertEquals(Arrays.asList(1, 4L), ids(BaseRepository.mergeShards(Arrays.asList(shard0, shard1), search)));
+        search.setPageNum(3);
+        Assert.assertTrue(BaseRepository.mergeShards(Arrays.asList(shard0, shard1), search).isEmpty());
+    }
+
+    private static Map<String, Object> row(Object id, String name, Object age) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        row.put("age", age);
+        return row;
+    }
+
+    private static List<Object> ids(List<Map<String, Object>> rows) {
+        return rows.stream().map(row -> row.get("id")).collect(Collectors.toList());
+    }
+
+    private static SimpleSession session(SimpleDataSource dataSource, boolean scoped) throws Exception {
+        Constructor<SimpleSession> constructor = SimpleSession.class.getDeclaredConstructor(SimpleDataSource.class, boolean.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(dataSource, scoped);
+    }
+
+    /**
+     * 查询阻塞直到语句被取消的分片
+     *
+     * @param name      分片名称
+     * @param running   其他分片开始执行的计数
+     * @param cancelled 被取消的分片
+     * @param fail      是否在其他分片执行中时失败
+     */
+    private static SimpleDataSource blockingShard(String name, CountDownLatch running, List<String> cancelled, boolean fail) throws Exception {
+        return JdbcProxy.dataSource(name, (method, args) -> {
+            if (!"createStatement".equals(method)) {
+                return null;
+            }
+            CountDownLatch cancel = new CountDownLatch(1);
+            return JdbcProxy.statement((statementMethod, statementArgs) -> {
+                switch (statementMethod) {
+                    case "cancel":
+                        cancelled.add(name);
+                        cancel.countDown();
+                        return null;
+                    case "executeQuery":
+                        if (fail) {
+                            await(running);
+                            throw new SQLException("分片执行失败");
+                        }
+                        running.countDown();
+                        if (!cancel.await(2, TimeUnit.SECONDS)) {
+                            throw new SQLException("分片未被取消");
+                        }
+                        throw new SQLException("Query execution was interrupted");
+                    default:
+                        return null;
+                }
+            });
+        });
+    }
+
+    /**
+     * 记录执行语句的分片
+     */
+    private static SimpleDataSource recordingShard(String name, List<String> calls) throws Exception {
+        return JdbcProxy.dataSource(name, (method, args) -> {
+            if (!"createStatement".equals(method)) {
+                return "getAutoCommit".equals(method) ? true : null;
+            }
+            return JdbcProxy.statement((statementMethod, statementArgs) -> {
+                if ("executeUpdate".equals(statementMethod) || "addBatch".equals(statementMethod) || "executeQuery".equals(statementMethod)) {
+                    calls.add(name + ":" + statementArgs[0]);
+                }
+                return null;
+            });
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class ShardOrderEntity extends Entity<Long> {
+
+        public Integer age;
+
+        @Override
+        public Class<?> getIdentityClass() {
+            return Long.class;
+        }
+    }
+
+    /**
+     * 未加载连接池的数据源,只用于路由
+     */
+    private static List<SimpleDataSource> dataSources(int count) throws Exception {
+        Constructor<SimpleDataSource> constructor = SimpleDataSource.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        List<SimpleDataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            dataSources.add(constructor.newInstance());
+        }
+        return dataSources;
+    }
+}
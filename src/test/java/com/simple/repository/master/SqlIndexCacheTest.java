@@ -0,0 +1,37 @@
+package com.simple.repository.master;
+
+import com.simple.repository.master.exception.SimpleException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * sql预加载测试类
+ *
+ * @author laiqx
+ * @date 2023-07-04
+ */
+public class SqlIndexCacheTest {
+
+    private static final String REPORT_SQL = "/**\n * 报表查询\n * @name reportSelect\n * @partition report\n */\nselect * from test where age > ${age};";
+
+    @Test
+    public void partition() {
+        SqlIndexCache.analysisDocContent("partitionTest", REPORT_SQL + "\n/**\n * 查询\n * @name plainSelect\n */\nselect * from test;",
+                Collections.singleton("report"));
+        Assert.assertEquals("report", SqlIndexCache.getPartition("partitionTest.reportSelect"));
+        Assert.assertNull(SqlIndexCache.getPartition("partitionTest.plainSelect"));
+    }
+
+    @Test
+    public void unknownPartition() {
+        // 分区名称写错或未配置时加载失败,不静默使用数据源自身的连接池
+        try {
+            SqlIndexCache.analysisDocContent("unknownPartitionTest", REPORT_SQL, Collections.singleton("batch"));
+            Assert.fail("未配置的分区应抛出异常");
+        } catch (SimpleException e) {
+            Assert.assertEquals("sql指定的连接池分区未配置:sqlName=unknownPartitionTest.reportSelect,partition=report", e.getMessage());
+        }
+    }
+}